@@ -1,22 +1,53 @@
 package ru.vigroup.barcodescanner;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.hardware.Camera;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.AttributeSet;
-import android.view.Display;
-import android.view.Surface;
-import android.view.WindowManager;
+import android.util.Log;
+import android.view.Gravity;
 import android.widget.FrameLayout;
 
-public abstract class BarcodeScannerView extends FrameLayout implements Camera.PreviewCallback, ViewFinderView.FramingRectChangeListener {
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+public abstract class BarcodeScannerView extends FrameLayout implements Camera.PreviewCallback,
+        CameraBackend.FrameCallback, ViewFinderView.FramingRectChangeListener {
+    private static final String TAG = "BarcodeScannerView";
+
+    /** Camera2 where the camera supports more than the LEGACY level, the old API otherwise. */
+    public static final int CAMERA_API_AUTO = 0;
+    /** Always {@code android.hardware.Camera}. */
+    public static final int CAMERA_API_1 = 1;
+    /** Camera2 on API 21+ even at the LEGACY level, the old API on older devices. */
+    public static final int CAMERA_API_2 = 2;
 
     private Camera mCamera;
+    private Camera2Backend mCamera2Backend;
     private CameraPreview mPreview;
+    // the backend of the running or last camera, the idle preview before the first start
+    private CameraBackend mCameraBackend;
+    private int mCameraApi = CAMERA_API_AUTO;
     private ViewFinderView mViewFinderView;
-    private RectF mFramingRectInPreview;
+    private ScanLineView mScanLineView;
+    // formats, hints and framing rect, shared with the decoder
+    private final AtomicReference<ScanConfig> mScanConfig = new AtomicReference<ScanConfig>(new ScanConfig());
+    private CameraHandlerThread mCameraHandlerThread;
+    private final ScanMetrics mScanMetrics = new ScanMetrics();
+    private final Handler mMetricsHandler = new Handler(Looper.getMainLooper());
+    private ScanMetrics.Listener mScanMetricsListener;
+    private long mScanMetricsIntervalMillis;
+    // between startCamera() and stopCamera()
+    private boolean mScanMetricsRunning;
+    // written on the main thread, read and, after a failed write, cleared on the camera thread
+    private final AtomicReference<FrameRecorder> mFrameRecorder = new AtomicReference<FrameRecorder>();
 
     public BarcodeScannerView(Context context) {
         super(context);
@@ -30,21 +61,121 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
 
     public void setupLayout(Context context, AttributeSet attrs) {
         mPreview = new CameraPreview(getContext());
+        mCameraBackend = mPreview;
         mViewFinderView = new ViewFinderView(getContext(), attrs);
         mViewFinderView.setFramingRectChangeListener(this);
+        mScanLineView = new ScanLineView(getContext(), attrs);
 
         addView(mPreview);
         addView(mViewFinderView);
+        addView(mScanLineView, new LayoutParams(LayoutParams.MATCH_PARENT, mScanLineView.getLineHeight(),
+                Gravity.TOP));
+    }
+
+    /** Shows a line sweeping across the framing rect, off unless {@code app:scanLineEnabled} is set. */
+    public void setScanLineEnabled(boolean enabled) {
+        mScanLineView.setVisibility(enabled ? VISIBLE : GONE);
+    }
+
+    public boolean isScanLineEnabled() {
+        return mScanLineView.getVisibility() == VISIBLE;
+    }
+
+    public void setScanLineColor(int color) {
+        mScanLineView.setColor(color);
+    }
+
+    /**
+     * Chooses the camera API, one of the {@code CAMERA_API_*} constants. Takes effect on the next
+     * {@link #startCamera(int)}.
+     */
+    public void setCameraApi(int cameraApi) {
+        if (cameraApi != CAMERA_API_AUTO && cameraApi != CAMERA_API_1 && cameraApi != CAMERA_API_2) {
+            throw new IllegalArgumentException("Unknown camera API " + cameraApi);
+        }
+        mCameraApi = cameraApi;
+    }
+
+    public int getCameraApi() {
+        return mCameraApi;
+    }
+
+    /** Whether the running camera is driven through camera2. */
+    public boolean isUsingCamera2() {
+        return mCamera2Backend != null;
     }
 
     public void startCamera(int cameraId) {
-        startCamera(CameraUtils.getCameraInstance(cameraId));
+        if (mCamera != null || mCamera2Backend != null) {
+            // already open, e.g. after a hit in stop-on-first-hit mode
+            resumeScanning();
+            return;
+        }
+        mScanMetrics.onCameraStarted(System.nanoTime());
+        mScanMetricsRunning = true;
+        scheduleScanMetrics();
+        if (mCameraApi != CAMERA_API_1 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                && startCamera2(cameraId)) {
+            return;
+        }
+        mPreview.markFirstFrameRequested();
+        if (mCameraHandlerThread == null) {
+            mCameraHandlerThread = new CameraHandlerThread(this);
+        }
+        mCameraHandlerThread.startCamera(cameraId);
+    }
+
+    void onCameraOpened(CameraHandlerThread cameraHandlerThread, Camera camera, int cameraId) {
+        if (cameraHandlerThread != mCameraHandlerThread) {
+            // stopCamera() was called while the camera was being opened
+            if (camera != null) {
+                camera.release();
+            }
+            return;
+        }
+        startCamera(camera, cameraId);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private boolean startCamera2(int cameraId) {
+        Camera2Backend backend = Camera2Backend.create(getContext(), cameraId,
+                mCameraApi == CAMERA_API_2, mPreview, this);
+        if (backend == null) {
+            return false;
+        }
+        mCamera2Backend = backend;
+        mCameraBackend = backend;
+        backend.markFirstFrameRequested();
+        onCameraStarting();
+        backend.open();
+
+        RectF framingRect = mViewFinderView.getFramingRect();
+        if (framingRect != null) {
+            setFocusArea(framingRect);
+        }
+        return true;
     }
 
+    /**
+     * Called before a camera starts delivering frames, with either API. Frame buffer counts set
+     * here apply to the new camera.
+     */
+    protected void onCameraStarting() {
+    }
+
+    /** Starts the preview of an already opened camera, taken to be the default back camera. */
     public void startCamera(Camera camera) {
+        startCamera(camera, CameraUtils.getDefaultCameraId());
+    }
+
+    /** Starts the preview of an already opened camera, {@code cameraId} being the one it was opened with. */
+    public void startCamera(Camera camera, int cameraId) {
         mCamera = camera;
         if (mCamera != null) {
-            mPreview.setCamera(mCamera, this);
+            mCameraBackend = mPreview;
+            onCameraStarting();
+            mPreview.markFirstFrameRequested();
+            mPreview.setCamera(mCamera, cameraId, this);
             mPreview.initCameraPreview();
 
             RectF framingRect = mViewFinderView.getFramingRect();
@@ -55,60 +186,283 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
     }
 
     public void startCamera() {
-        startCamera(CameraUtils.getCameraInstance());
+        startCamera(-1);
     }
 
     public void stopCamera() {
+        if (mCamera2Backend != null) {
+            mCamera2Backend.close();
+            mCamera2Backend = null;
+        }
         if (mCamera != null) {
             mPreview.stopCameraPreview();
             mPreview.setCamera(null, null);
             mCamera.release();
             mCamera = null;
         }
+        mCameraBackend.setPreviewCallbackPaused(false);
+        if (mCameraHandlerThread != null) {
+            mCameraHandlerThread.quit();
+            mCameraHandlerThread = null;
+        }
+        if (mScanMetricsRunning) {
+            mScanMetricsRunning = false;
+            mMetricsHandler.removeCallbacks(mScanMetricsReporter);
+            // the last interval
+            mScanMetricsReporter.run();
+        }
+    }
+
+    /** Timings and counters of the frame pipeline, see {@link ScanMetrics}. */
+    public ScanMetrics getScanMetrics() {
+        return mScanMetrics;
+    }
+
+    /**
+     * Hands the {@link ScanMetrics} to {@code listener} on the main thread every
+     * {@code intervalMillis} while the camera runs, and once more when it stops. Pass {@code null}
+     * to stop reporting.
+     */
+    public void setScanMetricsListener(ScanMetrics.Listener listener, long intervalMillis) {
+        if (listener != null && intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be positive");
+        }
+        mScanMetricsListener = listener;
+        mScanMetricsIntervalMillis = intervalMillis;
+        scheduleScanMetrics();
+    }
+
+    private void scheduleScanMetrics() {
+        mMetricsHandler.removeCallbacks(mScanMetricsReporter);
+        if (mScanMetricsListener != null && mScanMetricsRunning) {
+            mMetricsHandler.postDelayed(mScanMetricsReporter, mScanMetricsIntervalMillis);
+        }
+    }
+
+    private final Runnable mScanMetricsReporter = new Runnable() {
+        @Override
+        public void run() {
+            ScanMetrics.Listener listener = mScanMetricsListener;
+            if (listener == null) {
+                return;
+            }
+            listener.onScanMetrics(mScanMetrics);
+            if (mScanMetricsRunning) {
+                mMetricsHandler.postDelayed(this, mScanMetricsIntervalMillis);
+            }
+        }
+    };
+
+    /**
+     * Appends every preview frame with the framing rect to {@code file} until
+     * {@link #stopRecording()}, for {@link FrameReplay} to decode again off the device. An
+     * existing recording is continued. Frames are written on the camera thread, so this slows the
+     * preview down; meant for collecting failing scans, not for production.
+     */
+    public void startRecording(File file) throws IOException {
+        closeRecorder(mFrameRecorder.getAndSet(new FrameRecorder(file)));
+    }
+
+    public void stopRecording() {
+        closeRecorder(mFrameRecorder.getAndSet(null));
+    }
+
+    private static void closeRecorder(FrameRecorder recorder) {
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close frame recording", e);
+            }
+        }
+    }
+
+    public boolean isRecording() {
+        return mFrameRecorder.get() != null;
+    }
+
+    /** Writes {@code frame} to the recording, if any. Call before the frame is handed on. */
+    protected void recordFrame(PreviewFrame frame) {
+        FrameRecorder recorder = mFrameRecorder.get();
+        if (recorder == null) {
+            return;
+        }
+        boolean swap = frame.getOrientation() == 90 || frame.getOrientation() == 270;
+        FrameRegion region = getFramingRegionInPreview(swap ? frame.getHeight() : frame.getWidth(),
+                swap ? frame.getWidth() : frame.getHeight());
+        try {
+            recorder.record(frame, region, System.nanoTime());
+        } catch (IOException e) {
+            // startRecording() may have replaced and closed this recorder meanwhile, only stop
+            // the recording that failed
+            if (mFrameRecorder.compareAndSet(recorder, null)) {
+                Log.e(TAG, "Unable to record frame, recording stopped", e);
+                closeRecorder(recorder);
+            }
+        }
+    }
+
+    protected void setPreviewBufferCount(int previewBufferCount) {
+        mCameraBackend.setPreviewBufferCount(previewBufferCount);
+    }
+
+    protected void recyclePreviewBuffer(byte[] buffer) {
+        mPreview.recyclePreviewBuffer(buffer);
+    }
+
+    /** Gives a decoded or dropped frame back to the camera that delivered it. */
+    protected void recyclePreviewFrame(PreviewFrame frame) {
+        PreviewFrame.Recycler recycler = frame.getRecycler();
+        if (recycler != null) {
+            recycler.recycle(frame);
+        } else {
+            mPreview.recyclePreviewBuffer(frame.getData());
+        }
     }
 
     public boolean isStopped() {
-        return mCamera == null;
+        return mCamera == null && mCamera2Backend == null;
+    }
+
+    /**
+     * Stops delivering preview frames while keeping the camera open and the preview running.
+     */
+    public void pauseScanning() {
+        mCameraBackend.setPreviewCallbackPaused(true);
+    }
+
+    /**
+     * Resumes frame delivery after {@link #pauseScanning()} without reopening the camera.
+     */
+    public void resumeScanning() {
+        mCameraBackend.setPreviewCallbackPaused(false);
+    }
+
+    public boolean isScanningPaused() {
+        return mCameraBackend.isPreviewCallbackPaused();
     }
 
-    public synchronized RectF getFramingRectInPreview(int previewWidth, int previewHeight) {
-        if (mFramingRectInPreview == null) {
-            mFramingRectInPreview = getFramingRect(previewWidth, previewHeight);
+    /**
+     * Time from the last {@link #startCamera()} or {@link #resumeScanning()} to the first preview
+     * frame, or -1 if none has arrived yet. A resume should be a small fraction of a cold start.
+     */
+    public long getFirstFrameLatencyMillis() {
+        return mCameraBackend.getFirstFrameLatencyMillis();
+    }
+
+    /** Whether the lens is moving, so the current frames are not worth decoding. */
+    protected boolean isFocusing() {
+        return mCameraBackend.isFocusing();
+    }
+
+    /**
+     * Reports the sharpness of the framing rect in a frame, or {@link Float#NaN} when unknown,
+     * so focus is requested when it drops. Safe to call from the decode workers.
+     */
+    protected void onFrameSharpness(float sharpness) {
+        mCameraBackend.onFrameSharpness(sharpness);
+    }
+
+    /** Reports a decoded code, which tells the focus controller that focus is good enough. */
+    protected void onResultDecoded() {
+        mCameraBackend.onResultDecoded();
+    }
+
+    public RectF getFramingRectInPreview(int previewWidth, int previewHeight) {
+        FrameRegion region = getFramingRegionInPreview(previewWidth, previewHeight);
+        if (region == null) {
+            return null;
         }
-        return mFramingRectInPreview;
+        return new RectF(region.getLeft(), region.getTop(), region.getRight(), region.getBottom());
     }
 
-    private RectF getFramingRect(int previewWidth, int previewHeight) {
-        RectF framingRect = mViewFinderView.getFramingRect();
-        int viewFinderViewWidth = mPreview.getWidth();
-        int viewFinderViewHeight = mPreview.getHeight();
-        if (framingRect == null || viewFinderViewWidth == 0 || viewFinderViewHeight == 0) {
+    /**
+     * The framing rect in an upright {@code previewWidth x previewHeight} frame, or null while
+     * the view has not been laid out yet. Reads the {@link ScanConfig} without locking; the first
+     * frame of a new preview size publishes the mapping for the following ones.
+     */
+    public FrameRegion getFramingRegionInPreview(int previewWidth, int previewHeight) {
+        ScanConfig config = mScanConfig.get();
+        if (config.getPreviewWidth() != previewWidth || config.getPreviewHeight() != previewHeight) {
+            ScanConfig resized = config.withPreviewSize(previewWidth, previewHeight);
+            // a lost race means someone published a newer rect, this frame still uses the older one
+            mScanConfig.compareAndSet(config, resized);
+            config = resized;
+        }
+        return config.getFramingRegion();
+    }
+
+    /** The formats, hints and framing rect the next frame is decoded with. */
+    public ScanConfig getScanConfig() {
+        return mScanConfig.get();
+    }
+
+    AtomicReference<ScanConfig> getScanConfigReference() {
+        return mScanConfig;
+    }
+
+    /**
+     * Maps the framing rect into the native sensor orientation of a {@code sensorWidth x sensorHeight}
+     * frame that needs a clockwise rotation of {@code orientation} degrees to be shown upright.
+     */
+    public RectF getFramingRectInSensor(int sensorWidth, int sensorHeight, int orientation) {
+        boolean swap = orientation == 90 || orientation == 270;
+        FrameRegion region = getFramingRegionInPreview(swap ? sensorHeight : sensorWidth,
+                swap ? sensorWidth : sensorHeight);
+        if (region == null) {
             return null;
         }
+        region = region.toSensor(sensorWidth, sensorHeight, orientation);
+        return new RectF(region.getLeft(), region.getTop(), region.getRight(), region.getBottom());
+    }
 
-        RectF rect = new RectF();
+    // on the main thread, whenever the framing rect or the size of the preview changes
+    private void publishFramingRect() {
+        RectF framingRect = mViewFinderView.getFramingRect();
+        int viewWidth = mPreview.getWidth();
+        int viewHeight = mPreview.getHeight();
+        ScanConfig config;
+        ScanConfig next;
+        do {
+            config = mScanConfig.get();
+            next = framingRect != null && viewWidth > 0 && viewHeight > 0
+                    ? config.withFramingRect(framingRect.left, framingRect.top, framingRect.right,
+                    framingRect.bottom, viewWidth, viewHeight)
+                    : config.withoutFramingRect();
+        } while (!mScanConfig.compareAndSet(config, next));
+    }
 
-        rect.left = framingRect.left * previewWidth / viewFinderViewWidth;
-        rect.top = framingRect.top * previewHeight / viewFinderViewHeight;
-        rect.right = framingRect.right * previewWidth / viewFinderViewWidth;
-        rect.bottom = framingRect.bottom * previewHeight / viewFinderViewHeight;
-        return rect;
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        // the preview resizes itself to the aspect ratio of the camera
+        publishFramingRect();
     }
 
     public void setAutoFocus(boolean state) {
-        if (mPreview != null) {
-            mPreview.setAutoFocus(state);
+        if (mCameraBackend != null) {
+            mCameraBackend.setAutoFocus(state);
         }
     }
 
+    /**
+     * Chooses preview sizes for the framing rect instead of the screen, and the frame rate. Takes
+     * effect on the next {@link #startCamera(int)}.
+     */
+    public void setPreviewSizePolicy(PreviewSizePolicy previewSizePolicy) {
+        mPreview.setPreviewSizePolicy(previewSizePolicy);
+    }
+
     @Override
     public void onRectChanged(RectF framingRect) {
-        mFramingRectInPreview = null;
+        publishFramingRect();
+        mPreview.setViewFinder(mViewFinderView.getWidth(), mViewFinderView.getHeight(), framingRect.width());
+        mScanLineView.setFramingRect(framingRect);
         setFocusArea(framingRect);
     }
 
     private void setFocusArea(RectF framingRect) {
-        if (mPreview != null) {
+        if (mCameraBackend != null) {
             RectF focusRect = new RectF(framingRect);
             focusRect.inset(framingRect.width() / 4, framingRect.height() / 4);
             Rect focusArea = new Rect();
@@ -118,7 +472,7 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
             matrix.mapRect(focusRect);
             rectFToRect(focusRect, focusArea);
 
-            mPreview.setupFocusArea(focusArea);
+            mCameraBackend.setupFocusArea(focusArea);
         }
     }
 
@@ -143,37 +497,18 @@ public abstract class BarcodeScannerView extends FrameLayout implements Camera.P
         rect.bottom = Math.round(rectF.bottom);
     }
 
-    private int getDisplayOrientation() {
-        Camera.CameraInfo info = new Camera.CameraInfo();
-        Camera.getCameraInfo(Camera.CameraInfo.CAMERA_FACING_BACK, info);
-        WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-        Display display = wm.getDefaultDisplay();
-
-        int rotation = display.getRotation();
-        int degrees = 0;
-        switch (rotation) {
-            case Surface.ROTATION_0:
-                degrees = 0;
-                break;
-            case Surface.ROTATION_90:
-                degrees = 90;
-                break;
-            case Surface.ROTATION_180:
-                degrees = 180;
-                break;
-            case Surface.ROTATION_270:
-                degrees = 270;
-                break;
-        }
-
-        int result;
-        if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            result = (info.orientation + degrees) % 360;
-            result = (360 - result) % 360;  // compensate the mirror
-        } else {  // back-facing
-            result = (info.orientation - degrees + 360) % 360;
-        }
-        return result;
+    /**
+     * Preview parameters of the running camera, or {@code null} before they have been negotiated.
+     */
+    protected CameraSessionConfig getCameraSessionConfig() {
+        return mCameraBackend.getSessionConfig();
+    }
+
+    /**
+     * Clockwise rotation in degrees that brings a preview frame upright on the display.
+     */
+    protected int getDisplayOrientation() {
+        return mCameraBackend.getDisplayOrientation();
     }
 
 }
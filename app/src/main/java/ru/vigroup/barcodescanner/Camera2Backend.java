@@ -0,0 +1,671 @@
+package ru.vigroup.barcodescanner;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.CaptureResult;
+import android.hardware.camera2.TotalCaptureResult;
+import android.hardware.camera2.params.MeteringRectangle;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams {@code YUV_420_888} frames from camera2 into an {@link ImageReader} while the preview is
+ * shown in a {@link CameraPreview}. The Y plane of each image goes to the decoder as it is, see
+ * {@link ByteBufferLuminanceSource}, and the image stays open until the frame is recycled, so
+ * frames reach the decoder without the copies and NV21 repacking of the legacy camera shim.
+ * Focus works like {@link FocusController}: continuous AF where available and an explicit AF
+ * trigger when the {@link RefocusPolicy} asks for one.
+ *
+ * <p>Session control runs on the main thread, images and capture results on a frame thread.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+class Camera2Backend implements CameraBackend, SurfaceHolder.Callback, PreviewFrame.Recycler {
+    private static final String TAG = "Camera2Backend";
+    private static final int DEFAULT_PREVIEW_BUFFER_COUNT = 3;
+    // some devices never report the end of a scan, so it is assumed to be over after this long
+    private static final long MAX_FOCUS_MILLIS = 2000;
+    private static final int[] AF_MODES = {
+            CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE,
+            CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO,
+            CameraMetadata.CONTROL_AF_MODE_AUTO,
+            CameraMetadata.CONTROL_AF_MODE_MACRO};
+
+    private final CameraManager mCameraManager;
+    private final String mCameraId;
+    private final CameraCharacteristics mCharacteristics;
+    private final CameraPreview mPreview;
+    private final FrameCallback mFrameCallback;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread mFrameThread = new HandlerThread(TAG);
+    private final Handler mFrameHandler;
+    // images out for decoding, only touched on the frame thread
+    private final Map<PreviewFrame, Image> mImagesInFlight = new IdentityHashMap<>();
+    private final RefocusPolicy mRefocusPolicy = new RefocusPolicy();
+    private final int mAfMode;
+
+    private CameraDevice mCameraDevice;
+    private CameraCaptureSession mCaptureSession;
+    private CaptureRequest.Builder mRequestBuilder;
+    private ImageReader mImageReader;
+    private Point mPreviewSize;
+    private Range<Integer> mFpsRange;
+    private boolean mSurfaceValid;
+    private int mSurfaceWidth;
+    private int mSurfaceHeight;
+    private boolean mClosed;
+    private MeteringRectangle[] mFocusRegions;
+    private volatile int mPreviewBufferCount = DEFAULT_PREVIEW_BUFFER_COUNT;
+    // frame thread only: the reader to close once the last image is back
+    private ImageReader mReleasedImageReader;
+    private boolean mReleased;
+    private volatile CameraSessionConfig mSessionConfig;
+    private volatile boolean mPaused = false;
+    private volatile boolean mAutoFocus = true;
+    private volatile long mFocusStartedAt;
+    private volatile long mLensMovingSince;
+    private volatile long mFirstFrameRequestedAt;
+    private volatile long mFirstFrameLatencyMillis = -1;
+
+    /**
+     * Creates a backend for a {@code cameraId} as passed to {@code Camera.open()}, -1 meaning the
+     * first back facing camera, or returns null when camera2 should not be used for it. Cameras
+     * that only reach the LEGACY hardware level run through the same shim as the old API and are
+     * left to it unless {@code allowLegacy} is set.
+     */
+    static Camera2Backend create(Context context, int cameraId, boolean allowLegacy,
+                                 CameraPreview preview, FrameCallback frameCallback) {
+        String camera2Id = findCameraId(context, cameraId, allowLegacy);
+        if (camera2Id == null) {
+            return null;
+        }
+        try {
+            return new Camera2Backend(context, camera2Id, preview, frameCallback);
+        } catch (CameraAccessException | RuntimeException e) {
+            Log.w(TAG, "Unable to use camera2 for camera " + camera2Id, e);
+            return null;
+        }
+    }
+
+    private static String findCameraId(Context context, int cameraId, boolean allowLegacy) {
+        CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        if (cameraManager == null) {
+            return null;
+        }
+        try {
+            for (String id : cameraManager.getCameraIdList()) {
+                CameraCharacteristics characteristics = cameraManager.getCameraCharacteristics(id);
+                boolean matches = cameraId == -1
+                        ? isFacing(characteristics, CameraMetadata.LENS_FACING_BACK)
+                        : id.equals(String.valueOf(cameraId));
+                if (!matches) {
+                    continue;
+                }
+                Integer level = characteristics.get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+                boolean legacy = level == null
+                        || level == CameraMetadata.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+                return !legacy || allowLegacy ? id : null;
+            }
+        } catch (CameraAccessException | RuntimeException e) {
+            Log.w(TAG, "Unable to query cameras", e);
+        }
+        return null;
+    }
+
+    private static boolean isFacing(CameraCharacteristics characteristics, int facing) {
+        Integer lensFacing = characteristics.get(CameraCharacteristics.LENS_FACING);
+        return lensFacing != null && lensFacing == facing;
+    }
+
+    private Camera2Backend(Context context, String cameraId, CameraPreview preview, FrameCallback frameCallback)
+            throws CameraAccessException {
+        mCameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        mCameraId = cameraId;
+        mCharacteristics = mCameraManager.getCameraCharacteristics(cameraId);
+        mPreview = preview;
+        mFrameCallback = frameCallback;
+        mAfMode = chooseAfMode(mCharacteristics.get(CameraCharacteristics.CONTROL_AF_AVAILABLE_MODES));
+        mFrameThread.start();
+        mFrameHandler = new Handler(mFrameThread.getLooper());
+    }
+
+    private static int chooseAfMode(int[] availableModes) {
+        if (availableModes != null) {
+            for (int mode : AF_MODES) {
+                for (int available : availableModes) {
+                    if (mode == available) {
+                        return mode;
+                    }
+                }
+            }
+        }
+        return CameraMetadata.CONTROL_AF_MODE_OFF;
+    }
+
+    /** Opens the camera; the session starts once the preview surface is available. */
+    void open() {
+        SurfaceHolder holder = mPreview.getHolder();
+        holder.addCallback(this);
+        mPreview.setExternalBackend(this);
+        Surface surface = holder.getSurface();
+        mSurfaceValid = surface != null && surface.isValid();
+        Rect surfaceFrame = holder.getSurfaceFrame();
+        mSurfaceWidth = surfaceFrame.width();
+        mSurfaceHeight = surfaceFrame.height();
+        try {
+            mCameraManager.openCamera(mCameraId, mStateCallback, mMainHandler);
+        } catch (CameraAccessException | SecurityException e) {
+            Log.e(TAG, "Unable to open camera " + mCameraId, e);
+        }
+    }
+
+    /**
+     * Closes the camera. The reader and the frame thread go once every frame still being decoded
+     * has been recycled, as closing an image invalidates its plane.
+     */
+    void close() {
+        mClosed = true;
+        SurfaceHolder holder = mPreview.getHolder();
+        holder.removeCallback(this);
+        holder.setSizeFromLayout();
+        mPreview.setExternalBackend(null);
+        closeSession();
+        if (mCameraDevice != null) {
+            mCameraDevice.close();
+            mCameraDevice = null;
+        }
+        final ImageReader imageReader = mImageReader;
+        mImageReader = null;
+        mFrameHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mReleased = true;
+                mReleasedImageReader = imageReader;
+                releaseIfIdle();
+            }
+        });
+    }
+
+    // on the frame thread
+    private void releaseIfIdle() {
+        if (!mReleased || !mImagesInFlight.isEmpty()) {
+            return;
+        }
+        if (mReleasedImageReader != null) {
+            mReleasedImageReader.close();
+            mReleasedImageReader = null;
+        }
+        mFrameThread.quitSafely();
+    }
+
+    private void closeSession() {
+        if (mCaptureSession != null) {
+            mCaptureSession.close();
+            mCaptureSession = null;
+        }
+        mRequestBuilder = null;
+        mFocusStartedAt = 0;
+        mLensMovingSince = 0;
+    }
+
+    private final CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(CameraDevice camera) {
+            if (mClosed) {
+                camera.close();
+                return;
+            }
+            mCameraDevice = camera;
+            startSessionIfReady();
+        }
+
+        @Override
+        public void onDisconnected(CameraDevice camera) {
+            camera.close();
+            if (camera == mCameraDevice) {
+                closeSession();
+                mCameraDevice = null;
+            }
+        }
+
+        @Override
+        public void onError(CameraDevice camera, int error) {
+            Log.e(TAG, "Camera " + mCameraId + " failed with error " + error);
+            onDisconnected(camera);
+        }
+    };
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        mSurfaceValid = true;
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        mSurfaceWidth = width;
+        mSurfaceHeight = height;
+        startSessionIfReady();
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        mSurfaceValid = false;
+        closeSession();
+    }
+
+    private void startSessionIfReady() {
+        if (mClosed || mCameraDevice == null || !mSurfaceValid || mCaptureSession != null) {
+            return;
+        }
+        if (mPreviewSize == null && !setupPreviewSize()) {
+            return;
+        }
+        if (mSurfaceWidth != mPreviewSize.x || mSurfaceHeight != mPreviewSize.y) {
+            // camera2 only renders into surfaces of a supported size, continues in surfaceChanged()
+            mPreview.getHolder().setFixedSize(mPreviewSize.x, mPreviewSize.y);
+            return;
+        }
+        if (mImageReader == null) {
+            // every buffer may be out for decoding, acquireLatestImage() needs one more to work with
+            mImageReader = ImageReader.newInstance(mPreviewSize.x, mPreviewSize.y,
+                    ImageFormat.YUV_420_888, mPreviewBufferCount + 1);
+            mImageReader.setOnImageAvailableListener(mImageAvailableListener, mFrameHandler);
+        }
+        try {
+            mCameraDevice.createCaptureSession(Arrays.asList(mPreview.getHolder().getSurface(),
+                    mImageReader.getSurface()), mSessionStateCallback, mMainHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Unable to create capture session", e);
+        }
+    }
+
+    private boolean setupPreviewSize() {
+        StreamConfigurationMap map = mCharacteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            return false;
+        }
+        PreviewSizePolicy policy = mPreview.getPreviewSizePolicy();
+        List<Size> previewSizes = Arrays.asList(map.getOutputSizes(SurfaceHolder.class));
+        List<Point> sizes = new ArrayList<>();
+        List<Point> fastSizes = new ArrayList<>();
+        for (Size size : map.getOutputSizes(ImageFormat.YUV_420_888)) {
+            if (previewSizes.contains(size)) {
+                Point point = new Point(size.getWidth(), size.getHeight());
+                sizes.add(point);
+                // sizes the sensor cannot stream at the highest frame rate wanted
+                if (map.getOutputMinFrameDuration(ImageFormat.YUV_420_888, size) * policy.getMaxFps()
+                        <= 1000000000L) {
+                    fastSizes.add(point);
+                }
+            }
+        }
+
+        Integer sensorOrientation = mCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        int orientation = sensorOrientation != null ? sensorOrientation : 0;
+        boolean frontFacing = isFacing(mCharacteristics, CameraMetadata.LENS_FACING_FRONT);
+        int displayRotation = mPreview.getDisplayRotation();
+        mPreviewSize = mPreview.getOptimalPreviewSize(fastSizes.isEmpty() ? sizes : fastSizes,
+                CameraSessionConfig.getDisplayOrientation(orientation, frontFacing, displayRotation));
+        if (mPreviewSize == null) {
+            return false;
+        }
+        mFpsRange = chooseFpsRange(policy);
+
+        mSessionConfig = new CameraSessionConfig(mPreviewSize.x, mPreviewSize.y, ImageFormat.YUV_420_888,
+                orientation, frontFacing, displayRotation);
+        mPreview.adjustViewSize(mPreviewSize.x, mPreviewSize.y, mSessionConfig.getDisplayOrientation());
+        return true;
+    }
+
+    private Range<Integer> chooseFpsRange(PreviewSizePolicy policy) {
+        Range<Integer>[] available = mCharacteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+        if (available == null) {
+            return null;
+        }
+        List<int[]> ranges = new ArrayList<>();
+        for (Range<Integer> range : available) {
+            ranges.add(new int[]{range.getLower(), range.getUpper()});
+        }
+        int[] range = policy.chooseFpsRange(ranges, 1);
+        return range != null ? available[ranges.indexOf(range)] : null;
+    }
+
+    private final CameraCaptureSession.StateCallback mSessionStateCallback = new CameraCaptureSession.StateCallback() {
+        @Override
+        public void onConfigured(CameraCaptureSession session) {
+            if (mClosed || mCameraDevice == null || session.getDevice() != mCameraDevice) {
+                session.close();
+                return;
+            }
+            mCaptureSession = session;
+            updateRepeatingRequest();
+            if (mAutoFocus && !isContinuousAf()) {
+                safeAutoFocus();
+            }
+        }
+
+        @Override
+        public void onConfigureFailed(CameraCaptureSession session) {
+            Log.e(TAG, "Unable to configure capture session");
+        }
+    };
+
+    // rebuilds the preview request after the session, the focus area or frame delivery changed
+    private void updateRepeatingRequest() {
+        if (mCaptureSession == null) {
+            return;
+        }
+        try {
+            CaptureRequest.Builder builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            builder.addTarget(mPreview.getHolder().getSurface());
+            if (!mPaused) {
+                builder.addTarget(mImageReader.getSurface());
+            }
+            builder.set(CaptureRequest.CONTROL_MODE, CameraMetadata.CONTROL_MODE_AUTO);
+            if (mFpsRange != null) {
+                builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mFpsRange);
+            }
+            if (mAfMode != CameraMetadata.CONTROL_AF_MODE_OFF) {
+                // without autofocus the lens stays where the last scan left it
+                builder.set(CaptureRequest.CONTROL_AF_MODE, mAutoFocus || !isContinuousAf()
+                        ? mAfMode : CameraMetadata.CONTROL_AF_MODE_AUTO);
+            }
+            if (mFocusRegions != null) {
+                if (getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AF) > 0) {
+                    builder.set(CaptureRequest.CONTROL_AF_REGIONS, mFocusRegions);
+                }
+                if (getMaxRegions(CameraCharacteristics.CONTROL_MAX_REGIONS_AE) > 0) {
+                    builder.set(CaptureRequest.CONTROL_AE_REGIONS, mFocusRegions);
+                }
+            }
+            mRequestBuilder = builder;
+            mCaptureSession.setRepeatingRequest(builder.build(), mCaptureCallback, mFrameHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.e(TAG, "Unable to start preview", e);
+        }
+    }
+
+    private int getMaxRegions(CameraCharacteristics.Key<Integer> key) {
+        Integer maxRegions = mCharacteristics.get(key);
+        return maxRegions != null ? maxRegions : 0;
+    }
+
+    private boolean isContinuousAf() {
+        return mAfMode == CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_PICTURE
+                || mAfMode == CameraMetadata.CONTROL_AF_MODE_CONTINUOUS_VIDEO;
+    }
+
+    // sends a single AF trigger along with the preview request
+    private boolean triggerAf(int trigger) {
+        if (mCaptureSession == null || mRequestBuilder == null) {
+            return false;
+        }
+        try {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, trigger);
+            mCaptureSession.capture(mRequestBuilder.build(), mCaptureCallback, mFrameHandler);
+            return true;
+        } catch (CameraAccessException | IllegalStateException e) {
+            Log.w(TAG, "Unable to trigger autofocus", e);
+            return false;
+        } finally {
+            mRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER, CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+        }
+    }
+
+    private final CameraCaptureSession.CaptureCallback mCaptureCallback = new CameraCaptureSession.CaptureCallback() {
+        @Override
+        public void onCaptureCompleted(CameraCaptureSession session, CaptureRequest request,
+                                       TotalCaptureResult result) {
+            Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+            if (afState != null) {
+                onAfState(afState);
+            }
+        }
+    };
+
+    // on the frame thread
+    private void onAfState(int afState) {
+        long now = SystemClock.elapsedRealtime();
+        switch (afState) {
+            case CameraMetadata.CONTROL_AF_STATE_PASSIVE_SCAN:
+                if (mLensMovingSince == 0) {
+                    mLensMovingSince = now;
+                }
+                break;
+            case CameraMetadata.CONTROL_AF_STATE_PASSIVE_FOCUSED:
+            case CameraMetadata.CONTROL_AF_STATE_PASSIVE_UNFOCUSED:
+                if (mLensMovingSince != 0) {
+                    mLensMovingSince = 0;
+                    mRefocusPolicy.onFocusFinished(now);
+                }
+                break;
+            case CameraMetadata.CONTROL_AF_STATE_FOCUSED_LOCKED:
+            case CameraMetadata.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED:
+                if (mFocusStartedAt != 0) {
+                    mFocusStartedAt = 0;
+                    mRefocusPolicy.onFocusFinished(now);
+                    if (mAutoFocus && isContinuousAf()) {
+                        // the trigger locked continuous focus, unlock it again
+                        mMainHandler.post(mResumeContinuousFocus);
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private final Runnable mResumeContinuousFocus = new Runnable() {
+        @Override
+        public void run() {
+            triggerAf(CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
+        }
+    };
+
+    private final Runnable mRequestFocus = new Runnable() {
+        @Override
+        public void run() {
+            safeAutoFocus();
+        }
+    };
+
+    private final ImageReader.OnImageAvailableListener mImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image;
+            try {
+                image = reader.acquireLatestImage();
+            } catch (IllegalStateException e) {
+                // reader was closed in the meantime
+                return;
+            }
+            if (image == null) {
+                return;
+            }
+            if (mPaused || mReleased || mImagesInFlight.size() >= mPreviewBufferCount) {
+                // every buffer is being decoded, skip the frame like the old API does
+                image.close();
+                return;
+            }
+
+            long requestedAt = mFirstFrameRequestedAt;
+            if (requestedAt != 0) {
+                mFirstFrameRequestedAt = 0;
+                mFirstFrameLatencyMillis = SystemClock.elapsedRealtime() - requestedAt;
+                Log.d(TAG, "First preview frame after " + mFirstFrameLatencyMillis + " ms");
+            }
+            // the Y plane of YUV_420_888 always has a pixel stride of 1
+            Image.Plane plane = image.getPlanes()[0];
+            PreviewFrame frame = new PreviewFrame(plane.getBuffer(), image.getWidth(), image.getHeight(),
+                    plane.getRowStride(), mSessionConfig.getDisplayOrientation(), Camera2Backend.this);
+            mImagesInFlight.put(frame, image);
+            mFrameCallback.onPreviewFrame(frame);
+        }
+    };
+
+    /** Closes the image behind a decoded or dropped frame. Safe to call from any thread. */
+    @Override
+    public void recycle(final PreviewFrame frame) {
+        mFrameHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                Image image = mImagesInFlight.remove(frame);
+                if (image != null) {
+                    image.close();
+                    releaseIfIdle();
+                }
+            }
+        });
+    }
+
+    @Override
+    public void setPreviewCallbackPaused(boolean paused) {
+        if (paused == mPaused) {
+            return;
+        }
+        mPaused = paused;
+        if (!paused) {
+            markFirstFrameRequested();
+        }
+        updateRepeatingRequest();
+    }
+
+    @Override
+    public boolean isPreviewCallbackPaused() {
+        return mPaused;
+    }
+
+    /** Takes effect when the image reader is created, i.e. before the first session starts. */
+    @Override
+    public void setPreviewBufferCount(int previewBufferCount) {
+        mPreviewBufferCount = previewBufferCount;
+    }
+
+    @Override
+    public CameraSessionConfig getSessionConfig() {
+        return mSessionConfig;
+    }
+
+    @Override
+    public int getDisplayOrientation() {
+        CameraSessionConfig sessionConfig = mSessionConfig;
+        if (sessionConfig != null) {
+            return sessionConfig.getDisplayOrientation();
+        }
+        Integer sensorOrientation = mCharacteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        return CameraSessionConfig.getDisplayOrientation(sensorOrientation != null ? sensorOrientation : 0,
+                isFacing(mCharacteristics, CameraMetadata.LENS_FACING_FRONT), mPreview.getDisplayRotation());
+    }
+
+    @Override
+    public void onDisplayRotationChanged(int displayRotation) {
+        CameraSessionConfig sessionConfig = mSessionConfig;
+        if (sessionConfig != null) {
+            mSessionConfig = sessionConfig.withDisplayRotation(displayRotation);
+        }
+    }
+
+    @Override
+    public void setAutoFocus(boolean state) {
+        if (state == mAutoFocus) {
+            return;
+        }
+        mAutoFocus = state;
+        mRefocusPolicy.reset(SystemClock.elapsedRealtime());
+        updateRepeatingRequest();
+    }
+
+    @Override
+    public void safeAutoFocus() {
+        if (mAfMode == CameraMetadata.CONTROL_AF_MODE_OFF) {
+            return;
+        }
+        mMainHandler.removeCallbacks(mRequestFocus);
+        if (triggerAf(CameraMetadata.CONTROL_AF_TRIGGER_START)) {
+            mFocusStartedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public boolean isFocusing() {
+        long now = SystemClock.elapsedRealtime();
+        long focusStartedAt = mFocusStartedAt;
+        long lensMovingSince = mLensMovingSince;
+        return (focusStartedAt != 0 && now - focusStartedAt < MAX_FOCUS_MILLIS)
+                || (lensMovingSince != 0 && now - lensMovingSince < MAX_FOCUS_MILLIS);
+    }
+
+    @Override
+    public void onFrameSharpness(float sharpness) {
+        if (mAutoFocus && mRefocusPolicy.onFrame(sharpness, SystemClock.elapsedRealtime())) {
+            mMainHandler.post(mRequestFocus);
+        }
+    }
+
+    @Override
+    public void onResultDecoded() {
+        mRefocusPolicy.onResult(SystemClock.elapsedRealtime());
+    }
+
+    @Override
+    public void setupFocusArea(Rect focusRect) {
+        Rect activeArray = mCharacteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+        if (activeArray == null) {
+            return;
+        }
+        Rect region = new Rect(toSensor(focusRect.left, activeArray.width()),
+                toSensor(focusRect.top, activeArray.height()),
+                toSensor(focusRect.right, activeArray.width()),
+                toSensor(focusRect.bottom, activeArray.height()));
+        if (region.isEmpty()) {
+            return;
+        }
+        mFocusRegions = new MeteringRectangle[]{
+                new MeteringRectangle(region, MeteringRectangle.METERING_WEIGHT_MAX)};
+        updateRepeatingRequest();
+    }
+
+    // maps a driver coordinate from -1000..1000 onto 0..size of the active array
+    private static int toSensor(int coordinate, int size) {
+        int clamped = Math.max(-1000, Math.min(1000, coordinate));
+        return (clamped + 1000) * (size - 1) / 2000;
+    }
+
+    @Override
+    public void markFirstFrameRequested() {
+        if (mFirstFrameRequestedAt == 0) {
+            mFirstFrameRequestedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    @Override
+    public long getFirstFrameLatencyMillis() {
+        return mFirstFrameLatencyMillis;
+    }
+}
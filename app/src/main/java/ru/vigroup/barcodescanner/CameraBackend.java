@@ -0,0 +1,52 @@
+package ru.vigroup.barcodescanner;
+
+import android.graphics.Rect;
+
+/**
+ * The camera API behind a {@link BarcodeScannerView}. {@link CameraPreview} drives
+ * {@code android.hardware.Camera} on every device, {@link Camera2Backend} drives camera2 on
+ * API 21+. Both render into the same {@link CameraPreview}. Frames go back to the camera that
+ * delivered them once decoded, through {@link PreviewFrame#getRecycler()} or, for NV21 buffers of
+ * the old API, {@link CameraPreview#recyclePreviewBuffer(byte[])}.
+ */
+public interface CameraBackend {
+    /** Receives the frames of a backend that does not go through {@code Camera.PreviewCallback}. */
+    interface FrameCallback {
+        void onPreviewFrame(PreviewFrame frame);
+    }
+
+    /** Stops or restarts frame delivery while the preview itself keeps running. */
+    void setPreviewCallbackPaused(boolean paused);
+
+    boolean isPreviewCallbackPaused();
+
+    /** Number of preview buffers that may be out for decoding at the same time. */
+    void setPreviewBufferCount(int previewBufferCount);
+
+    /** Preview parameters of the running camera, or {@code null} before they have been negotiated. */
+    CameraSessionConfig getSessionConfig();
+
+    /** Clockwise rotation in degrees that brings a preview frame upright on the display. */
+    int getDisplayOrientation();
+
+    /** The display rotated to {@code displayRotation} degrees. */
+    void onDisplayRotationChanged(int displayRotation);
+
+    void setAutoFocus(boolean state);
+
+    /** Focuses once now, e.g. after a tap. */
+    void safeAutoFocus();
+
+    boolean isFocusing();
+
+    void onFrameSharpness(float sharpness);
+
+    void onResultDecoded();
+
+    /** Focuses and meters on {@code focusRect}, in camera driver coordinates from -1000 to 1000. */
+    void setupFocusArea(Rect focusRect);
+
+    void markFirstFrameRequested();
+
+    long getFirstFrameLatencyMillis();
+}
@@ -0,0 +1,42 @@
+package ru.vigroup.barcodescanner;
+
+import android.hardware.Camera;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+/**
+ * Opens the camera off the main thread. Preview callbacks are delivered on the looper of the
+ * thread that opened the camera, so they arrive here instead of competing with the UI.
+ */
+public class CameraHandlerThread extends HandlerThread {
+    private static final String TAG = "CameraHandlerThread";
+
+    private final BarcodeScannerView mScannerView;
+    private final Handler mHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    public CameraHandlerThread(BarcodeScannerView scannerView) {
+        super(TAG);
+        mScannerView = scannerView;
+        start();
+        mHandler = new Handler(getLooper());
+    }
+
+    public void startCamera(final int cameraId) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // the preview needs the id to look up orientation and facing of the camera
+                final int openedCameraId = cameraId == -1 ? CameraUtils.getDefaultCameraId() : cameraId;
+                final Camera camera = CameraUtils.getCameraInstance(cameraId);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mScannerView.onCameraOpened(CameraHandlerThread.this, camera, openedCameraId);
+                    }
+                });
+            }
+        });
+    }
+}
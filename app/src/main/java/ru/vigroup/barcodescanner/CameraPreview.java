@@ -2,37 +2,61 @@ package ru.vigroup.barcodescanner;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.hardware.SensorManager;
 import android.os.Handler;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.Display;
 import android.view.MotionEvent;
 import android.view.OrientationEventListener;
-import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.ViewGroup;
 import android.view.WindowManager;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback {
+public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback, CameraBackend {
     private static final String TAG = "CameraPreview";
+    private static final int DEFAULT_PREVIEW_BUFFER_COUNT = 3;
 
-    private Camera mCamera;
+    private volatile Camera mCamera;
+    // the id mCamera was opened with, -1 for the default back camera
+    private volatile int mCameraId = -1;
     private Handler mAutoFocusHandler;
-    private boolean mPreviewing = false;
+    private volatile FocusController mFocusController;
+    private volatile boolean mPreviewing = false;
     private boolean mAutoFocus = true;
     private boolean mSurfaceCreated = false;
-    private Camera.PreviewCallback mPreviewCallback;
+    private volatile Camera.PreviewCallback mPreviewCallback;
     private int mLastRotation;
     private OrientationEventListener mOrientationEventListener;
+    private int mPreviewBufferCount = DEFAULT_PREVIEW_BUFFER_COUNT;
+    private final FrameBufferPool mPreviewBufferPool = new FrameBufferPool();
+    private volatile CameraSessionConfig mSessionConfig;
+    // buffers handed to the camera and not delivered yet, guards mBuffersInFlight as well
+    private final Set<byte[]> mQueuedBuffers = new HashSet<>();
+    private int mBuffersInFlight;
+    private volatile boolean mPreviewCallbackAttached = false;
+    private boolean mPreviewCallbackPaused = false;
+    private volatile long mFirstFrameRequestedAt;
+    private volatile long mFirstFrameLatencyMillis = -1;
+    private Display mDisplay;
+    // a camera2 session rendering into this view, see Camera2Backend
+    private volatile CameraBackend mExternalBackend;
+    private PreviewSizePolicy mPreviewSizePolicy = new PreviewSizePolicy();
+    // the visible part of the preview and the framing rect width in it, 0 before layout
+    private int mViewFinderWidth;
+    private int mViewFinderHeight;
+    private float mFramingWidth;
 
     public CameraPreview(Context context) {
         super(context);
@@ -52,10 +76,9 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
             public void onOrientationChanged(int orientation) {
                 if (orientation == ORIENTATION_UNKNOWN) return;
 
-                WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-                Display display = wm.getDefaultDisplay();
-                int rotation = display.getRotation();
+                int rotation = getDefaultDisplay().getRotation();
                 if (rotation != mLastRotation) {
+                    updateDisplayRotation();
                     if (mCamera != null) {
                         mCamera.setDisplayOrientation(getDisplayOrientation());
                     }
@@ -78,9 +101,17 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
     }
 
     public void setCamera(Camera camera, Camera.PreviewCallback previewCallback) {
+        setCamera(camera, -1, previewCallback);
+    }
+
+    /** {@code cameraId} is the id {@code camera} was opened with, -1 for the default back camera. */
+    public void setCamera(Camera camera, int cameraId, Camera.PreviewCallback previewCallback) {
         mCamera = camera;
+        mCameraId = cameraId;
+        mSessionConfig = null;
         mPreviewCallback = previewCallback;
         mAutoFocusHandler = new Handler();
+        mFocusController = camera != null ? new FocusController(camera, mAutoFocusHandler) : null;
     }
 
     public void initCameraPreview() {
@@ -104,6 +135,7 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         if (surfaceHolder.getSurface() == null) {
             return;
         }
+        updateDisplayRotation();
         if (mPreviewing) {
             requestLayout();
         }
@@ -123,14 +155,12 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
                 setupFocusMode();
                 mCamera.setPreviewDisplay(getHolder());
                 mCamera.setDisplayOrientation(getDisplayOrientation());
-                mCamera.setOneShotPreviewCallback(mPreviewCallback);
+                if (!mPreviewCallbackPaused) {
+                    attachPreviewCallback();
+                }
                 mCamera.startPreview();
                 if (mAutoFocus) {
-                    if (mSurfaceCreated) { // check if surface created before using autofocus
-                        safeAutoFocus();
-                    } else {
-                        scheduleAutoFocus(); // wait 1 sec and then do check again
-                    }
+                    mFocusController.start();
                 }
             } catch (Exception e) {
                 Log.e(TAG, e.toString(), e);
@@ -140,24 +170,11 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
 
     private void setupFocusMode() {
         if (mCamera != null) {
-            Camera.Parameters parameters = mCamera.getParameters();
-
-            List<String> supportedFocusModes = parameters.getSupportedFocusModes();
-
-            List<String> modes = Arrays.asList(Camera.Parameters.FOCUS_MODE_AUTO,
-                    Camera.Parameters.FOCUS_MODE_MACRO
-            );
-
-            for (String mode : modes) {
-                if (supportedFocusModes.contains(mode)) {
-                    parameters.setFocusMode(mode);
-                    mCamera.setParameters(parameters);
-                    break;
-                }
-            }
+            mFocusController.setupFocusMode();
         }
     }
 
+    @Override
     public void setupFocusArea(final Rect focusRect) {
         if (mCamera != null) {
             try {
@@ -181,14 +198,40 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         }
     }
 
+    /** Focuses once now, e.g. after a tap. */
+    @Override
     public void safeAutoFocus() {
-        try {
-            mCamera.cancelAutoFocus();
-            mCamera.autoFocus(autoFocusCB);
-        } catch (RuntimeException re) {
-            // Horrible hack to deal with autofocus errors on Sony devices
-            // See https://github.com/dm77/barcodescanner/issues/7 for example
-            scheduleAutoFocus(); // wait 1 sec and then do check again
+        FocusController focusController = mFocusController;
+        if (focusController != null) {
+            focusController.requestFocus();
+        }
+    }
+
+    /** Whether the lens is moving, so the current frames are not worth decoding. */
+    @Override
+    public boolean isFocusing() {
+        FocusController focusController = mFocusController;
+        return focusController != null && focusController.isFocusing();
+    }
+
+    /**
+     * Reports the sharpness of the framing rect in a frame, or {@link Float#NaN} when unknown,
+     * so focus can be requested when it drops. Safe to call from any thread.
+     */
+    @Override
+    public void onFrameSharpness(float sharpness) {
+        FocusController focusController = mFocusController;
+        if (focusController != null && mAutoFocus) {
+            focusController.onFrame(sharpness);
+        }
+    }
+
+    /** Reports a decoded code, which tells the focus controller that focus is good enough. */
+    @Override
+    public void onResultDecoded() {
+        FocusController focusController = mFocusController;
+        if (focusController != null) {
+            focusController.onResult();
         }
     }
 
@@ -196,8 +239,8 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         if (mCamera != null) {
             try {
                 mPreviewing = false;
-                mCamera.cancelAutoFocus();
-                mCamera.setOneShotPreviewCallback(null);
+                mFocusController.stop();
+                detachPreviewCallback();
                 mCamera.stopPreview();
             } catch (Exception e) {
                 Log.e(TAG, e.toString(), e);
@@ -205,37 +248,242 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         }
     }
 
+    /**
+     * Number of buffers queued to the camera; frames arriving while all of them are being
+     * decoded are skipped by the camera. Takes effect on the next preview start.
+     */
+    @Override
+    public void setPreviewBufferCount(int previewBufferCount) {
+        mPreviewBufferCount = previewBufferCount;
+    }
+
+    /** Gives a decoded or dropped preview buffer back to the camera, or to the pool if it has stopped. */
+    public void recyclePreviewBuffer(byte[] buffer) {
+        synchronized (mQueuedBuffers) {
+            if (mBuffersInFlight > 0) {
+                mBuffersInFlight--;
+            }
+            if (mPreviewCallbackAttached && buffer.length == mPreviewBufferPool.getBufferSize()
+                    && queuePreviewBuffer(buffer)) {
+                return;
+            }
+        }
+        mPreviewBufferPool.release(buffer);
+    }
+
+    /**
+     * Stops or restarts frame delivery while the preview itself keeps running, so scanning can be
+     * paused without releasing the camera.
+     */
+    @Override
+    public void setPreviewCallbackPaused(boolean paused) {
+        if (paused == mPreviewCallbackPaused) {
+            return;
+        }
+        mPreviewCallbackPaused = paused;
+        if (mCamera == null || !mPreviewing) {
+            return;
+        }
+        try {
+            if (paused) {
+                detachPreviewCallback();
+            } else {
+                markFirstFrameRequested();
+                attachPreviewCallback();
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, e.toString(), e);
+        }
+    }
+
+    @Override
+    public boolean isPreviewCallbackPaused() {
+        return mPreviewCallbackPaused;
+    }
+
+    /** Starts timing until the next preview frame arrives, unless a measurement is already running. */
+    @Override
+    public void markFirstFrameRequested() {
+        if (mFirstFrameRequestedAt == 0) {
+            mFirstFrameRequestedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Time from the last camera start or scanning resume to the first preview frame, or -1 if no
+     * frame has been measured yet.
+     */
+    @Override
+    public long getFirstFrameLatencyMillis() {
+        return mFirstFrameLatencyMillis;
+    }
+
+    private void attachPreviewCallback() {
+        synchronized (mQueuedBuffers) {
+            mCamera.setPreviewCallbackWithBuffer(mBufferedPreviewCallback);
+            mPreviewCallbackAttached = true;
+            int missing = mPreviewBufferCount - mQueuedBuffers.size() - mBuffersInFlight;
+            for (int i = 0; i < missing; i++) {
+                queuePreviewBuffer(mPreviewBufferPool.acquire());
+            }
+        }
+    }
+
+    private void detachPreviewCallback() {
+        synchronized (mQueuedBuffers) {
+            mPreviewCallbackAttached = false;
+            mCamera.setPreviewCallbackWithBuffer(null);
+            // the camera drops its queue along with the callback
+            for (byte[] buffer : mQueuedBuffers) {
+                mPreviewBufferPool.release(buffer);
+            }
+            mQueuedBuffers.clear();
+        }
+    }
+
+    // must hold mQueuedBuffers
+    private boolean queuePreviewBuffer(byte[] buffer) {
+        Camera camera = mCamera;
+        if (camera == null) {
+            return false;
+        }
+        try {
+            camera.addCallbackBuffer(buffer);
+            mQueuedBuffers.add(buffer);
+            return true;
+        } catch (RuntimeException e) {
+            // camera was released in the meantime
+            return false;
+        }
+    }
+
+    private final Camera.PreviewCallback mBufferedPreviewCallback = new Camera.PreviewCallback() {
+        @Override
+        public void onPreviewFrame(byte[] data, Camera camera) {
+            if (data == null) {
+                return;
+            }
+            synchronized (mQueuedBuffers) {
+                if (!mQueuedBuffers.remove(data)) {
+                    // delivered after the callback was detached, the buffer is back in the pool
+                    return;
+                }
+                mBuffersInFlight++;
+            }
+
+            long requestedAt = mFirstFrameRequestedAt;
+            if (requestedAt != 0) {
+                mFirstFrameRequestedAt = 0;
+                mFirstFrameLatencyMillis = SystemClock.elapsedRealtime() - requestedAt;
+                Log.d(TAG, "First preview frame after " + mFirstFrameLatencyMillis + " ms");
+            }
+
+            Camera.PreviewCallback previewCallback = mPreviewCallback;
+            if (previewCallback != null) {
+                previewCallback.onPreviewFrame(data, camera);
+            } else {
+                recyclePreviewBuffer(data);
+            }
+        }
+    };
+
     public void setupCameraParameters() {
-        Camera.Size optimalSize = getOptimalPreviewSize();
         Camera.Parameters parameters = mCamera.getParameters();
-        parameters.setPreviewSize(optimalSize.width, optimalSize.height);
+        List<Point> sizes = new ArrayList<>();
+        for (Camera.Size size : parameters.getSupportedPreviewSizes()) {
+            sizes.add(new Point(size.width, size.height));
+        }
+        Point optimalSize = getOptimalPreviewSize(sizes, getDisplayOrientation());
+        parameters.setPreviewSize(optimalSize.x, optimalSize.y);
+        List<int[]> fpsRanges = parameters.getSupportedPreviewFpsRange();
+        int[] fpsRange = fpsRanges != null ? mPreviewSizePolicy.chooseFpsRange(fpsRanges, 1000) : null;
+        if (fpsRange != null) {
+            parameters.setPreviewFpsRange(fpsRange[Camera.Parameters.PREVIEW_FPS_MIN_INDEX],
+                    fpsRange[Camera.Parameters.PREVIEW_FPS_MAX_INDEX]);
+        }
         mCamera.setParameters(parameters);
-        adjustViewSize(optimalSize);
+
+        Camera.CameraInfo info = getCameraInfo();
+        mSessionConfig = new CameraSessionConfig(optimalSize.x, optimalSize.y,
+                parameters.getPreviewFormat(), info.orientation,
+                info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT, getDisplayRotation());
+
+        mPreviewBufferPool.resize(optimalSize.x * optimalSize.y
+                * ImageFormat.getBitsPerPixel(parameters.getPreviewFormat()) / 8);
+        adjustViewSize(optimalSize.x, optimalSize.y, mSessionConfig.getDisplayOrientation());
+    }
+
+    /**
+     * Preview parameters of the running camera, or {@code null} before they have been negotiated.
+     */
+    @Override
+    public CameraSessionConfig getSessionConfig() {
+        return mSessionConfig;
+    }
+
+    private void updateDisplayRotation() {
+        int displayRotation = getDisplayRotation();
+        onDisplayRotationChanged(displayRotation);
+        CameraBackend externalBackend = mExternalBackend;
+        if (externalBackend != null) {
+            externalBackend.onDisplayRotationChanged(displayRotation);
+        }
+    }
+
+    @Override
+    public void onDisplayRotationChanged(int displayRotation) {
+        CameraSessionConfig sessionConfig = mSessionConfig;
+        if (sessionConfig != null) {
+            mSessionConfig = sessionConfig.withDisplayRotation(displayRotation);
+        }
+    }
+
+    /**
+     * Lets a camera other than the one given to {@link #setCamera} render into this view, so it
+     * gets the display rotation and focus taps. Pass {@code null} when it is closed.
+     */
+    void setExternalBackend(CameraBackend externalBackend) {
+        mExternalBackend = externalBackend;
+    }
+
+    /** Rotation of the display in degrees. */
+    int getDisplayRotation() {
+        return CameraSessionConfig.toDegrees(getDefaultDisplay().getRotation());
+    }
+
+    private Display getDefaultDisplay() {
+        if (mDisplay == null) {
+            WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+            mDisplay = wm.getDefaultDisplay();
+        }
+        return mDisplay;
     }
 
-    private void adjustViewSize(Camera.Size cameraSize) {
-        Point previewSize = convertSizeToLandscapeOrientation(new Point(getWidth(), getHeight()));
-        float cameraRatio = ((float) cameraSize.width) / cameraSize.height;
+    /** Resizes the view to the aspect ratio of a {@code cameraWidth x cameraHeight} preview. */
+    void adjustViewSize(int cameraWidth, int cameraHeight, int displayOrientation) {
+        Point previewSize = convertSizeToLandscapeOrientation(new Point(getWidth(), getHeight()),
+                displayOrientation);
+        float cameraRatio = ((float) cameraWidth) / cameraHeight;
         float screenRatio = ((float) previewSize.x) / previewSize.y;
 
         if (screenRatio < cameraRatio) {
-            setViewSize((int) (previewSize.y * cameraRatio), previewSize.y);
+            setViewSize((int) (previewSize.y * cameraRatio), previewSize.y, displayOrientation);
         } else {
-            setViewSize(previewSize.x, (int) (previewSize.x / cameraRatio));
+            setViewSize(previewSize.x, (int) (previewSize.x / cameraRatio), displayOrientation);
         }
     }
 
-    private Point convertSizeToLandscapeOrientation(Point size) {
-        if (getDisplayOrientation() % 180 == 0) {
+    private Point convertSizeToLandscapeOrientation(Point size, int displayOrientation) {
+        if (displayOrientation % 180 == 0) {
             return size;
         } else {
             return new Point(size.y, size.x);
         }
     }
 
-    private void setViewSize(int width, int height) {
+    private void setViewSize(int width, int height, int displayOrientation) {
         ViewGroup.LayoutParams layoutParams = getLayoutParams();
-        if (getDisplayOrientation() % 180 == 0) {
+        if (displayOrientation % 180 == 0) {
             layoutParams.width = width;
             layoutParams.height = height;
         } else {
@@ -245,45 +493,64 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         setLayoutParams(layoutParams);
     }
 
+    @Override
     public int getDisplayOrientation() {
+        CameraSessionConfig sessionConfig = mSessionConfig;
+        if (sessionConfig != null) {
+            return sessionConfig.getDisplayOrientation();
+        }
+
+        Camera.CameraInfo info = getCameraInfo();
+        return CameraSessionConfig.getDisplayOrientation(info.orientation,
+                info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT, getDisplayRotation());
+    }
+
+    private Camera.CameraInfo getCameraInfo() {
+        int cameraId = mCameraId != -1 ? mCameraId : CameraUtils.getDefaultCameraId();
         Camera.CameraInfo info = new Camera.CameraInfo();
-        Camera.getCameraInfo(Camera.CameraInfo.CAMERA_FACING_BACK, info);
-        WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-        Display display = wm.getDefaultDisplay();
-
-        int rotation = display.getRotation();
-        int degrees = 0;
-        switch (rotation) {
-            case Surface.ROTATION_0:
-                degrees = 0;
-                break;
-            case Surface.ROTATION_90:
-                degrees = 90;
-                break;
-            case Surface.ROTATION_180:
-                degrees = 180;
-                break;
-            case Surface.ROTATION_270:
-                degrees = 270;
-                break;
-        }
-
-        int result;
-        if (info.facing == Camera.CameraInfo.CAMERA_FACING_FRONT) {
-            result = (info.orientation + degrees) % 360;
-            result = (360 - result) % 360;  // compensate the mirror
-        } else {  // back-facing
-            result = (info.orientation - degrees + 360) % 360;
-        }
-        return result;
-    }
-
-    private Camera.Size getOptimalPreviewSize() {
-        if (mCamera == null) {
-            return null;
-        }
-
-        List<Camera.Size> sizes = mCamera.getParameters().getSupportedPreviewSizes();
+        // a device without a back camera falls back to camera 0
+        Camera.getCameraInfo(cameraId != -1 ? cameraId : 0, info);
+        return info;
+    }
+
+    /** Chooses preview sizes and frame rates, takes effect on the next preview start. */
+    public void setPreviewSizePolicy(PreviewSizePolicy previewSizePolicy) {
+        mPreviewSizePolicy = previewSizePolicy;
+    }
+
+    public PreviewSizePolicy getPreviewSizePolicy() {
+        return mPreviewSizePolicy;
+    }
+
+    /**
+     * The part of the preview that is visible, {@code viewWidth x viewHeight} as the preview grows
+     * to cover it, and the width of the framing rect in it.
+     */
+    void setViewFinder(int viewWidth, int viewHeight, float framingWidth) {
+        mViewFinderWidth = viewWidth;
+        mViewFinderHeight = viewHeight;
+        mFramingWidth = framingWidth;
+    }
+
+    /**
+     * Picks the preview size, in sensor orientation, that {@link #setPreviewSizePolicy} prefers for
+     * the framing rect, or the one that best matches this view before the view finder is laid out.
+     */
+    Point getOptimalPreviewSize(List<Point> sizes, int displayOrientation) {
+        if (sizes == null || sizes.isEmpty()) return null;
+        if (mViewFinderWidth > 0 && mViewFinderHeight > 0 && mFramingWidth > 0) {
+            List<int[]> candidates = new ArrayList<>();
+            for (Point size : sizes) {
+                candidates.add(new int[]{size.x, size.y});
+            }
+            int[] size = mPreviewSizePolicy.chooseSize(candidates, displayOrientation,
+                    mViewFinderWidth, mViewFinderHeight, mFramingWidth);
+            return sizes.get(candidates.indexOf(size));
+        }
+        return getViewMatchingPreviewSize(sizes);
+    }
+
+    private Point getViewMatchingPreviewSize(List<Point> sizes) {
         int w = getWidth();
         int h = getHeight();
         if (DisplayUtils.getScreenOrientation(getContext()) == Configuration.ORIENTATION_PORTRAIT) {
@@ -296,34 +563,35 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
         double targetRatio = (double) w / h;
         if (sizes == null) return null;
 
-        Camera.Size optimalSize = null;
+        Point optimalSize = null;
         double minDiff = Double.MAX_VALUE;
 
         int targetHeight = h;
 
         // Try to find an size match aspect ratio and size
-        for (Camera.Size size : sizes) {
-            double ratio = (double) size.width / size.height;
+        for (Point size : sizes) {
+            double ratio = (double) size.x / size.y;
             if (Math.abs(ratio - targetRatio) > ASPECT_TOLERANCE) continue;
-            if (Math.abs(size.height - targetHeight) < minDiff) {
+            if (Math.abs(size.y - targetHeight) < minDiff) {
                 optimalSize = size;
-                minDiff = Math.abs(size.height - targetHeight);
+                minDiff = Math.abs(size.y - targetHeight);
             }
         }
 
         // Cannot find the one match the aspect ratio, ignore the requirement
         if (optimalSize == null) {
             minDiff = Double.MAX_VALUE;
-            for (Camera.Size size : sizes) {
-                if (Math.abs(size.height - targetHeight) < minDiff) {
+            for (Point size : sizes) {
+                if (Math.abs(size.y - targetHeight) < minDiff) {
                     optimalSize = size;
-                    minDiff = Math.abs(size.height - targetHeight);
+                    minDiff = Math.abs(size.y - targetHeight);
                 }
             }
         }
         return optimalSize;
     }
 
+    @Override
     public void setAutoFocus(boolean state) {
         if (mCamera != null && mPreviewing) {
             if (state == mAutoFocus) {
@@ -331,48 +599,26 @@ public class CameraPreview extends SurfaceView implements SurfaceHolder.Callback
             }
             mAutoFocus = state;
             if (mAutoFocus) {
-                if (mSurfaceCreated) { // check if surface created before using autofocus
-                    Log.v(TAG, "Starting autofocus");
-                    safeAutoFocus();
-                } else {
-                    scheduleAutoFocus(); // wait 1 sec and then do check again
-                }
+                Log.v(TAG, "Starting autofocus");
+                mFocusController.start();
             } else {
                 Log.v(TAG, "Cancelling autofocus");
-                mCamera.cancelAutoFocus();
-            }
-        }
-    }
-
-    private Runnable doAutoFocus = new Runnable() {
-        public void run() {
-            if (mCamera != null && mPreviewing && mAutoFocus && mSurfaceCreated) {
-                safeAutoFocus();
+                mFocusController.stop();
             }
         }
-    };
-
-    // Mimic continuous auto-focusing
-    Camera.AutoFocusCallback autoFocusCB = new Camera.AutoFocusCallback() {
-        public void onAutoFocus(boolean success, Camera camera) {
-            scheduleAutoFocus();
-        }
-    };
-
-    private void scheduleAutoFocus() {
-        mAutoFocusHandler.postDelayed(doAutoFocus, 2000);
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (mCamera != null) {
-            mAutoFocusHandler.removeCallbacks(doAutoFocus);
-            if (mSurfaceCreated) { // check if surface created before using autofocus
+            if (mPreviewing) {
                 safeAutoFocus();
-            } else {
-                scheduleAutoFocus(); // wait 1 sec and then do check again
             }
-
+            return true;
+        }
+        CameraBackend externalBackend = mExternalBackend;
+        if (externalBackend != null) {
+            externalBackend.safeAutoFocus();
             return true;
         }
 
@@ -8,6 +8,21 @@ public class CameraUtils {
         return getCameraInstance(-1);
     }
 
+    /**
+     * The id of the camera {@link Camera#open()} opens, the first back-facing one, or -1 if
+     * there is none.
+     */
+    public static int getDefaultCameraId() {
+        Camera.CameraInfo info = new Camera.CameraInfo();
+        for (int cameraId = 0; cameraId < Camera.getNumberOfCameras(); cameraId++) {
+            Camera.getCameraInfo(cameraId, info);
+            if (info.facing == Camera.CameraInfo.CAMERA_FACING_BACK) {
+                return cameraId;
+            }
+        }
+        return -1;
+    }
+
     /** A safe way to get an instance of the Camera object. */
     public static Camera getCameraInstance(int cameraId) {
         Camera c = null;
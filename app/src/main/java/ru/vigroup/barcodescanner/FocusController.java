@@ -0,0 +1,171 @@
+package ru.vigroup.barcodescanner;
+
+import android.annotation.TargetApi;
+import android.hardware.Camera;
+import android.os.Build;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives the camera focus from events instead of a timer. Continuous focus modes are preferred
+ * and let the camera refocus by itself; an explicit focus is only requested when the
+ * {@link RefocusPolicy} sees the framing rect go soft or decoding stall. While the lens moves the
+ * decode workers skip their frames, see {@link #isFocusing()}.
+ */
+class FocusController {
+    private static final String TAG = "FocusController";
+    private static final List<String> FOCUS_MODES = Arrays.asList(
+            Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE,
+            Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO,
+            Camera.Parameters.FOCUS_MODE_AUTO,
+            Camera.Parameters.FOCUS_MODE_MACRO);
+    // some devices never call back, so a focus is assumed to be over after this long
+    private static final long MAX_FOCUS_MILLIS = 2000;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final Camera mCamera;
+    private final Handler mHandler;
+    private final RefocusPolicy mRefocusPolicy = new RefocusPolicy();
+    private String mFocusMode;
+    private volatile boolean mStarted = false;
+    private volatile long mFocusStartedAt;
+    private volatile long mLensMovingSince;
+
+    FocusController(Camera camera, Handler handler) {
+        mCamera = camera;
+        mHandler = handler;
+    }
+
+    /** Picks the best supported focus mode, before the preview starts. */
+    void setupFocusMode() {
+        Camera.Parameters parameters = mCamera.getParameters();
+        List<String> supportedFocusModes = parameters.getSupportedFocusModes();
+        if (supportedFocusModes == null) {
+            return;
+        }
+        for (String mode : FOCUS_MODES) {
+            if (supportedFocusModes.contains(mode)) {
+                parameters.setFocusMode(mode);
+                mCamera.setParameters(parameters);
+                mFocusMode = mode;
+                break;
+            }
+        }
+    }
+
+    boolean isContinuous() {
+        return Camera.Parameters.FOCUS_MODE_CONTINUOUS_PICTURE.equals(mFocusMode)
+                || Camera.Parameters.FOCUS_MODE_CONTINUOUS_VIDEO.equals(mFocusMode);
+    }
+
+    /** Starts focusing once the preview runs. */
+    void start() {
+        if (mFocusMode == null) {
+            return;
+        }
+        mStarted = true;
+        mRefocusPolicy.reset(SystemClock.elapsedRealtime());
+        if (isContinuous()) {
+            setAutoFocusMoveCallback(true);
+        } else {
+            requestFocus();
+        }
+    }
+
+    void stop() {
+        mStarted = false;
+        mHandler.removeCallbacks(mRequestFocus);
+        mFocusStartedAt = 0;
+        mLensMovingSince = 0;
+        try {
+            mCamera.cancelAutoFocus();
+            setAutoFocusMoveCallback(false);
+        } catch (RuntimeException e) {
+            // camera was released in the meantime
+        }
+    }
+
+    /**
+     * Runs a single focus now, also while automatic focusing is stopped. In continuous modes
+     * focus is locked by it, so while started it is unlocked again once the lens has settled.
+     */
+    void requestFocus() {
+        if (mFocusMode == null) {
+            return;
+        }
+        mHandler.removeCallbacks(mRequestFocus);
+        try {
+            mCamera.cancelAutoFocus();
+            mFocusStartedAt = SystemClock.elapsedRealtime();
+            mCamera.autoFocus(mAutoFocusCallback);
+        } catch (RuntimeException re) {
+            // Horrible hack to deal with autofocus errors on Sony devices
+            // See https://github.com/dm77/barcodescanner/issues/7 for example
+            mFocusStartedAt = 0;
+            mHandler.postDelayed(mRequestFocus, RETRY_DELAY_MILLIS);
+        }
+    }
+
+    /** Whether the lens is moving, so frames taken now are not worth decoding. */
+    boolean isFocusing() {
+        long now = SystemClock.elapsedRealtime();
+        long focusStartedAt = mFocusStartedAt;
+        long lensMovingSince = mLensMovingSince;
+        return (focusStartedAt != 0 && now - focusStartedAt < MAX_FOCUS_MILLIS)
+                || (lensMovingSince != 0 && now - lensMovingSince < MAX_FOCUS_MILLIS);
+    }
+
+    /** Called from the decode workers with the sharpness of the framing rect, or NaN. */
+    void onFrame(float sharpness) {
+        if (mStarted && mRefocusPolicy.onFrame(sharpness, SystemClock.elapsedRealtime())) {
+            mHandler.post(mRequestFocus);
+        }
+    }
+
+    void onResult() {
+        mRefocusPolicy.onResult(SystemClock.elapsedRealtime());
+    }
+
+    private final Runnable mRequestFocus = new Runnable() {
+        @Override
+        public void run() {
+            requestFocus();
+        }
+    };
+
+    private final Camera.AutoFocusCallback mAutoFocusCallback = new Camera.AutoFocusCallback() {
+        @Override
+        public void onAutoFocus(boolean success, Camera camera) {
+            mFocusStartedAt = 0;
+            mRefocusPolicy.onFocusFinished(SystemClock.elapsedRealtime());
+            if (mStarted && isContinuous()) {
+                try {
+                    camera.cancelAutoFocus();
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Unable to resume continuous focus", e);
+                }
+            }
+        }
+    };
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void setAutoFocusMoveCallback(boolean enabled) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN || !isContinuous()) {
+            return;
+        }
+        mCamera.setAutoFocusMoveCallback(enabled ? new Camera.AutoFocusMoveCallback() {
+            @Override
+            public void onAutoFocusMoving(boolean start, Camera camera) {
+                long now = SystemClock.elapsedRealtime();
+                mLensMovingSince = start ? now : 0;
+                if (!start) {
+                    mRefocusPolicy.onFocusFinished(now);
+                }
+            }
+        } : null);
+    }
+}
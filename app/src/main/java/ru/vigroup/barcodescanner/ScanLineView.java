@@ -0,0 +1,134 @@
+package ru.vigroup.barcodescanner;
+
+import android.animation.ObjectAnimator;
+import android.animation.ValueAnimator;
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.AttributeSet;
+import android.view.View;
+
+/**
+ * A line sweeping up and down the framing rect. It is drawn once at the top of the view and moved
+ * by animating {@code translationY}, a property of the view's render node, so the animation
+ * neither redraws this view nor the {@link ViewFinderView} below it. It only runs while the view
+ * is shown and has a framing rect.
+ */
+public class ScanLineView extends View {
+    private static final long SWEEP_DURATION_MILLIS = 1500;
+
+    private final Paint mPaint = new Paint();
+    private final int mLineHeight;
+    private float mLeft;
+    private float mRight;
+    private float mTop;
+    private float mTravel;
+    private ObjectAnimator mAnimator;
+
+    public ScanLineView(Context context) {
+        this(context, null);
+    }
+
+    public ScanLineView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        Resources resources = getResources();
+        int color = resources.getColor(R.color.viewfinder_scan_line);
+        boolean enabled = false;
+        if (attrs != null) {
+            TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.BarcodeScannerView, 0, 0);
+            color = a.getColor(R.styleable.BarcodeScannerView_scanLineColor, color);
+            enabled = a.getBoolean(R.styleable.BarcodeScannerView_scanLineEnabled, enabled);
+            a.recycle();
+        }
+        mPaint.setColor(color);
+        mLineHeight = resources.getDimensionPixelSize(R.dimen.viewfinder_scan_line_height);
+        setVisibility(enabled ? VISIBLE : GONE);
+    }
+
+    /** The height to lay this view out with, the line is as thick as the view. */
+    public int getLineHeight() {
+        return mLineHeight;
+    }
+
+    public void setColor(int color) {
+        if (mPaint.getColor() != color) {
+            mPaint.setColor(color);
+            invalidate();
+        }
+    }
+
+    public int getColor() {
+        return mPaint.getColor();
+    }
+
+    /** Sweeps across {@code framingRect}, given in the coordinates of the parent. */
+    public void setFramingRect(RectF framingRect) {
+        if (framingRect.left != mLeft || framingRect.right != mRight) {
+            mLeft = framingRect.left;
+            mRight = framingRect.right;
+            invalidate();
+        }
+        float travel = Math.max(0, framingRect.height() - mLineHeight);
+        if (mAnimator != null && framingRect.top == mTop && travel == mTravel) {
+            return;
+        }
+        mTop = framingRect.top;
+        mTravel = travel;
+        stopAnimation();
+        // the view is laid out at the top of the parent and only ever moved by translation
+        setTranslationY(mTop);
+        mAnimator = ObjectAnimator.ofFloat(this, View.TRANSLATION_Y, mTop, mTop + travel);
+        mAnimator.setDuration(SWEEP_DURATION_MILLIS);
+        mAnimator.setRepeatMode(ValueAnimator.REVERSE);
+        mAnimator.setRepeatCount(ValueAnimator.INFINITE);
+        updateAnimation();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (mRight > mLeft) {
+            canvas.drawRect(mLeft, 0, mRight, mLineHeight, mPaint);
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        updateAnimation();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stopAnimation();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateAnimation();
+    }
+
+    private void updateAnimation() {
+        if (mAnimator == null) {
+            return;
+        }
+        if (isShown() && getWindowToken() != null) {
+            if (!mAnimator.isStarted()) {
+                mAnimator.start();
+            }
+        } else {
+            stopAnimation();
+        }
+    }
+
+    private void stopAnimation() {
+        if (mAnimator != null && mAnimator.isStarted()) {
+            mAnimator.cancel();
+        }
+    }
+}
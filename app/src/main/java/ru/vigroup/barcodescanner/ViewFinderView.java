@@ -39,6 +39,9 @@ public class ViewFinderView extends View {
     private Paint mBorderPaint;
     private int mLineLength;
     private int mPadding;
+    // rebuilt when the framing rect, line length or padding change
+    private final Path mMaskPath = new Path();
+    private final Path mBorderPath = new Path();
 
     private FramingRectChangeListener framingRectChangeListener;
 
@@ -92,6 +95,42 @@ public class ViewFinderView extends View {
         return mFramingRect;
     }
 
+    public void setMaskColor(int maskColor) {
+        if (mMaskPaint.getColor() != maskColor) {
+            mMaskPaint.setColor(maskColor);
+            invalidate();
+        }
+    }
+
+    public void setBorderColor(int borderColor) {
+        if (mBorderPaint.getColor() != borderColor) {
+            mBorderPaint.setColor(borderColor);
+            invalidate();
+        }
+    }
+
+    public void setBorderStrokeWidth(int borderStrokeWidth) {
+        if (mBorderPaint.getStrokeWidth() != borderStrokeWidth) {
+            mBorderPaint.setStrokeWidth(borderStrokeWidth);
+            invalidate();
+        }
+    }
+
+    public void setBorderLineLength(int lineLength) {
+        if (mLineLength != lineLength) {
+            mLineLength = lineLength;
+            rebuildOverlay();
+        }
+    }
+
+    public void setBorderPadding(int padding) {
+        if (mPadding != padding) {
+            mPadding = padding;
+            rebuildOverlay();
+        }
+    }
+
+    // draws the paths built in rebuildOverlay(), nothing is allocated per frame
     @Override
     public void onDraw(Canvas canvas) {
         if (mFramingRect == null) {
@@ -103,36 +142,40 @@ public class ViewFinderView extends View {
     }
 
     public void drawViewFinderMask(Canvas canvas) {
-        int width = canvas.getWidth();
-        int height = canvas.getHeight();
-
-        canvas.drawRect(0, 0, width, mFramingRect.top, mMaskPaint);
-        canvas.drawRect(0, mFramingRect.top, mFramingRect.left, mFramingRect.bottom, mMaskPaint);
-        canvas.drawRect(mFramingRect.right, mFramingRect.top, width, mFramingRect.bottom, mMaskPaint);
-        canvas.drawRect(0, mFramingRect.bottom, width, height, mMaskPaint);
+        canvas.drawPath(mMaskPath, mMaskPaint);
     }
 
     public void drawViewFinderBorder(Canvas canvas) {
-        Path path = new Path();
-        path.moveTo(mFramingRect.left - mPadding, mFramingRect.top - mPadding + mLineLength);
-        path.lineTo(mFramingRect.left - mPadding, mFramingRect.top - mPadding);
-        path.lineTo(mFramingRect.left - mPadding + mLineLength, mFramingRect.top - mPadding);
-        canvas.drawPath(path, mBorderPaint);
-
-        path.moveTo(mFramingRect.left - mPadding, mFramingRect.bottom + mPadding - mLineLength);
-        path.lineTo(mFramingRect.left - mPadding, mFramingRect.bottom + mPadding);
-        path.lineTo(mFramingRect.left - mPadding + mLineLength, mFramingRect.bottom + mPadding);
-        canvas.drawPath(path, mBorderPaint);
+        canvas.drawPath(mBorderPath, mBorderPaint);
+    }
 
-        path.moveTo(mFramingRect.right + mPadding, mFramingRect.top - mPadding + mLineLength);
-        path.lineTo(mFramingRect.right + mPadding, mFramingRect.top - mPadding);
-        path.lineTo(mFramingRect.right + mPadding - mLineLength, mFramingRect.top - mPadding);
-        canvas.drawPath(path, mBorderPaint);
+    // the mask is the view minus the framing rect, one even-odd path instead of four rects
+    private void rebuildOverlay() {
+        mMaskPath.reset();
+        mBorderPath.reset();
+        if (mFramingRect == null) {
+            invalidate();
+            return;
+        }
+        mMaskPath.setFillType(Path.FillType.EVEN_ODD);
+        mMaskPath.addRect(0, 0, getWidth(), getHeight(), Path.Direction.CW);
+        mMaskPath.addRect(mFramingRect, Path.Direction.CW);
+
+        float left = mFramingRect.left - mPadding;
+        float top = mFramingRect.top - mPadding;
+        float right = mFramingRect.right + mPadding;
+        float bottom = mFramingRect.bottom + mPadding;
+        addCorner(left, top, mLineLength, mLineLength);
+        addCorner(left, bottom, mLineLength, -mLineLength);
+        addCorner(right, top, -mLineLength, mLineLength);
+        addCorner(right, bottom, -mLineLength, -mLineLength);
+        invalidate();
+    }
 
-        path.moveTo(mFramingRect.right + mPadding, mFramingRect.bottom + mPadding - mLineLength);
-        path.lineTo(mFramingRect.right + mPadding, mFramingRect.bottom + mPadding);
-        path.lineTo(mFramingRect.right + mPadding - mLineLength, mFramingRect.bottom + mPadding);
-        canvas.drawPath(path, mBorderPaint);
+    private void addCorner(float x, float y, float dx, float dy) {
+        mBorderPath.moveTo(x, y + dy);
+        mBorderPath.lineTo(x, y);
+        mBorderPath.lineTo(x + dx, y);
     }
 
     @Override
@@ -140,7 +183,8 @@ public class ViewFinderView extends View {
         updateFramingRect();
     }
 
-    private synchronized void updateFramingRect() {
+    // on the main thread only, decode workers read the rect from the ScanConfig
+    private void updateFramingRect() {
         Point viewResolution = new Point(getWidth(), getHeight());
 
         int width;
@@ -160,6 +204,7 @@ public class ViewFinderView extends View {
         int topOffset = landscape ? (viewResolution.y - height) / 8 : leftOffset;
 
         mFramingRect = new RectF(leftOffset, topOffset, leftOffset + width, topOffset + height);
+        rebuildOverlay();
 
         if (framingRectChangeListener != null) {
             framingRectChangeListener.onRectChanged(mFramingRect);
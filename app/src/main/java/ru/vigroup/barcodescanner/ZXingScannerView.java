@@ -1,184 +1,468 @@
 package ru.vigroup.barcodescanner;
 
 import android.content.Context;
-import android.graphics.RectF;
 import android.hardware.Camera;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
-import android.view.Display;
-import android.view.Surface;
-import android.view.WindowManager;
 
 import com.google.zxing.BarcodeFormat;
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
 import com.google.zxing.PlanarYUVLuminanceSource;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.EnumMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
-public class ZXingScannerView extends BarcodeScannerView {
+public class ZXingScannerView extends BarcodeScannerView implements DecodeWorkerPool.FrameProcessor {
     public interface ResultHandler {
         public void handleResult(Result rawResult);
     }
 
-    private MultiFormatReader mMultiFormatReader;
-    public static final List<BarcodeFormat> ALL_FORMATS = new ArrayList<BarcodeFormat>();
-    private List<BarcodeFormat> mFormats;
-    private ResultHandler mResultHandler;
+    /**
+     * Receives every newly seen code while the camera keeps scanning.
+     */
+    public interface ContinuousResultHandler {
+        public void handleResult(Result rawResult);
+    }
 
-    static {
-        ALL_FORMATS.add(BarcodeFormat.UPC_A);
-        ALL_FORMATS.add(BarcodeFormat.UPC_E);
-        ALL_FORMATS.add(BarcodeFormat.EAN_13);
-        ALL_FORMATS.add(BarcodeFormat.EAN_8);
-        ALL_FORMATS.add(BarcodeFormat.RSS_14);
-        ALL_FORMATS.add(BarcodeFormat.CODE_39);
-        ALL_FORMATS.add(BarcodeFormat.CODE_93);
-        ALL_FORMATS.add(BarcodeFormat.CODE_128);
-        ALL_FORMATS.add(BarcodeFormat.ITF);
-        ALL_FORMATS.add(BarcodeFormat.CODABAR);
-        ALL_FORMATS.add(BarcodeFormat.QR_CODE);
-        ALL_FORMATS.add(BarcodeFormat.DATA_MATRIX);
-        ALL_FORMATS.add(BarcodeFormat.PDF_417);
+    /**
+     * Receives the codes that came into view in a frame while decoding several codes per frame.
+     */
+    public interface MultipleResultHandler {
+        public void handleResults(List<Result> rawResults);
     }
 
+    public static final int DEFAULT_DECODE_WORKER_COUNT = 1;
+    public static final List<BarcodeFormat> ALL_FORMATS = FrameDecoder.ALL_FORMATS;
+
+    private final FrameDecoder mFrameDecoder = new FrameDecoder(getScanConfigReference());
+    private ResultHandler mResultHandler;
+    private volatile ContinuousResultHandler mContinuousResultHandler;
+    private volatile ResultDeduplicator mResultDeduplicator = new ResultDeduplicator();
+    private volatile MultipleResultHandler mMultipleResultHandler;
+    private volatile ResultTracker mResultTracker = new ResultTracker();
+    private volatile FrameQualityGate mFrameQualityGate = new FrameQualityGate();
+    private volatile RoiTracker mRoiTracker = new RoiTracker();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile DecodeWorkerPool mDecodeWorkerPool;
+    private int mDecodeWorkerCount = DEFAULT_DECODE_WORKER_COUNT;
+    private boolean mPauseOnResult;
+    // the camera the last startCamera(int) asked for, to start it again after a hit
+    private int mCameraId = -1;
+
     public ZXingScannerView(Context context) {
         super(context);
-        initMultiFormatReader();
     }
 
     public ZXingScannerView(Context context, AttributeSet attributeSet) {
         super(context, attributeSet);
-        initMultiFormatReader();
     }
 
     public void setFormats(List<BarcodeFormat> formats) {
-        mFormats = formats;
-        initMultiFormatReader();
+        mFrameDecoder.setFormats(formats);
     }
 
     public void setResultHandler(ResultHandler resultHandler) {
         mResultHandler = resultHandler;
     }
 
+    /**
+     * Scans for the next code after a hit: resumes the open camera with pause on result, starts
+     * the camera again otherwise.
+     */
+    public void resumeCameraPreview(ResultHandler resultHandler) {
+        mResultHandler = resultHandler;
+        if (isStopped()) {
+            startCamera(mCameraId);
+        } else {
+            resumeScanning();
+        }
+    }
+
+    /**
+     * When enabled a hit in stop-on-first-hit mode only pauses scanning, see
+     * {@link #pauseScanning()}, so the next scan does not pay for a cold start. Off by default:
+     * a hit stops the camera.
+     */
+    public void setPauseOnResult(boolean pauseOnResult) {
+        mPauseOnResult = pauseOnResult;
+    }
+
+    public boolean isPauseOnResult() {
+        return mPauseOnResult;
+    }
+
+    @Override
+    public void startCamera(int cameraId) {
+        mCameraId = cameraId;
+        super.startCamera(cameraId);
+    }
+
+    /**
+     * Switches to continuous scanning: the camera keeps running after a hit and every code is
+     * reported once while it stays in view. Pass {@code null} to go back to stop-on-first-hit.
+     */
+    public void setContinuousResultHandler(ContinuousResultHandler continuousResultHandler) {
+        mContinuousResultHandler = continuousResultHandler;
+    }
+
+    /**
+     * Configures how long a code must be out of view before it is reported again in continuous
+     * mode, and how many distinct codes are remembered.
+     */
+    public void setDuplicateSuppression(long ttlMillis, int capacity) {
+        mResultDeduplicator = new ResultDeduplicator(ttlMillis, capacity);
+    }
+
+    /** Forgets the codes reported so far in continuous and multiple mode. */
+    public void clearReportedResults() {
+        mResultDeduplicator.clear();
+        mResultTracker.clear();
+        RoiTracker roiTracker = mRoiTracker;
+        if (roiTracker != null) {
+            roiTracker.clear();
+        }
+    }
+
+    /**
+     * Switches to decoding every code in the framing rect: the camera keeps running and each code
+     * is reported once while it stays in view, told apart from identical codes by its position.
+     * Codes already reported are masked out of the following frames. Takes precedence over the
+     * other handlers, pass {@code null} to go back to them.
+     */
+    public void setMultipleResultHandler(MultipleResultHandler multipleResultHandler) {
+        mMultipleResultHandler = multipleResultHandler;
+    }
+
+    /**
+     * Configures the tracking of codes in multiple mode, see {@link ResultTracker}.
+     */
+    public void setResultTracking(long ttlMillis, long maskMillis, float maxMovement) {
+        mResultTracker = new ResultTracker(ttlMillis, maskMillis, maxMovement);
+    }
+
     public Collection<BarcodeFormat> getFormats() {
-        if (mFormats == null) {
-            return ALL_FORMATS;
+        return mFrameDecoder.getFormats();
+    }
+
+    /**
+     * Sets how many frames may be decoded concurrently. Takes effect on the next camera start.
+     */
+    public void setDecodeWorkerCount(int decodeWorkerCount) {
+        if (decodeWorkerCount < 1) {
+            throw new IllegalArgumentException("decodeWorkerCount must be at least 1");
+        }
+        mDecodeWorkerCount = decodeWorkerCount;
+    }
+
+    public int getDecodeWorkerCount() {
+        return mDecodeWorkerCount;
+    }
+
+    /**
+     * When enabled (the default) only the framing rect is rotated instead of the whole frame.
+     * Ignored while rotation free decoding is on.
+     */
+    public void setCropBeforeRotate(boolean cropBeforeRotate) {
+        mFrameDecoder.setCropBeforeRotate(cropBeforeRotate);
+    }
+
+    /**
+     * Decodes frames in the camera sensor orientation instead of rotating them upright first.
+     */
+    public void setRotationFreeDecoding(boolean rotationFreeDecoding) {
+        mFrameDecoder.setRotationFreeDecoding(rotationFreeDecoding);
+    }
+
+    public boolean isRotationFreeDecoding() {
+        return mFrameDecoder.isRotationFreeDecoding();
+    }
+
+    /**
+     * Configures the adaptive decode scheduler, see {@link DecodeScheduler}. Passing a
+     * {@code tryHarderInterval} of 1 restores exhaustive TRY_HARDER decoding of every frame.
+     */
+    public void setAdaptiveDecoding(int tryHarderInterval, int missesBeforeTryHarder, boolean learnFormatOrder) {
+        mFrameDecoder.setAdaptiveDecoding(tryHarderInterval, missesBeforeTryHarder, learnFormatOrder);
+    }
+
+    /**
+     * Enables the 1D fast path: cheap frames first look for 1D codes on {@code rowCount} rows
+     * through the centre of the framing rect and only run the full 2D decode when 2D formats are
+     * configured. Pass 0 to disable it.
+     */
+    public void setOneDFastPath(int rowCount) {
+        mFrameDecoder.setOneDFastPath(rowCount);
+    }
+
+    /**
+     * Sets the gate that skips blurred and moving frames before decoding, see
+     * {@link FrameQualityGate}. Pass {@code null} to decode every frame.
+     */
+    public void setFrameQualityGate(FrameQualityGate frameQualityGate) {
+        mFrameQualityGate = frameQualityGate;
+    }
+
+    /** The current gate, whose counters tell how many frames were skipped. */
+    public FrameQualityGate getFrameQualityGate() {
+        return mFrameQualityGate;
+    }
+
+    /**
+     * Decodes a 4x and a 2x downscale of the framing rect before its full resolution, see
+     * {@link DecodePyramid}, whose counters tell which level decoded. Pass {@code null} to decode
+     * at full resolution only, the default.
+     */
+    public void setDecodePyramid(DecodePyramid decodePyramid) {
+        mFrameDecoder.setDecodePyramid(decodePyramid);
+    }
+
+    public DecodePyramid getDecodePyramid() {
+        return mFrameDecoder.getDecodePyramid();
+    }
+
+    /**
+     * Decodes big framing rects in overlapping tiles on several threads, see {@link TiledDecoding}.
+     * Pass {@code null} to decode each frame on its decode worker alone, the default.
+     */
+    public void setTiledDecoding(TiledDecoding tiledDecoding) {
+        mFrameDecoder.setTiledDecoding(tiledDecoding);
+    }
+
+    public TiledDecoding getTiledDecoding() {
+        return mFrameDecoder.getTiledDecoding();
+    }
+
+    /**
+     * Sets the tracker that, in continuous mode, decodes a crop around the last code instead of
+     * the whole framing rect, see {@link RoiTracker}. Pass {@code null} to always decode the
+     * framing rect.
+     */
+    public void setRoiTracker(RoiTracker roiTracker) {
+        mRoiTracker = roiTracker;
+    }
+
+    /** The current tracker, whose counters tell how often the crop decoded. */
+    public RoiTracker getRoiTracker() {
+        return mRoiTracker;
+    }
+
+    public DecodeScheduler getDecodeScheduler() {
+        return mFrameDecoder.getDecodeScheduler();
+    }
+
+    @Override
+    protected void onCameraStarting() {
+        shutdownDecodeWorkers();
+        mFrameDecoder.setScanMetrics(getScanMetrics());
+        mDecodeWorkerPool = new DecodeWorkerPool(mDecodeWorkerCount, this);
+        FrameQualityGate frameQualityGate = mFrameQualityGate;
+        if (frameQualityGate != null) {
+            frameQualityGate.reset();
+        }
+        RoiTracker roiTracker = mRoiTracker;
+        if (roiTracker != null) {
+            roiTracker.clear();
         }
-        return mFormats;
+        // one buffer per worker, one waiting for a worker and one being filled by the camera
+        setPreviewBufferCount(mDecodeWorkerCount + 2);
+    }
+
+    @Override
+    public void stopCamera() {
+        shutdownDecodeWorkers();
+        super.stopCamera();
     }
 
-    private void initMultiFormatReader() {
-        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
-        hints.put(DecodeHintType.POSSIBLE_FORMATS, getFormats());
-        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
-        mMultiFormatReader = new MultiFormatReader();
-        mMultiFormatReader.setHints(hints);
+    private void shutdownDecodeWorkers() {
+        if (mDecodeWorkerPool != null) {
+            mDecodeWorkerPool.shutdown();
+            mDecodeWorkerPool = null;
+        }
     }
 
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
-        Camera.Size size;
-        try {
-            Camera.Parameters parameters = camera.getParameters();
-            size = parameters.getPreviewSize();
-        } catch (RuntimeException e) {
+        if (data == null) {
             return;
         }
 
-        int width = size.width;
-        int height = size.height;
-
-        WindowManager wm = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
-        Display display = wm.getDefaultDisplay();
-        int rotation = display.getRotation();
-        switch (rotation) {
-            case Surface.ROTATION_0:
-                data = rotate(90, data, width, height);
-                int tmp1 = width;
-                width = height;
-                height = tmp1;
-                break;
-            case Surface.ROTATION_90:
-                break;
-            case Surface.ROTATION_180:
-                data = rotate(270, data, width, height);
-                int tmp2 = width;
-                width = height;
-                height = tmp2;
-                break;
-            case Surface.ROTATION_270:
-                data = rotate(180, data, width, height);
-                break;
+        CameraSessionConfig sessionConfig = getCameraSessionConfig();
+        if (sessionConfig == null) {
+            recyclePreviewBuffer(data);
+            return;
+        }
+
+        onPreviewFrame(new PreviewFrame(data, sessionConfig.getPreviewWidth(),
+                sessionConfig.getPreviewHeight(), sessionConfig.getDisplayOrientation()));
+    }
+
+    @Override
+    public void onPreviewFrame(PreviewFrame frame) {
+        getScanMetrics().onFrameReceived(System.nanoTime());
+        recordFrame(frame);
+        DecodeWorkerPool decodeWorkerPool = mDecodeWorkerPool;
+        if (decodeWorkerPool == null) {
+            recyclePreviewFrame(frame);
+            return;
         }
+        decodeWorkerPool.submit(frame);
+    }
 
+    @Override
+    public void onFrameDropped(PreviewFrame frame) {
+        getScanMetrics().onFrameDropped();
+        recyclePreviewFrame(frame);
+    }
+
+    @Override
+    public void processFrame(PreviewFrame frame) {
+        final DecodeWorkerPool decodeWorkerPool = mDecodeWorkerPool;
+        boolean swap = frame.getOrientation() == 90 || frame.getOrientation() == 270;
+        FrameRegion region = getFramingRegionInPreview(swap ? frame.getHeight() : frame.getWidth(),
+                swap ? frame.getWidth() : frame.getHeight());
+        // frames taken while the lens moves are blurred
+        if (isFocusing()) {
+            getScanMetrics().onFrameDropped();
+            recyclePreviewFrame(frame);
+            return;
+        }
+        FrameQualityGate frameQualityGate = mFrameQualityGate;
+        if (region != null && frameQualityGate != null) {
+            boolean decode = frameQualityGate.shouldDecode(frame,
+                    region.toSensor(frame.getWidth(), frame.getHeight(), frame.getOrientation()));
+            onFrameSharpness(frameQualityGate.getLastSharpness());
+            if (!decode) {
+                getScanMetrics().onFrameDropped();
+                recyclePreviewFrame(frame);
+                return;
+            }
+        } else {
+            onFrameSharpness(Float.NaN);
+        }
+        if (mMultipleResultHandler != null) {
+            processFrameMultiple(decodeWorkerPool, frame, region);
+            return;
+        }
         Result rawResult = null;
-        PlanarYUVLuminanceSource source = buildLuminanceSource(data, width, height);
-
-        if (source != null) {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            try {
-                rawResult = mMultiFormatReader.decodeWithState(bitmap);
-            } catch (ReaderException re) {
-                // continue
-            } finally {
-                mMultiFormatReader.reset();
+        if (region != null) {
+            // single mode stops at the first hit, there is nothing to track
+            RoiTracker roiTracker = mContinuousResultHandler != null ? mRoiTracker : null;
+            long now = SystemClock.elapsedRealtime();
+            FrameRegion roi = roiTracker != null ? roiTracker.predict(region, now) : null;
+            rawResult = mFrameDecoder.decode(frame, roi != null ? roi : region);
+            if (roiTracker != null) {
+                roiTracker.update(roi, rawResult, now);
             }
         }
 
+        recyclePreviewFrame(frame);
+        getScanMetrics().onFrameDecoded(rawResult != null, System.nanoTime());
+
         if (rawResult != null) {
-            stopCamera();
-            if (mResultHandler != null) {
-                mResultHandler.handleResult(rawResult);
+            onResultDecoded();
+            if (mContinuousResultHandler != null) {
+                deliverContinuousResult(decodeWorkerPool, rawResult);
+                return;
             }
-        } else {
-            camera.setOneShotPreviewCallback(this);
-        }
-    }
-
-    private byte[] rotate(double angle, byte[] pixels, int width, int height) {
-        final double radians = Math.toRadians(angle);
-        final double cos = Math.cos(radians);
-        final double sin = Math.sin(radians);
-        final byte[] pixels2 = new byte[pixels.length];
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                final int centerx = width / 2;
-                final int centery = height / 2;
-                final int m = x - centerx;
-                final int n = y - centery;
-                final int j = ((int) (m * cos + n * sin)) + centerx;
-                final int k = ((int) (n * cos - m * sin)) + centery;
-                if (j >= 0 && j < width && k >= 0 && k < height) {
-                    pixels2[(y * width + x)] = pixels[(k * width + j)];
+
+            final Result result = rawResult;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    // ignore late hits from other workers or from a previous camera session
+                    if (decodeWorkerPool == null || decodeWorkerPool != mDecodeWorkerPool || isScanningPaused()) {
+                        return;
+                    }
+                    if (mContinuousResultHandler != null) {
+                        reportContinuousResult(result, SystemClock.elapsedRealtime());
+                        return;
+                    }
+                    if (mPauseOnResult) {
+                        // keep the camera open so scanning the next code does not pay for a cold start
+                        pauseScanning();
+                    } else {
+                        stopCamera();
+                    }
+                    if (mResultHandler != null) {
+                        mResultHandler.handleResult(result);
+                    }
                 }
-            }
+            });
         }
-        return pixels2;
     }
 
+    private void processFrameMultiple(final DecodeWorkerPool decodeWorkerPool, PreviewFrame frame,
+                                      FrameRegion region) {
+        final ResultTracker resultTracker = mResultTracker;
+        List<Result> rawResults = Collections.emptyList();
+        if (region != null) {
+            rawResults = mFrameDecoder.decodeMultiple(frame, region,
+                    resultTracker.getMaskRegions(SystemClock.elapsedRealtime()));
+        }
+        recyclePreviewFrame(frame);
+        getScanMetrics().onFrameDecoded(!rawResults.isEmpty(), System.nanoTime());
+        if (!rawResults.isEmpty()) {
+            onResultDecoded();
+        }
+
+        final long seenAt = SystemClock.elapsedRealtime();
+        final List<Result> unmatched = resultTracker.match(rawResults, seenAt);
+        if (unmatched.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                MultipleResultHandler multipleResultHandler = mMultipleResultHandler;
+                if (decodeWorkerPool == null || decodeWorkerPool != mDecodeWorkerPool
+                        || multipleResultHandler == null || isScanningPaused()) {
+                    return;
+                }
+                // only codes actually delivered start a track, the others are reported when seen again
+                List<Result> newResults = resultTracker.commit(unmatched, seenAt);
+                if (!newResults.isEmpty()) {
+                    multipleResultHandler.handleResults(newResults);
+                }
+            }
+        });
+    }
+
+    private void deliverContinuousResult(final DecodeWorkerPool decodeWorkerPool, final Result result) {
+        final long seenAt = SystemClock.elapsedRealtime();
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (decodeWorkerPool != null && decodeWorkerPool == mDecodeWorkerPool && !isScanningPaused()) {
+                    reportContinuousResult(result, seenAt);
+                }
+            }
+        });
+    }
+
+    // on the main thread, so a result dropped while paused or from an old pool is not taken as reported
+    private void reportContinuousResult(Result result, long seenAt) {
+        ContinuousResultHandler continuousResultHandler = mContinuousResultHandler;
+        if (continuousResultHandler != null && mResultDeduplicator.shouldReport(result, seenAt)) {
+            continuousResultHandler.handleResult(result);
+        }
+    }
 
     public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height) {
-        RectF rect = getFramingRectInPreview(width, height);
-        if (rect == null) {
+        FrameRegion region = getFramingRegionInPreview(width, height);
+        if (region == null) {
             return null;
         }
         // Go ahead and assume it's YUV rather than die.
         PlanarYUVLuminanceSource source = null;
 
         try {
-            source = new PlanarYUVLuminanceSource(data, width, height, (int) rect.left, (int) rect.top,
-                    (int) rect.width(), (int) rect.height(), false);
+            source = FrameDecoder.buildLuminanceSource(data, width, height, region);
         } catch (Exception e) {
         }
 
         return source;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package ru.vigroup.barcodescanner.batch;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import ru.vigroup.barcodescanner.FrameDecoder;
+import ru.vigroup.barcodescanner.FrameReplay;
+
+/**
+ * Command line front end of {@link BatchDecoder}:
+ * <pre>
+ * batch [--format csv|json] [--threads N] [--formats QR_CODE,EAN_13] [--output FILE] PATH...
+ * batch --replay [--formats QR_CODE,EAN_13] RECORDING...
+ * </pre>
+ * Results go to stdout (or FILE) as they complete, the summary goes to stderr. With
+ * {@code --replay} the paths are {@link ru.vigroup.barcodescanner.FrameRecorder} files, decoded
+ * frame by frame in their framing regions, and a {@link FrameReplay.Report} per file goes to stdout.
+ */
+public final class BatchDecodeCli {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String USAGE = "usage: batch [--format csv|json] [--threads N] "
+            + "[--formats QR_CODE,EAN_13,...] [--output FILE] PATH...\n"
+            + "       batch --replay [--formats QR_CODE,EAN_13,...] RECORDING...";
+
+    private BatchDecodeCli() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String format = "csv";
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<BarcodeFormat> formats = null;
+        Path output = null;
+        boolean replay = false;
+        List<Path> roots = new ArrayList<Path>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--format")) {
+                    format = args[++i];
+                } else if (arg.equals("--threads")) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--formats")) {
+                    formats = new ArrayList<BarcodeFormat>();
+                    for (String name : args[++i].split(",")) {
+                        formats.add(BarcodeFormat.valueOf(name.trim()));
+                    }
+                } else if (arg.equals("--replay")) {
+                    replay = true;
+                } else if (arg.equals("--output")) {
+                    output = Paths.get(args[++i]);
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option " + arg);
+                } else {
+                    roots.add(Paths.get(arg));
+                }
+            }
+            if (roots.isEmpty() || !(format.equals("csv") || format.equals("json"))) {
+                throw new IllegalArgumentException("Expected csv or json and at least one path");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e.getMessage() != null ? e.getMessage() : "Missing option value");
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (replay) {
+            replay(roots, formats);
+            return;
+        }
+
+        BatchDecoder decoder = new BatchDecoder(threads);
+        decoder.setFormats(formats);
+        Writer out = output != null
+                ? Files.newBufferedWriter(output, UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, UTF_8));
+        BatchStats stats;
+        try (ResultWriter writer = format.equals("json") ? ResultWriter.jsonLines(out) : ResultWriter.csv(out)) {
+            stats = decoder.decode(roots, writer);
+        } catch (IOException e) {
+            System.err.println("batch: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        System.err.println(stats);
+    }
+
+    private static void replay(List<Path> recordings, List<BarcodeFormat> formats) {
+        for (Path recording : recordings) {
+            // a fresh scheduler per recording, so results do not depend on the ones replayed before
+            FrameDecoder decoder = new FrameDecoder();
+            decoder.setFormats(formats);
+            File file = recording.toFile();
+            try (FrameReplay frameReplay = new FrameReplay(file)) {
+                System.out.println(recording + ": " + frameReplay.replay(decoder));
+            } catch (IOException e) {
+                System.err.println("batch: " + e.getMessage());
+                System.exit(1);
+                return;
+            }
+        }
+    }
+}
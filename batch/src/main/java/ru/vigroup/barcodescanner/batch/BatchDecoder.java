@@ -0,0 +1,166 @@
+package ru.vigroup.barcodescanner.batch;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ru.vigroup.barcodescanner.FrameDecoder;
+import ru.vigroup.barcodescanner.PreviewFrame;
+
+/**
+ * Decodes image files on a work-stealing pool with the same {@link FrameDecoder} the scanner
+ * view uses. Every worker thread has its own readers, files are read by the workers themselves,
+ * and only a few files per worker are in flight, so directories of any size stream through with
+ * bounded memory. Results are written as they complete, not in directory order.
+ */
+public class BatchDecoder {
+    private static final int FILES_IN_FLIGHT_PER_THREAD = 4;
+
+    private final FrameDecoder mFrameDecoder = new FrameDecoder();
+    private final int mParallelism;
+
+    public BatchDecoder(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        mParallelism = parallelism;
+        // photos are independent of each other, so every one gets the exhaustive TRY_HARDER pass
+        mFrameDecoder.setAdaptiveDecoding(1, 1, false);
+    }
+
+    /** Restricts decoding to {@code formats}, or all of {@link FrameDecoder#ALL_FORMATS} for null. */
+    public void setFormats(Collection<BarcodeFormat> formats) {
+        mFrameDecoder.setFormats(formats);
+    }
+
+    public Collection<BarcodeFormat> getFormats() {
+        return mFrameDecoder.getFormats();
+    }
+
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    /**
+     * Decodes every supported file below {@code roots}, which may be files or directories, and
+     * writes one line per file to {@code writer}. Unreadable files are reported as errors, a
+     * failing writer aborts the run.
+     */
+    public BatchStats decode(List<Path> roots, final ResultWriter writer) throws IOException, InterruptedException {
+        final ForkJoinPool pool = new ForkJoinPool(mParallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+                null, true);
+        final Semaphore inFlight = new Semaphore(mParallelism * FILES_IN_FLIGHT_PER_THREAD);
+        final Counters counters = new Counters();
+        long start = System.nanoTime();
+        try {
+            for (Path root : roots) {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) throws IOException {
+                        if (counters.mWriteError != null) {
+                            return FileVisitResult.TERMINATE;
+                        }
+                        if (!attrs.isRegularFile() || !ImageLoader.isSupported(file)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        try {
+                            inFlight.acquire();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new IOException("Interrupted", e);
+                        }
+                        pool.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    report(decodeFile(file), writer, counters);
+                                } finally {
+                                    inFlight.release();
+                                }
+                            }
+                        });
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        report(BatchResult.error(file, String.valueOf(e.getMessage())), writer, counters);
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        if (counters.mWriteError != null) {
+            throw counters.mWriteError;
+        }
+        return new BatchStats(counters.mFiles.get(), counters.mDecoded.get(), counters.mNotFound.get(),
+                counters.mErrors.get(), counters.mDecodeNanos.get(), System.nanoTime() - start, mParallelism);
+    }
+
+    /** Decodes a single file on the calling thread. */
+    public BatchResult decodeFile(Path file) {
+        PreviewFrame frame;
+        try {
+            frame = ImageLoader.load(file);
+        } catch (IOException | RuntimeException e) {
+            return BatchResult.error(file, String.valueOf(e.getMessage()));
+        }
+        long start = System.nanoTime();
+        try {
+            Result result = mFrameDecoder.decode(frame, null);
+            return BatchResult.decoded(file, result, System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return BatchResult.error(file, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private static void report(BatchResult result, ResultWriter writer, Counters counters) {
+        counters.mFiles.incrementAndGet();
+        counters.mDecodeNanos.addAndGet(result.getDecodeNanos());
+        switch (result.getStatus()) {
+            case DECODED:
+                counters.mDecoded.incrementAndGet();
+                break;
+            case NOT_FOUND:
+                counters.mNotFound.incrementAndGet();
+                break;
+            default:
+                counters.mErrors.incrementAndGet();
+                break;
+        }
+        synchronized (writer) {
+            if (counters.mWriteError != null) {
+                return;
+            }
+            try {
+                writer.write(result);
+            } catch (IOException e) {
+                counters.mWriteError = e;
+            }
+        }
+    }
+
+    private static final class Counters {
+        final AtomicLong mFiles = new AtomicLong();
+        final AtomicLong mDecoded = new AtomicLong();
+        final AtomicLong mNotFound = new AtomicLong();
+        final AtomicLong mErrors = new AtomicLong();
+        final AtomicLong mDecodeNanos = new AtomicLong();
+        volatile IOException mWriteError;
+    }
+}
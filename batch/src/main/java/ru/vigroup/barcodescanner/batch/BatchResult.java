@@ -0,0 +1,61 @@
+package ru.vigroup.barcodescanner.batch;
+
+import com.google.zxing.Result;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of decoding one file.
+ */
+public final class BatchResult {
+    public enum Status {
+        DECODED,
+        NOT_FOUND,
+        ERROR
+    }
+
+    private final Path mFile;
+    private final Status mStatus;
+    private final Result mResult;
+    private final String mError;
+    private final long mDecodeNanos;
+
+    private BatchResult(Path file, Status status, Result result, String error, long decodeNanos) {
+        mFile = file;
+        mStatus = status;
+        mResult = result;
+        mError = error;
+        mDecodeNanos = decodeNanos;
+    }
+
+    static BatchResult decoded(Path file, Result result, long decodeNanos) {
+        return new BatchResult(file, result != null ? Status.DECODED : Status.NOT_FOUND, result, null, decodeNanos);
+    }
+
+    static BatchResult error(Path file, String error) {
+        return new BatchResult(file, Status.ERROR, null, error, 0);
+    }
+
+    public Path getFile() {
+        return mFile;
+    }
+
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    /** The decoded code, or null unless the status is {@link Status#DECODED}. */
+    public Result getResult() {
+        return mResult;
+    }
+
+    /** Why the file could not be read, or null unless the status is {@link Status#ERROR}. */
+    public String getError() {
+        return mError;
+    }
+
+    /** Time spent decoding, without reading the file. */
+    public long getDecodeNanos() {
+        return mDecodeNanos;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.vigroup.barcodescanner.batch;
+
+import java.util.Locale;
+
+/**
+ * Totals of one {@link BatchDecoder#decode} run.
+ */
+public final class BatchStats {
+    private final long mFiles;
+    private final long mDecoded;
+    private final long mNotFound;
+    private final long mErrors;
+    private final long mDecodeNanos;
+    private final long mElapsedNanos;
+    private final int mParallelism;
+
+    BatchStats(long files, long decoded, long notFound, long errors, long decodeNanos,
+               long elapsedNanos, int parallelism) {
+        mFiles = files;
+        mDecoded = decoded;
+        mNotFound = notFound;
+        mErrors = errors;
+        mDecodeNanos = decodeNanos;
+        mElapsedNanos = elapsedNanos;
+        mParallelism = parallelism;
+    }
+
+    public long getFiles() {
+        return mFiles;
+    }
+
+    public long getDecoded() {
+        return mDecoded;
+    }
+
+    public long getNotFound() {
+        return mNotFound;
+    }
+
+    public long getErrors() {
+        return mErrors;
+    }
+
+    /** Wall clock time of the whole run, including reading the files. */
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    public double getImagesPerSecond() {
+        return mElapsedNanos > 0 ? mFiles * 1e9 / mElapsedNanos : 0;
+    }
+
+    /** Mean time one worker spent decoding an image that could be read. */
+    public double getMeanDecodeMillis() {
+        long decodedFiles = mDecoded + mNotFound;
+        return decodedFiles > 0 ? mDecodeNanos / 1e6 / decodedFiles : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d files in %.2f s on %d threads (%.1f images/s): %d decoded, %d not found, %d errors, "
+                        + "%.2f ms mean decode time",
+                mFiles, mElapsedNanos / 1e9, mParallelism, getImagesPerSecond(), mDecoded, mNotFound, mErrors,
+                getMeanDecodeMillis());
+    }
+}
@@ -0,0 +1,98 @@
+package ru.vigroup.barcodescanner.batch;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.imageio.ImageIO;
+
+import ru.vigroup.barcodescanner.PreviewFrame;
+
+/**
+ * Loads the luminance plane of PNG/JPEG images and of raw NV21 / Y800 dumps. Raw files carry
+ * their size in the name, e.g. {@code shelf_1280x720.nv21}.
+ */
+final class ImageLoader {
+    private static final Pattern SIZE = Pattern.compile("(\\d+)x(\\d+)");
+
+    private ImageLoader() {
+    }
+
+    static boolean isSupported(Path file) {
+        String extension = extension(file);
+        return extension.equals("png") || extension.equals("jpg") || extension.equals("jpeg")
+                || isRaw(extension);
+    }
+
+    private static boolean isRaw(String extension) {
+        return extension.equals("nv21") || extension.equals("y800") || extension.equals("yuv");
+    }
+
+    /** Returns an upright frame whose data starts with the luminance plane. */
+    static PreviewFrame load(Path file) throws IOException {
+        String extension = extension(file);
+        if (isRaw(extension)) {
+            return loadRaw(file, !extension.equals("y800"));
+        }
+        BufferedImage image = ImageIO.read(file.toFile());
+        if (image == null) {
+            throw new IOException("Unreadable image");
+        }
+        return new PreviewFrame(toLuminance(image), image.getWidth(), image.getHeight(), 0);
+    }
+
+    private static PreviewFrame loadRaw(Path file, boolean withChroma) throws IOException {
+        Matcher matcher = SIZE.matcher(file.getFileName().toString());
+        int width = 0;
+        int height = 0;
+        while (matcher.find()) {
+            width = Integer.parseInt(matcher.group(1));
+            height = Integer.parseInt(matcher.group(2));
+        }
+        if (width == 0 || height == 0) {
+            throw new IOException("Raw frame name must contain its size, e.g. frame_640x480.nv21");
+        }
+        byte[] data = Files.readAllBytes(file);
+        int expected = withChroma ? width * height * 3 / 2 : width * height;
+        if (data.length < expected) {
+            throw new IOException("Expected at least " + expected + " bytes for " + width + "x" + height
+                    + ", found " + data.length);
+        }
+        return new PreviewFrame(data, width, height, 0);
+    }
+
+    // the same integer luma approximation zxing uses for RGB sources
+    private static byte[] toLuminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        byte[] luminance = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                if ((pixel >>> 24) == 0) {
+                    // treat transparent pixels as white paper
+                    luminance[offset + x] = (byte) 0xFF;
+                    continue;
+                }
+                int r = (pixel >> 16) & 0xFF;
+                int g = (pixel >> 8) & 0xFF;
+                int b = pixel & 0xFF;
+                luminance[offset + x] = (byte) ((306 * r + 601 * g + 117 * b + 0x200) >> 10);
+            }
+        }
+        return luminance;
+    }
+
+    private static String extension(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.US);
+    }
+}
@@ -0,0 +1,133 @@
+package ru.vigroup.barcodescanner.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes one line per file as soon as it has been decoded, either as CSV or as JSON lines.
+ * Calls are serialized by {@link BatchDecoder}, so implementations need not be thread safe.
+ */
+public abstract class ResultWriter implements Closeable {
+    protected final Writer mOut;
+
+    protected ResultWriter(Writer out) {
+        mOut = out;
+    }
+
+    public abstract void write(BatchResult result) throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    public static ResultWriter csv(Writer out) throws IOException {
+        return new CsvResultWriter(out);
+    }
+
+    public static ResultWriter jsonLines(Writer out) {
+        return new JsonLinesResultWriter(out);
+    }
+
+    private static String formatOf(BatchResult result) {
+        return result.getResult() != null ? result.getResult().getBarcodeFormat().toString() : "";
+    }
+
+    private static String textOf(BatchResult result) {
+        if (result.getResult() != null) {
+            return result.getResult().getText();
+        }
+        return result.getError() != null ? result.getError() : "";
+    }
+
+    private static final class CsvResultWriter extends ResultWriter {
+        CsvResultWriter(Writer out) throws IOException {
+            super(out);
+            mOut.write("file,status,format,text,decode_ms\n");
+            mOut.flush();
+        }
+
+        @Override
+        public void write(BatchResult result) throws IOException {
+            mOut.write(quote(result.getFile().toString()));
+            mOut.write(',');
+            mOut.write(result.getStatus().toString());
+            mOut.write(',');
+            mOut.write(formatOf(result));
+            mOut.write(',');
+            mOut.write(quote(textOf(result)));
+            mOut.write(',');
+            mOut.write(String.valueOf(result.getDecodeNanos() / 1000000.0));
+            mOut.write('\n');
+            mOut.flush();
+        }
+
+        // RFC 4180: quote fields with separators, quotes or line breaks and double inner quotes
+        private static String quote(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    private static final class JsonLinesResultWriter extends ResultWriter {
+        JsonLinesResultWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(BatchResult result) throws IOException {
+            StringBuilder line = new StringBuilder();
+            line.append("{\"file\":");
+            appendString(line, result.getFile().toString());
+            line.append(",\"status\":\"").append(result.getStatus()).append('"');
+            if (result.getResult() != null) {
+                line.append(",\"format\":\"").append(formatOf(result)).append('"');
+                line.append(",\"text\":");
+                appendString(line, result.getResult().getText());
+            }
+            if (result.getError() != null) {
+                line.append(",\"error\":");
+                appendString(line, result.getError());
+            }
+            line.append(",\"decode_ms\":").append(result.getDecodeNanos() / 1000000.0);
+            line.append("}\n");
+            mOut.write(line.toString());
+            mOut.flush();
+        }
+
+        private static void appendString(StringBuilder line, String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        line.append("\\\"");
+                        break;
+                    case '\\':
+                        line.append("\\\\");
+                        break;
+                    case '\n':
+                        line.append("\\n");
+                        break;
+                    case '\r':
+                        line.append("\\r");
+                        break;
+                    case '\t':
+                        line.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            line.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            line.append(c);
+                        }
+                }
+            }
+            line.append('"');
+        }
+    }
+}
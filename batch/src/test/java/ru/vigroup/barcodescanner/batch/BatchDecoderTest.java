@@ -0,0 +1,141 @@
+package ru.vigroup.barcodescanner.batch;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.common.BitMatrix;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BatchDecoderTest {
+    private Path mDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        mDirectory = Files.createTempDirectory("batch");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.walkFileTree(mDirectory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Test
+    public void decode_readsImagesAndRawFrames() throws Exception {
+        Files.createDirectory(mDirectory.resolve("nested"));
+        writePng(mDirectory.resolve("label.png"), BarcodeFormat.QR_CODE, "https://example.com/item/42");
+        writeRaw(mDirectory.resolve("nested/shelf_320x240.nv21"), BarcodeFormat.EAN_13, "4006381333931", true);
+        writeRaw(mDirectory.resolve("nested/pallet_320x240.y800"), BarcodeFormat.CODE_128, "PALLET-000123", false);
+        writeRaw(mDirectory.resolve("blank_320x240.y800"), null, null, false);
+        Files.write(mDirectory.resolve("broken.png"), new byte[]{1, 2, 3});
+        Files.write(mDirectory.resolve("notes.txt"), new byte[]{1, 2, 3});
+
+        StringWriter out = new StringWriter();
+        BatchStats stats = new BatchDecoder(2).decode(Collections.singletonList(mDirectory), ResultWriter.jsonLines(out));
+
+        assertEquals(5, stats.getFiles());
+        assertEquals(3, stats.getDecoded());
+        assertEquals(1, stats.getNotFound());
+        assertEquals(1, stats.getErrors());
+        String json = out.toString();
+        assertEquals(5, json.split("\n").length);
+        assertTrue(json, json.contains("\"format\":\"QR_CODE\",\"text\":\"https://example.com/item/42\""));
+        assertTrue(json, json.contains("\"format\":\"EAN_13\",\"text\":\"4006381333931\""));
+        assertTrue(json, json.contains("\"format\":\"CODE_128\",\"text\":\"PALLET-000123\""));
+        assertTrue(json, json.contains("blank_320x240.y800\",\"status\":\"NOT_FOUND\""));
+        assertTrue(json, json.contains("broken.png\",\"status\":\"ERROR\""));
+    }
+
+    @Test
+    public void decode_onlyLooksForConfiguredFormats() throws Exception {
+        writePng(mDirectory.resolve("label.png"), BarcodeFormat.QR_CODE, "https://example.com/item/42");
+        BatchDecoder decoder = new BatchDecoder(1);
+        decoder.setFormats(Arrays.asList(BarcodeFormat.EAN_13));
+
+        BatchStats stats = decoder.decode(Collections.singletonList(mDirectory), ResultWriter.csv(new StringWriter()));
+
+        assertEquals(1, stats.getNotFound());
+    }
+
+    @Test
+    public void csv_quotesFieldsWithSeparators() throws Exception {
+        Path file = mDirectory.resolve("label.png");
+        writePng(file, BarcodeFormat.QR_CODE, "say \"hi\", bye");
+        StringWriter out = new StringWriter();
+
+        ResultWriter.csv(out).write(new BatchDecoder(1).decodeFile(file));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals("file,status,format,text,decode_ms", lines[0]);
+        assertTrue(lines[1], lines[1].startsWith(file + ",DECODED,QR_CODE,\"say \"\"hi\"\", bye\","));
+    }
+
+    private static BitMatrix encode(BarcodeFormat format, String contents, int width, int height) throws Exception {
+        boolean twoD = format == BarcodeFormat.QR_CODE;
+        return new MultiFormatWriter().encode(contents, format, width / 2, twoD ? width / 2 : height / 4);
+    }
+
+    private static void writePng(Path file, BarcodeFormat format, String contents) throws Exception {
+        BitMatrix matrix = encode(format, contents, 400, 400);
+        BufferedImage image = new BufferedImage(400, 400, BufferedImage.TYPE_INT_RGB);
+        int left = (400 - matrix.getWidth()) / 2;
+        int top = (400 - matrix.getHeight()) / 2;
+        for (int y = 0; y < 400; y++) {
+            for (int x = 0; x < 400; x++) {
+                boolean black = x >= left && y >= top && x - left < matrix.getWidth() && y - top < matrix.getHeight()
+                        && matrix.get(x - left, y - top);
+                image.setRGB(x, y, black ? 0x202020 : 0xF0F0F0);
+            }
+        }
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    private static void writeRaw(Path file, BarcodeFormat format, String contents, boolean withChroma) throws Exception {
+        int width = 320;
+        int height = 240;
+        byte[] frame = new byte[withChroma ? width * height * 3 / 2 : width * height];
+        Arrays.fill(frame, (byte) 200);
+        if (format != null) {
+            BitMatrix matrix = encode(format, contents, width, height);
+            int left = (width - matrix.getWidth()) / 2;
+            int top = (height - matrix.getHeight()) / 2;
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    if (matrix.get(x, y)) {
+                        frame[(top + y) * width + left + x] = (byte) 30;
+                    }
+                }
+            }
+        }
+        Files.write(file, frame);
+    }
+}
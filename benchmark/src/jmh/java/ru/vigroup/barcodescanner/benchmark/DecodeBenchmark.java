@@ -0,0 +1,100 @@
+package ru.vigroup.barcodescanner.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ru.vigroup.barcodescanner.FrameDecoder;
+import ru.vigroup.barcodescanner.FrameRegion;
+import ru.vigroup.barcodescanner.FrameRotator;
+
+/**
+ * Cost of a full decode of the framing rect, with and without TRY_HARDER, for every format
+ * ZXingScannerView scans by default. The readers look for all of them, as the view does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecodeBenchmark {
+    private static final int ORIENTATION = 90;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    // RSS_14 is scanned as well, but zxing has no writer to render one
+    @Param({"UPC_A", "UPC_E", "EAN_13", "EAN_8", "CODE_39", "CODE_93", "CODE_128", "ITF",
+            "CODABAR", "QR_CODE", "DATA_MATRIX", "PDF_417"})
+    public String format;
+
+    private LuminanceSource mSource;
+    private MultiFormatReader mTryHarderReader;
+    private MultiFormatReader mFastReader;
+
+    @Setup
+    public void setUp() throws Exception {
+        int width = FrameCorpus.parseWidth(resolution);
+        int height = FrameCorpus.parseHeight(resolution);
+        byte[] frame = FrameCorpus.frameWith(BarcodeFormat.valueOf(format), width, height);
+        FrameRegion rect = FrameCorpus.framingRect(ORIENTATION, width, height);
+        byte[] rotated = new byte[rect.getWidth() * rect.getHeight()];
+        FrameRotator.rotate(frame, width, height, ORIENTATION,
+                rect.getLeft(), rect.getTop(), rect.getWidth(), rect.getHeight(), rotated);
+        mSource = FrameDecoder.buildLuminanceSource(rotated, rect.getWidth(), rect.getHeight(),
+                new FrameRegion(0, 0, rect.getWidth(), rect.getHeight()));
+
+        mTryHarderReader = reader(true);
+        mFastReader = reader(false);
+        // fail fast instead of benchmarking a frame that never decodes
+        mTryHarderReader.decodeWithState(new BinaryBitmap(new HybridBinarizer(mSource)));
+    }
+
+    private static MultiFormatReader reader(boolean tryHarder) {
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, FrameDecoder.ALL_FORMATS);
+        if (tryHarder) {
+            hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        }
+        MultiFormatReader reader = new MultiFormatReader();
+        reader.setHints(hints);
+        return reader;
+    }
+
+    @Benchmark
+    public Result decodeTryHarder() throws Exception {
+        try {
+            return mTryHarderReader.decodeWithState(new BinaryBitmap(new HybridBinarizer(mSource)));
+        } finally {
+            mTryHarderReader.reset();
+        }
+    }
+
+    /** Returns null where only TRY_HARDER finds the code, so a miss is measured as well. */
+    @Benchmark
+    public Result decodeFast() throws Exception {
+        try {
+            return mFastReader.decodeWithState(new BinaryBitmap(new HybridBinarizer(mSource)));
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            mFastReader.reset();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package ru.vigroup.barcodescanner.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.datamatrix.encoder.SymbolShapeHint;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import ru.vigroup.barcodescanner.FrameRegion;
+
+/**
+ * Generates NV21 preview frames in sensor (landscape) orientation with a barcode in the framing
+ * rect, the way a back camera on a phone held in portrait sees a code aimed at the view finder.
+ */
+final class FrameCorpus {
+    private static final int QUIET_ZONE_MODULES = 4;
+    // paper white around the code, in pixels, so the binarizer does not take the grey
+    // background next to the quiet zone for bars
+    private static final int LABEL_BORDER = 48;
+
+    private FrameCorpus() {
+    }
+
+    /** Clockwise rotation of a frame from a 90 degree back camera for a display rotation. */
+    static int orientationFor(String displayRotation) {
+        int degrees = Integer.parseInt(displayRotation.substring("ROTATION_".length()));
+        return (90 - degrees + 360) % 360;
+    }
+
+    /**
+     * The portrait framing rect of ViewFinderView for an upright frame, assuming the preview
+     * fills the view.
+     */
+    static FrameRegion portraitFramingRect(int uprightWidth, int uprightHeight) {
+        int width = Math.min(Math.max(uprightWidth * 7 / 8, 240), 945);
+        int height = Math.min(Math.max(uprightHeight * 3 / 8, 240), 720);
+        int left = (uprightWidth - width) / 2;
+        return new FrameRegion(left, left, width, height);
+    }
+
+    /** Same as {@link #portraitFramingRect} but for display rotations that keep the frame landscape. */
+    static FrameRegion framingRect(int orientation, int width, int height) {
+        if (orientation % 180 != 0) {
+            return portraitFramingRect(height, width);
+        }
+        int rectWidth = Math.min(Math.max(width * 5 / 8, 240), 1200);
+        int rectHeight = Math.min(Math.max(height * 5 / 8, 240), 675);
+        return new FrameRegion((width - rectWidth) / 2, (height - rectHeight) / 8, rectWidth, rectHeight);
+    }
+
+    static int parseWidth(String resolution) {
+        return Integer.parseInt(resolution.substring(0, resolution.indexOf('x')));
+    }
+
+    static int parseHeight(String resolution) {
+        return Integer.parseInt(resolution.substring(resolution.indexOf('x') + 1));
+    }
+
+    static String contentsFor(BarcodeFormat format) {
+        switch (format) {
+            case UPC_A:
+                return "036000291452";
+            case UPC_E:
+                return "01234565";
+            case EAN_13:
+                return "4006381333931";
+            case EAN_8:
+                return "96385074";
+            case CODE_39:
+            case CODE_93:
+                return "PALLET42";
+            case CODE_128:
+                return "PALLET-000123";
+            case ITF:
+                return "00012345678905";
+            case CODABAR:
+                return "A40156B";
+            case QR_CODE:
+                return "https://example.com/item/42";
+            case DATA_MATRIX:
+                // the 16x16 symbol of a shorter text is missed by the 3.3.1 detector at some scales
+                return "LOT 2026-10-18 PALLET 42 000123";
+            case PDF_417:
+                return "DELIVERY 000123 / 42 PCS";
+            default:
+                throw new IllegalArgumentException("No writer for " + format);
+        }
+    }
+
+    /**
+     * A frame with only sensor-like noise, for measuring the cost of frames without a code.
+     */
+    static byte[] emptyFrame(int width, int height) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        Random random = new Random(width * 31 + height);
+        for (int i = 0; i < width * height; i++) {
+            frame[i] = (byte) (120 + random.nextInt(17));
+        }
+        fillChroma(frame, width * height);
+        return frame;
+    }
+
+    /**
+     * Renders {@code format} upright for a user holding the phone in portrait, i.e. rotated a
+     * quarter turn counter-clockwise in the sensor frame, centred in the portrait framing rect on
+     * a white label that keeps the quiet zone clear of the grey background.
+     */
+    static byte[] frameWith(BarcodeFormat format, int width, int height) throws WriterException {
+        FrameRegion rect = portraitFramingRect(height, width);
+        boolean square = format == BarcodeFormat.QR_CODE || format == BarcodeFormat.DATA_MATRIX;
+        int codeWidth = square ? Math.min(rect.getWidth(), rect.getHeight()) * 3 / 4 : rect.getWidth() * 3 / 4;
+        int codeHeight = square ? codeWidth : rect.getHeight() / 3;
+        BitMatrix matrix = encode(format, codeWidth, codeHeight);
+
+        byte[] frame = emptyFrame(width, height);
+        Random random = new Random(format.ordinal());
+        int left = rect.getLeft() + (rect.getWidth() - matrix.getWidth()) / 2;
+        int top = rect.getTop() + (rect.getHeight() - matrix.getHeight()) / 2;
+        int label = Math.min(LABEL_BORDER, Math.min(left - rect.getLeft(), top - rect.getTop()));
+        // the upright pixel (x, y) comes from sensor (y, height - 1 - x)
+        for (int y = -label; y < matrix.getHeight() + label; y++) {
+            for (int x = -label; x < matrix.getWidth() + label; x++) {
+                int sensorX = top + y;
+                int sensorY = height - 1 - (left + x);
+                boolean black = x >= 0 && y >= 0 && x < matrix.getWidth() && y < matrix.getHeight()
+                        && matrix.get(x, y);
+                int luminance = black ? 40 : 210;
+                frame[sensorY * width + sensorX] = (byte) (luminance + random.nextInt(21) - 10);
+            }
+        }
+        return frame;
+    }
+
+    // the writers scale 1D and QR codes to the requested size, Data Matrix only comes at one
+    // pixel per module and is scaled up by a whole factor here
+    private static BitMatrix encode(BarcodeFormat format, int codeWidth, int codeHeight) throws WriterException {
+        Map<EncodeHintType, Object> hints = new EnumMap<EncodeHintType, Object>(EncodeHintType.class);
+        hints.put(EncodeHintType.MARGIN, QUIET_ZONE_MODULES);
+        if (format != BarcodeFormat.DATA_MATRIX) {
+            return new MultiFormatWriter().encode(contentsFor(format), format, codeWidth, codeHeight, hints);
+        }
+        hints.put(EncodeHintType.DATA_MATRIX_SHAPE, SymbolShapeHint.FORCE_SQUARE);
+        BitMatrix modules = new MultiFormatWriter().encode(contentsFor(format), format, 0, 0, hints);
+        int moduleSize = Math.max(1, Math.min(codeWidth, codeHeight)
+                / (Math.max(modules.getWidth(), modules.getHeight()) + 2 * QUIET_ZONE_MODULES));
+        int quietZone = QUIET_ZONE_MODULES * moduleSize;
+        BitMatrix scaled = new BitMatrix(modules.getWidth() * moduleSize + 2 * quietZone,
+                modules.getHeight() * moduleSize + 2 * quietZone);
+        for (int y = 0; y < modules.getHeight(); y++) {
+            for (int x = 0; x < modules.getWidth(); x++) {
+                if (modules.get(x, y)) {
+                    scaled.setRegion(quietZone + x * moduleSize, quietZone + y * moduleSize, moduleSize, moduleSize);
+                }
+            }
+        }
+        return scaled;
+    }
+
+    private static void fillChroma(byte[] frame, int from) {
+        for (int i = from; i < frame.length; i++) {
+            frame[i] = (byte) 128;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package ru.vigroup.barcodescanner.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.vigroup.barcodescanner.FrameRegion;
+import ru.vigroup.barcodescanner.FrameRotator;
+import ru.vigroup.barcodescanner.RotatedLuminanceSource;
+
+/**
+ * Cost of building the luminance source for the framing rect and binarizing it, for a portrait
+ * frame with an EAN-13 in the view finder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LuminanceBenchmark {
+    private static final int ORIENTATION = 90;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    private byte[] mFrame;
+    private byte[] mRotated;
+    private int mWidth;
+    private int mHeight;
+    private FrameRegion mFramingRect;
+    private FrameRegion mSensorRect;
+    private LuminanceSource mSource;
+    private BitArray mRow;
+
+    @Setup
+    public void setUp() throws Exception {
+        mWidth = FrameCorpus.parseWidth(resolution);
+        mHeight = FrameCorpus.parseHeight(resolution);
+        mFrame = FrameCorpus.frameWith(BarcodeFormat.EAN_13, mWidth, mHeight);
+        mFramingRect = FrameCorpus.framingRect(ORIENTATION, mWidth, mHeight);
+        mSensorRect = mFramingRect.toSensor(mWidth, mHeight, ORIENTATION);
+        mRotated = new byte[mFramingRect.getWidth() * mFramingRect.getHeight()];
+        mSource = planarSource();
+        mRow = new BitArray(mFramingRect.getWidth());
+    }
+
+    private LuminanceSource planarSource() {
+        FrameRotator.rotate(mFrame, mWidth, mHeight, ORIENTATION, mFramingRect.getLeft(), mFramingRect.getTop(),
+                mFramingRect.getWidth(), mFramingRect.getHeight(), mRotated);
+        return new PlanarYUVLuminanceSource(mRotated, mFramingRect.getWidth(), mFramingRect.getHeight(),
+                0, 0, mFramingRect.getWidth(), mFramingRect.getHeight(), false);
+    }
+
+    @Benchmark
+    public byte[] rotateThenPlanarMatrix() {
+        return planarSource().getMatrix();
+    }
+
+    @Benchmark
+    public byte[] rotatedViewMatrix() {
+        return new RotatedLuminanceSource(mFrame, mWidth, mHeight,
+                mSensorRect.getLeft(), mSensorRect.getTop(), mSensorRect.getWidth(), mSensorRect.getHeight(),
+                ORIENTATION).getMatrix();
+    }
+
+    @Benchmark
+    public BitMatrix hybridBinarizer() throws NotFoundException {
+        return new HybridBinarizer(mSource).getBlackMatrix();
+    }
+
+    @Benchmark
+    public BitArray globalHistogramRow() throws NotFoundException {
+        return new GlobalHistogramBinarizer(mSource).getBlackRow(mSource.getHeight() / 2, mRow);
+    }
+}
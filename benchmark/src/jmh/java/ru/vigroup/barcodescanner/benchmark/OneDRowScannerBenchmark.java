@@ -0,0 +1,91 @@
+package ru.vigroup.barcodescanner.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import ru.vigroup.barcodescanner.FrameDecoder;
+import ru.vigroup.barcodescanner.FrameRegion;
+import ru.vigroup.barcodescanner.FrameRotator;
+import ru.vigroup.barcodescanner.OneDRowScanner;
+
+/**
+ * Per-frame cost of the 1D row fast path against the full TRY_HARDER decode of the framing rect,
+ * for a frame with an EAN-13 and for one without any code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OneDRowScannerBenchmark {
+    private static final int ORIENTATION = 90;
+
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"hit", "miss"})
+    public String frame;
+
+    private LuminanceSource mSource;
+    private OneDRowScanner mRowScanner;
+    private MultiFormatReader mTryHarderReader;
+
+    @Setup
+    public void setUp() throws Exception {
+        int width = FrameCorpus.parseWidth(resolution);
+        int height = FrameCorpus.parseHeight(resolution);
+        byte[] data = frame.equals("hit")
+                ? FrameCorpus.frameWith(BarcodeFormat.EAN_13, width, height)
+                : FrameCorpus.emptyFrame(width, height);
+        FrameRegion rect = FrameCorpus.framingRect(ORIENTATION, width, height);
+        byte[] rotated = new byte[rect.getWidth() * rect.getHeight()];
+        FrameRotator.rotate(data, width, height, ORIENTATION,
+                rect.getLeft(), rect.getTop(), rect.getWidth(), rect.getHeight(), rotated);
+        mSource = FrameDecoder.buildLuminanceSource(rotated, rect.getWidth(), rect.getHeight(),
+                new FrameRegion(0, 0, rect.getWidth(), rect.getHeight()));
+
+        mRowScanner = new OneDRowScanner(FrameDecoder.ALL_FORMATS, OneDRowScanner.DEFAULT_ROW_COUNT);
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, FrameDecoder.ALL_FORMATS);
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        mTryHarderReader = new MultiFormatReader();
+        mTryHarderReader.setHints(hints);
+        // fail fast instead of timing a hit that is a miss
+        if (frame.equals("hit") && rows() == null) {
+            throw new IllegalStateException("The row scanner misses the EAN-13 at " + resolution);
+        }
+    }
+
+    @Benchmark
+    public Result rows() {
+        return mRowScanner.decode(new BinaryBitmap(new HybridBinarizer(mSource)));
+    }
+
+    @Benchmark
+    public Result tryHarder() {
+        try {
+            return mTryHarderReader.decodeWithState(new BinaryBitmap(new HybridBinarizer(mSource)));
+        } catch (NotFoundException e) {
+            return null;
+        } finally {
+            mTryHarderReader.reset();
+        }
+    }
+}
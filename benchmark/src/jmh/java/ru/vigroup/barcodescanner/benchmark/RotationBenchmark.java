@@ -0,0 +1,59 @@
+package ru.vigroup.barcodescanner.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import ru.vigroup.barcodescanner.FrameRegion;
+import ru.vigroup.barcodescanner.FrameRotator;
+
+/**
+ * Cost of turning a sensor frame upright, for the whole frame and for only the framing rect.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RotationBenchmark {
+    @Param({"640x480", "1280x720", "1920x1080"})
+    public String resolution;
+
+    @Param({"ROTATION_0", "ROTATION_90", "ROTATION_180", "ROTATION_270"})
+    public String displayRotation;
+
+    private byte[] mFrame;
+    private byte[] mRotated;
+    private int mWidth;
+    private int mHeight;
+    private int mOrientation;
+    private FrameRegion mFramingRect;
+
+    @Setup
+    public void setUp() {
+        mWidth = FrameCorpus.parseWidth(resolution);
+        mHeight = FrameCorpus.parseHeight(resolution);
+        mOrientation = FrameCorpus.orientationFor(displayRotation);
+        mFrame = FrameCorpus.emptyFrame(mWidth, mHeight);
+        mRotated = new byte[mWidth * mHeight];
+        mFramingRect = FrameCorpus.framingRect(mOrientation, mWidth, mHeight);
+    }
+
+    @Benchmark
+    public byte[] rotateFullFrame() {
+        FrameRotator.rotate(mFrame, mWidth, mHeight, mOrientation, mRotated);
+        return mRotated;
+    }
+
+    @Benchmark
+    public byte[] rotateFramingRect() {
+        FrameRotator.rotate(mFrame, mWidth, mHeight, mOrientation,
+                mFramingRect.getLeft(), mFramingRect.getTop(), mFramingRect.getWidth(), mFramingRect.getHeight(), mRotated);
+        return mRotated;
+    }
+}
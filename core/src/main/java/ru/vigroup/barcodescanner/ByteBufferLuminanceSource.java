@@ -0,0 +1,257 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.LuminanceSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A cropped view of a luminance plane held in a (possibly direct) {@link ByteBuffer}, such as the
+ * Y plane of a camera2 {@code Image}, presented rotated clockwise by a multiple of 90 degrees.
+ * Rows may be padded ({@code rowStride}) and pixels interleaved ({@code pixelStride}). Nothing is
+ * copied up front, crops and further rotations are new views.
+ *
+ * <p>With a {@link Scratch} rows and the matrix are read into its arrays instead of fresh ones,
+ * so a decode worker allocates nothing per frame. A matrix returned by {@link #getMatrix()} is
+ * then only valid until the next source sharing the scratch reads its matrix.
+ */
+public final class ByteBufferLuminanceSource extends LuminanceSource {
+    /** Arrays reused by the sources of one thread. Not thread safe, keep one per decode worker. */
+    public static final class Scratch {
+        private byte[] mRow = new byte[0];
+        private byte[] mLine = new byte[0];
+        private byte[] mMatrix = new byte[0];
+
+        byte[] row(int size) {
+            if (mRow.length < size) {
+                mRow = new byte[size];
+            }
+            return mRow;
+        }
+
+        byte[] line(int size) {
+            if (mLine.length < size) {
+                mLine = new byte[size];
+            }
+            return mLine;
+        }
+
+        byte[] matrix(int size) {
+            if (mMatrix.length < size) {
+                mMatrix = new byte[size];
+            }
+            return mMatrix;
+        }
+    }
+
+    private final ByteBuffer mBuffer;
+    private final int mOffset;
+    private final int mDataWidth;
+    private final int mDataHeight;
+    private final int mRowStride;
+    private final int mPixelStride;
+    private final int mLeft;
+    private final int mTop;
+    private final int mCropWidth;
+    private final int mCropHeight;
+    private final int mDegrees;
+    private final Scratch mScratch;
+    // for bulk reads, so the position of the caller's buffer is left alone
+    private ByteBuffer mReader;
+
+    /**
+     * The plane starts at the buffer's position. The region {@code (left, top, cropWidth,
+     * cropHeight)} is given in plane coordinates and is presented rotated clockwise by
+     * {@code degrees}. {@code scratch} may be null, then every read allocates.
+     */
+    public ByteBufferLuminanceSource(ByteBuffer buffer, int dataWidth, int dataHeight, int rowStride,
+                                     int pixelStride, int left, int top, int cropWidth, int cropHeight,
+                                     int degrees, Scratch scratch) {
+        this(buffer, buffer.position(), dataWidth, dataHeight, rowStride, pixelStride,
+                left, top, cropWidth, cropHeight, degrees, scratch);
+        // the last row may be shorter than the stride, as in camera2 planes
+        long end = (long) mOffset + (long) (dataHeight - 1) * rowStride + (long) (dataWidth - 1) * pixelStride;
+        if (pixelStride < 1 || rowStride < (dataWidth - 1) * pixelStride + 1 || end >= buffer.limit()) {
+            throw new IllegalArgumentException("Strides do not fit within the buffer.");
+        }
+    }
+
+    private ByteBufferLuminanceSource(ByteBuffer buffer, int offset, int dataWidth, int dataHeight,
+                                      int rowStride, int pixelStride, int left, int top,
+                                      int cropWidth, int cropHeight, int degrees, Scratch scratch) {
+        super(degrees % 180 == 0 ? cropWidth : cropHeight, degrees % 180 == 0 ? cropHeight : cropWidth);
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + degrees);
+        }
+        if (left < 0 || top < 0 || left + cropWidth > dataWidth || top + cropHeight > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        mBuffer = buffer;
+        mOffset = offset;
+        mDataWidth = dataWidth;
+        mDataHeight = dataHeight;
+        mRowStride = rowStride;
+        mPixelStride = pixelStride;
+        mLeft = left;
+        mTop = top;
+        mCropWidth = cropWidth;
+        mCropHeight = cropHeight;
+        mDegrees = degrees;
+        mScratch = scratch;
+    }
+
+    public int getDegrees() {
+        return mDegrees;
+    }
+
+    /** Returns the same region rotated by {@code degrees} instead of this view's rotation. */
+    public ByteBufferLuminanceSource rotate(int degrees) {
+        return new ByteBufferLuminanceSource(mBuffer, mOffset, mDataWidth, mDataHeight, mRowStride,
+                mPixelStride, mLeft, mTop, mCropWidth, mCropHeight, degrees, mScratch);
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = mScratch != null ? mScratch.row(width) : new byte[width];
+        }
+        int offset = dataOffset(0, y);
+        int step = dataOffset(width > 1 ? 1 : 0, y) - offset;
+        if (step == 1) {
+            read(offset, row, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) {
+                row[x] = mBuffer.get(offset);
+                offset += step;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int size = getWidth() * getHeight();
+        byte[] matrix = mScratch != null ? mScratch.matrix(size) : new byte[size];
+        readMatrix(matrix);
+        return matrix;
+    }
+
+    /**
+     * Writes the view into {@code matrix}, row after row. Plane rows are read in bulk and
+     * scattered into place, so a rotated view reads the buffer sequentially.
+     */
+    void readMatrix(byte[] matrix) {
+        int width = getWidth();
+        byte[] line = mDegrees == 0 && mPixelStride == 1 ? null
+                : mScratch != null ? mScratch.line(mCropWidth) : new byte[mCropWidth];
+        for (int row = 0; row < mCropHeight; row++) {
+            int offset = mOffset + (mTop + row) * mRowStride + mLeft * mPixelStride;
+            if (line == null) {
+                read(offset, matrix, row * width, mCropWidth);
+                continue;
+            }
+            if (mPixelStride == 1) {
+                read(offset, line, 0, mCropWidth);
+            } else {
+                for (int i = 0; i < mCropWidth; i++) {
+                    line[i] = mBuffer.get(offset + i * mPixelStride);
+                }
+            }
+            switch (mDegrees) {
+                case 90: {
+                    int x = mCropHeight - 1 - row;
+                    for (int i = 0; i < mCropWidth; i++) {
+                        matrix[i * width + x] = line[i];
+                    }
+                    break;
+                }
+                case 180: {
+                    int end = (mCropHeight - 1 - row) * width + mCropWidth - 1;
+                    for (int i = 0; i < mCropWidth; i++) {
+                        matrix[end - i] = line[i];
+                    }
+                    break;
+                }
+                case 270: {
+                    for (int i = 0; i < mCropWidth; i++) {
+                        matrix[(mCropWidth - 1 - i) * width + row] = line[i];
+                    }
+                    break;
+                }
+                default:
+                    System.arraycopy(line, 0, matrix, row * width, mCropWidth);
+                    break;
+            }
+        }
+    }
+
+    private void read(int offset, byte[] dst, int dstOffset, int length) {
+        if (mReader == null) {
+            mReader = mBuffer.duplicate();
+        }
+        mReader.position(offset);
+        mReader.get(dst, dstOffset, length);
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        int firstX = planeX(left, top);
+        int firstY = planeY(left, top);
+        int lastX = planeX(left + width - 1, top + height - 1);
+        int lastY = planeY(left + width - 1, top + height - 1);
+        return new ByteBufferLuminanceSource(mBuffer, mOffset, mDataWidth, mDataHeight, mRowStride,
+                mPixelStride, Math.min(firstX, lastX), Math.min(firstY, lastY),
+                Math.abs(lastX - firstX) + 1, Math.abs(lastY - firstY) + 1, mDegrees, mScratch);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return rotate((mDegrees + 270) % 360);
+    }
+
+    // plane column of the pixel shown at (x, y)
+    private int planeX(int x, int y) {
+        switch (mDegrees) {
+            case 90:
+                return mLeft + y;
+            case 180:
+                return mLeft + mCropWidth - 1 - x;
+            case 270:
+                return mLeft + mCropWidth - 1 - y;
+            default:
+                return mLeft + x;
+        }
+    }
+
+    // plane row of the pixel shown at (x, y)
+    private int planeY(int x, int y) {
+        switch (mDegrees) {
+            case 90:
+                return mTop + mCropHeight - 1 - x;
+            case 180:
+                return mTop + mCropHeight - 1 - y;
+            case 270:
+                return mTop + x;
+            default:
+                return mTop + y;
+        }
+    }
+
+    // index into mBuffer of the pixel shown at (x, y)
+    private int dataOffset(int x, int y) {
+        return mOffset + planeY(x, y) * mRowStride + planeX(x, y) * mPixelStride;
+    }
+}
@@ -0,0 +1,84 @@
+package ru.vigroup.barcodescanner;
+
+/**
+ * Immutable snapshot of everything the per-frame path needs to know about the running camera.
+ * Built once when the preview parameters are negotiated and replaced only when the display
+ * rotates, so handling a frame never has to query the camera or the window manager.
+ */
+public final class CameraSessionConfig {
+    private final int mPreviewWidth;
+    private final int mPreviewHeight;
+    private final int mPreviewFormat;
+    private final int mSensorOrientation;
+    private final boolean mFrontFacing;
+    private final int mDisplayRotation;
+    private final int mDisplayOrientation;
+
+    /**
+     * @param displayRotation rotation of the display in degrees, see {@link #toDegrees(int)}
+     */
+    public CameraSessionConfig(int previewWidth, int previewHeight, int previewFormat,
+                               int sensorOrientation, boolean frontFacing, int displayRotation) {
+        mPreviewWidth = previewWidth;
+        mPreviewHeight = previewHeight;
+        mPreviewFormat = previewFormat;
+        mSensorOrientation = sensorOrientation;
+        mFrontFacing = frontFacing;
+        mDisplayRotation = displayRotation;
+        mDisplayOrientation = getDisplayOrientation(sensorOrientation, frontFacing, displayRotation);
+    }
+
+    public CameraSessionConfig withDisplayRotation(int displayRotation) {
+        if (displayRotation == mDisplayRotation) {
+            return this;
+        }
+        return new CameraSessionConfig(mPreviewWidth, mPreviewHeight, mPreviewFormat,
+                mSensorOrientation, mFrontFacing, displayRotation);
+    }
+
+    public int getPreviewWidth() {
+        return mPreviewWidth;
+    }
+
+    public int getPreviewHeight() {
+        return mPreviewHeight;
+    }
+
+    /** One of the {@code ImageFormat} constants. */
+    public int getPreviewFormat() {
+        return mPreviewFormat;
+    }
+
+    public int getSensorOrientation() {
+        return mSensorOrientation;
+    }
+
+    public boolean isFrontFacing() {
+        return mFrontFacing;
+    }
+
+    public int getDisplayRotation() {
+        return mDisplayRotation;
+    }
+
+    /** Clockwise rotation in degrees that brings a preview frame upright on the display. */
+    public int getDisplayOrientation() {
+        return mDisplayOrientation;
+    }
+
+    /** Converts one of the {@code Surface.ROTATION_*} constants to degrees. */
+    public static int toDegrees(int surfaceRotation) {
+        return (surfaceRotation & 3) * 90;
+    }
+
+    public static int getDisplayOrientation(int sensorOrientation, boolean frontFacing, int displayRotation) {
+        int result;
+        if (frontFacing) {
+            result = (sensorOrientation + displayRotation) % 360;
+            result = (360 - result) % 360;  // compensate the mirror
+        } else {  // back-facing
+            result = (sensorOrientation - displayRotation + 360) % 360;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,175 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * Decodes a region coarse to fine: first a 4x and a 2x box filtered downscale, then the full
+ * resolution region only when those missed. A big code in a big framing rect decodes at a
+ * fraction of the pixels, while small or dense codes still get the full resolution. A level is
+ * only tried while its shorter side keeps at least {@code minSize} pixels.
+ *
+ * <p>Levels are built into arrays reused by each decode worker. The counters tell which level
+ * decoded, see {@link #getHitCount(int)}.
+ */
+public class DecodePyramid {
+    public static final int DEFAULT_MAX_FACTOR = 4;
+    public static final int DEFAULT_MIN_SIZE = 180;
+
+    private static final int[] FACTORS = {4, 2, 1};
+
+    /** The level arrays of one decode worker. */
+    private static final class Levels {
+        private final byte[][] mLevels = new byte[FACTORS.length][];
+        private byte[] mRow0 = new byte[0];
+        private byte[] mRow1 = new byte[0];
+        // the source whose half level is built, so the 2x level after the 4x one is not built twice
+        private LuminanceSource mHalfSource;
+
+        byte[] level(int index, int size) {
+            if (mLevels[index] == null || mLevels[index].length < size) {
+                mLevels[index] = new byte[size];
+            }
+            return mLevels[index];
+        }
+    }
+
+    private final int mMaxFactor;
+    private final int mMinSize;
+    private final ThreadLocal<Levels> mLevels = new ThreadLocal<Levels>() {
+        @Override
+        protected Levels initialValue() {
+            return new Levels();
+        }
+    };
+    private final long[] mHitCounts = new long[FACTORS.length];
+    private long mMissCount;
+
+    public DecodePyramid() {
+        this(DEFAULT_MAX_FACTOR, DEFAULT_MIN_SIZE);
+    }
+
+    /**
+     * @param maxFactor the coarsest downscale, 1 (full resolution only), 2 or 4
+     */
+    public DecodePyramid(int maxFactor, int minSize) {
+        if (maxFactor != 1 && maxFactor != 2 && maxFactor != 4 || minSize < 1) {
+            throw new IllegalArgumentException("maxFactor must be 1, 2 or 4 and minSize at least 1");
+        }
+        mMaxFactor = maxFactor;
+        mMinSize = minSize;
+    }
+
+    public int getMaxFactor() {
+        return mMaxFactor;
+    }
+
+    public int getMinSize() {
+        return mMinSize;
+    }
+
+    /** Downscale factors to try on a {@code width x height} region, coarsest first, always ending with 1. */
+    public int[] getFactors(int width, int height) {
+        int shorter = Math.min(width, height);
+        int count = 0;
+        int[] factors = new int[FACTORS.length];
+        for (int factor : FACTORS) {
+            if (factor == 1 || factor <= mMaxFactor && shorter / factor >= mMinSize) {
+                factors[count++] = factor;
+            }
+        }
+        if (count == factors.length) {
+            return factors;
+        }
+        int[] result = new int[count];
+        System.arraycopy(factors, 0, result, 0, count);
+        return result;
+    }
+
+    /**
+     * {@code source} shrunk by {@code factor} (2 or 4), averaging each block of pixels. The level
+     * is only valid until the calling thread builds the same level again.
+     */
+    public RotatedLuminanceSource downscale(LuminanceSource source, int factor) {
+        Levels levels = mLevels.get();
+        int width = source.getWidth() / 2;
+        int height = source.getHeight() / 2;
+        byte[] half = levels.level(1, width * height);
+        if (levels.mHalfSource != source) {
+            if (levels.mRow0.length < source.getWidth()) {
+                levels.mRow0 = new byte[source.getWidth()];
+                levels.mRow1 = new byte[source.getWidth()];
+            }
+            for (int y = 0; y < height; y++) {
+                byte[] row0 = source.getRow(2 * y, levels.mRow0);
+                byte[] row1 = source.getRow(2 * y + 1, levels.mRow1);
+                average(row0, row1, half, y * width, width);
+            }
+        }
+        // the 2x level is the last one built from a source
+        levels.mHalfSource = factor == 4 ? source : null;
+        if (factor == 2) {
+            return new RotatedLuminanceSource(half, width, height, 0, 0, width, height, 0);
+        }
+        if (factor != 4) {
+            throw new IllegalArgumentException("Unsupported factor: " + factor);
+        }
+        byte[] quarter = levels.level(0, (width / 2) * (height / 2));
+        downscale(half, width, height, quarter);
+        return new RotatedLuminanceSource(quarter, width / 2, height / 2, 0, 0, width / 2, height / 2, 0);
+    }
+
+    /** Halves a {@code width x height} image into {@code dst}, dropping an odd last row or column. */
+    public static void downscale(byte[] src, int width, int height, byte[] dst) {
+        int dstWidth = width / 2;
+        for (int y = 0; y < height / 2; y++) {
+            int offset = 2 * y * width;
+            for (int x = 0; x < dstWidth; x++) {
+                int i = offset + 2 * x;
+                dst[y * dstWidth + x] = (byte) (((src[i] & 0xFF) + (src[i + 1] & 0xFF)
+                        + (src[i + width] & 0xFF) + (src[i + width + 1] & 0xFF) + 2) >> 2);
+            }
+        }
+    }
+
+    private static void average(byte[] row0, byte[] row1, byte[] dst, int dstOffset, int dstWidth) {
+        for (int x = 0; x < dstWidth; x++) {
+            int i = 2 * x;
+            dst[dstOffset + x] = (byte) (((row0[i] & 0xFF) + (row0[i + 1] & 0xFF)
+                    + (row1[i] & 0xFF) + (row1[i + 1] & 0xFF) + 2) >> 2);
+        }
+    }
+
+    /** Reports the level that decoded a frame, or 0 on a miss. */
+    public synchronized void onFrameDecoded(int factor) {
+        if (factor == 0) {
+            mMissCount++;
+        } else {
+            mHitCounts[index(factor)]++;
+        }
+    }
+
+    /** Frames decoded at the level shrunk by {@code factor}, 1 being full resolution. */
+    public synchronized long getHitCount(int factor) {
+        return mHitCounts[index(factor)];
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < mHitCounts.length; i++) {
+            mHitCounts[i] = 0;
+        }
+        mMissCount = 0;
+    }
+
+    private static int index(int factor) {
+        for (int i = 0; i < FACTORS.length; i++) {
+            if (FACTORS[i] == factor) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported factor: " + factor);
+    }
+}
@@ -0,0 +1,285 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides how hard to try on each frame. Most frames get cheap passes without TRY_HARDER: first
+ * one restricted to the formats that decoded recently, then one with the remaining formats.
+ * Every {@code tryHarderInterval}th frame, and every frame after {@code missesBeforeTryHarder}
+ * consecutive misses, gets a single exhaustive TRY_HARDER pass instead.
+ *
+ * <p>With a non-zero {@code oneDRowCount} the cheap frames start with a {@link OneDRowScanner}
+ * pass, and when only 1D formats are configured that pass is all they get.
+ *
+ * <p>The pass that produced a hit is stored in the result metadata under
+ * {@link ResultMetadataType#OTHER} as a {@link PassType}.
+ */
+public class DecodeScheduler {
+    public static final int DEFAULT_TRY_HARDER_INTERVAL = 5;
+    public static final int DEFAULT_MISSES_BEFORE_TRY_HARDER = 10;
+
+    private static final float SCORE_DECAY = 0.75f;
+    private static final float FOCUS_THRESHOLD = 0.5f;
+    private static final int MAX_FOCUSED_FORMATS = 3;
+
+    public enum PassType {
+        /** A few rows through the centre, 1D formats only. */
+        ONE_D_ROWS,
+        /** Recently successful formats only, without TRY_HARDER. */
+        FOCUSED,
+        /** The remaining formats, without TRY_HARDER. */
+        FAST,
+        /** All formats with TRY_HARDER. */
+        TRY_HARDER
+    }
+
+    /**
+     * One decode attempt over a fixed set of formats. Every thread gets its own reader.
+     */
+    public static final class Pass {
+        private final PassType mType;
+        private final List<BarcodeFormat> mFormats;
+        private final ThreadLocal<MultiFormatReader> mReader;
+        private final ThreadLocal<OneDRowScanner> mRowScanner;
+
+        Pass(List<BarcodeFormat> formats, final int rowCount) {
+            mType = PassType.ONE_D_ROWS;
+            mFormats = Collections.unmodifiableList(formats);
+            mReader = null;
+            mRowScanner = new ThreadLocal<OneDRowScanner>() {
+                @Override
+                protected OneDRowScanner initialValue() {
+                    return new OneDRowScanner(mFormats, rowCount);
+                }
+            };
+        }
+
+        Pass(PassType type, List<BarcodeFormat> formats) {
+            mType = type;
+            mFormats = Collections.unmodifiableList(formats);
+            mRowScanner = null;
+            final Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+            hints.put(DecodeHintType.POSSIBLE_FORMATS, mFormats);
+            if (type == PassType.TRY_HARDER) {
+                hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+            }
+            mReader = new ThreadLocal<MultiFormatReader>() {
+                @Override
+                protected MultiFormatReader initialValue() {
+                    MultiFormatReader reader = new MultiFormatReader();
+                    reader.setHints(hints);
+                    return reader;
+                }
+            };
+        }
+
+        public PassType getType() {
+            return mType;
+        }
+
+        public boolean isTryHarder() {
+            return mType == PassType.TRY_HARDER;
+        }
+
+        public List<BarcodeFormat> getFormats() {
+            return mFormats;
+        }
+
+        /** Returns the decoded result or {@code null}. */
+        public Result decode(BinaryBitmap bitmap) {
+            if (mRowScanner != null) {
+                Result result = mRowScanner.get().decode(bitmap);
+                if (result != null) {
+                    result.putMetadata(ResultMetadataType.OTHER, mType);
+                }
+                return result;
+            }
+
+            MultiFormatReader reader = mReader.get();
+            try {
+                Result result = reader.decodeWithState(bitmap);
+                result.putMetadata(ResultMetadataType.OTHER, mType);
+                return result;
+            } catch (ReaderException re) {
+                return null;
+            } finally {
+                reader.reset();
+            }
+        }
+    }
+
+    private final List<BarcodeFormat> mFormats;
+    private final int mTryHarderInterval;
+    private final int mMissesBeforeTryHarder;
+    private final boolean mLearnFormatOrder;
+    private final int mOneDRowCount;
+
+    private final Pass[] mTryHarderPasses;
+    private final Pass mOneDRowPass;
+    private Pass[] mFastPasses;
+    private List<BarcodeFormat> mFocusedFormats = Collections.emptyList();
+    private final Map<BarcodeFormat, Float> mScores = new EnumMap<BarcodeFormat, Float>(BarcodeFormat.class);
+    private final int[] mHitCounts = new int[PassType.values().length];
+    private long mFrameCount;
+    private int mConsecutiveMisses;
+
+    public DecodeScheduler(Collection<BarcodeFormat> formats) {
+        this(formats, DEFAULT_TRY_HARDER_INTERVAL, DEFAULT_MISSES_BEFORE_TRY_HARDER, true);
+    }
+
+    /**
+     * A {@code tryHarderInterval} of 1 makes every frame a single TRY_HARDER pass over all formats.
+     */
+    public DecodeScheduler(Collection<BarcodeFormat> formats, int tryHarderInterval,
+                           int missesBeforeTryHarder, boolean learnFormatOrder) {
+        this(formats, tryHarderInterval, missesBeforeTryHarder, learnFormatOrder, 0);
+    }
+
+    public DecodeScheduler(Collection<BarcodeFormat> formats, int tryHarderInterval,
+                           int missesBeforeTryHarder, boolean learnFormatOrder, int oneDRowCount) {
+        if (tryHarderInterval < 1 || missesBeforeTryHarder < 1 || oneDRowCount < 0) {
+            throw new IllegalArgumentException("tryHarderInterval and missesBeforeTryHarder must be at least 1, "
+                    + "oneDRowCount must not be negative");
+        }
+        mFormats = new ArrayList<BarcodeFormat>(formats);
+        mTryHarderInterval = tryHarderInterval;
+        mMissesBeforeTryHarder = missesBeforeTryHarder;
+        mLearnFormatOrder = learnFormatOrder;
+        mOneDRowCount = oneDRowCount;
+        mTryHarderPasses = new Pass[]{new Pass(PassType.TRY_HARDER, mFormats)};
+
+        List<BarcodeFormat> oneDFormats = OneDRowScanner.getOneDFormats(mFormats);
+        mOneDRowPass = oneDRowCount > 0 && !oneDFormats.isEmpty() ? new Pass(oneDFormats, oneDRowCount) : null;
+        mFastPasses = buildFastPasses();
+    }
+
+    public List<BarcodeFormat> getFormats() {
+        return Collections.unmodifiableList(mFormats);
+    }
+
+    public int getTryHarderInterval() {
+        return mTryHarderInterval;
+    }
+
+    public int getMissesBeforeTryHarder() {
+        return mMissesBeforeTryHarder;
+    }
+
+    public boolean isLearnFormatOrder() {
+        return mLearnFormatOrder;
+    }
+
+    public int getOneDRowCount() {
+        return mOneDRowCount;
+    }
+
+    /** Returns the passes to run on the next frame, in order, until one of them decodes. */
+    public synchronized Pass[] nextFrame() {
+        mFrameCount++;
+        if (mTryHarderInterval == 1 || mFrameCount % mTryHarderInterval == 0
+                || mConsecutiveMisses >= mMissesBeforeTryHarder) {
+            return mTryHarderPasses;
+        }
+        return mFastPasses;
+    }
+
+    /**
+     * Reports the outcome of a frame; {@code result} is null on a miss, {@code pass} is the one
+     * that decoded, or {@code null} for a hit outside the scheduled passes.
+     */
+    public synchronized void onFrameDecoded(Pass pass, Result result) {
+        if (result == null) {
+            mConsecutiveMisses++;
+            return;
+        }
+        mConsecutiveMisses = 0;
+        if (pass != null) {
+            mHitCounts[pass.getType().ordinal()]++;
+        }
+
+        if (mLearnFormatOrder) {
+            learn(result.getBarcodeFormat());
+        }
+    }
+
+    public synchronized int getHitCount(PassType type) {
+        return mHitCounts[type.ordinal()];
+    }
+
+    public synchronized List<BarcodeFormat> getFocusedFormats() {
+        return mFocusedFormats;
+    }
+
+    /** Returns the pass that decoded {@code result}, or {@code null} if it was not scheduled. */
+    public static PassType getPassType(Result result) {
+        Map<ResultMetadataType, Object> metadata = result.getResultMetadata();
+        Object pass = metadata != null ? metadata.get(ResultMetadataType.OTHER) : null;
+        return pass instanceof PassType ? (PassType) pass : null;
+    }
+
+    private void learn(BarcodeFormat format) {
+        for (Map.Entry<BarcodeFormat, Float> entry : mScores.entrySet()) {
+            entry.setValue(entry.getValue() * SCORE_DECAY);
+        }
+        Float score = mScores.get(format);
+        mScores.put(format, (score != null ? score : 0f) + 1f);
+
+        List<BarcodeFormat> focused = new ArrayList<BarcodeFormat>();
+        for (BarcodeFormat candidate : mFormats) {
+            Float candidateScore = mScores.get(candidate);
+            if (candidateScore != null && candidateScore >= FOCUS_THRESHOLD) {
+                focused.add(candidate);
+            }
+        }
+        Collections.sort(focused, new Comparator<BarcodeFormat>() {
+            @Override
+            public int compare(BarcodeFormat lhs, BarcodeFormat rhs) {
+                return Float.compare(mScores.get(rhs), mScores.get(lhs));
+            }
+        });
+        if (focused.size() > MAX_FOCUSED_FORMATS) {
+            focused = focused.subList(0, MAX_FOCUSED_FORMATS);
+        }
+
+        if (!focused.equals(mFocusedFormats)) {
+            mFocusedFormats = Collections.unmodifiableList(new ArrayList<BarcodeFormat>(focused));
+            mFastPasses = buildFastPasses();
+        }
+    }
+
+    private Pass[] buildFastPasses() {
+        if (mOneDRowPass != null && mOneDRowPass.getFormats().size() == mFormats.size()) {
+            // nothing needs the full image, leave it to the TRY_HARDER frames
+            return new Pass[]{mOneDRowPass};
+        }
+
+        List<BarcodeFormat> remaining = new ArrayList<BarcodeFormat>(mFormats);
+        remaining.removeAll(mFocusedFormats);
+
+        List<Pass> passes = new ArrayList<Pass>(3);
+        if (mOneDRowPass != null) {
+            passes.add(mOneDRowPass);
+        }
+        if (!mFocusedFormats.isEmpty()) {
+            passes.add(new Pass(PassType.FOCUSED, mFocusedFormats));
+        }
+        if (!remaining.isEmpty()) {
+            passes.add(new Pass(PassType.FAST, remaining));
+        }
+        return passes.toArray(new Pass[passes.size()]);
+    }
+}
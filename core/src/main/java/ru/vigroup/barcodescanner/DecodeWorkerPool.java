@@ -0,0 +1,100 @@
+package ru.vigroup.barcodescanner;
+
+/**
+ * A fixed set of decode threads fed from a single pending-frame slot. A frame submitted while
+ * every worker is busy replaces the one still waiting, so decoding never falls behind the preview.
+ */
+public class DecodeWorkerPool {
+
+    public interface FrameProcessor {
+        void processFrame(PreviewFrame frame);
+
+        /** Called for frames replaced by a newer one or discarded on shutdown. */
+        void onFrameDropped(PreviewFrame frame);
+    }
+
+    private final Object mLock = new Object();
+    private final FrameProcessor mProcessor;
+    private final Thread[] mWorkers;
+    private PreviewFrame mPendingFrame;
+    private boolean mShutdown = false;
+
+    public DecodeWorkerPool(int workerCount, FrameProcessor processor) {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("workerCount must be at least 1");
+        }
+        mProcessor = processor;
+        mWorkers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            mWorkers[i] = new Thread(new Worker(), "DecodeWorker-" + i);
+            mWorkers[i].setDaemon(true);
+            mWorkers[i].start();
+        }
+    }
+
+    public int getWorkerCount() {
+        return mWorkers.length;
+    }
+
+    /** Hands a frame to the next free worker, dropping any frame that has not been picked up yet. */
+    public void submit(PreviewFrame frame) {
+        PreviewFrame droppedFrame;
+        synchronized (mLock) {
+            if (mShutdown) {
+                droppedFrame = frame;
+            } else {
+                droppedFrame = mPendingFrame;
+                mPendingFrame = frame;
+                mLock.notify();
+            }
+        }
+        if (droppedFrame != null) {
+            mProcessor.onFrameDropped(droppedFrame);
+        }
+    }
+
+    /** Stops the workers once their current frame is done; pending frames are discarded. */
+    public void shutdown() {
+        PreviewFrame droppedFrame;
+        synchronized (mLock) {
+            mShutdown = true;
+            droppedFrame = mPendingFrame;
+            mPendingFrame = null;
+            mLock.notifyAll();
+        }
+        if (droppedFrame != null) {
+            mProcessor.onFrameDropped(droppedFrame);
+        }
+    }
+
+    public boolean isShutdown() {
+        synchronized (mLock) {
+            return mShutdown;
+        }
+    }
+
+    private PreviewFrame takeFrame() throws InterruptedException {
+        synchronized (mLock) {
+            while (mPendingFrame == null && !mShutdown) {
+                mLock.wait();
+            }
+            PreviewFrame frame = mPendingFrame;
+            mPendingFrame = null;
+            return frame;
+        }
+    }
+
+    private class Worker implements Runnable {
+        @Override
+        public void run() {
+            try {
+                PreviewFrame frame;
+                while ((frame = takeFrame()) != null) {
+                    mProcessor.processFrame(frame);
+                }
+            } catch (InterruptedException e) {
+                // shutting down
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package ru.vigroup.barcodescanner;
+
+import java.util.ArrayDeque;
+
+/**
+ * Recycles equally sized frame buffers so the preview path does not allocate per frame.
+ * Buffers released after the pool was resized to a different size are discarded. The pool holds
+ * at most as many buffers as were ever acquired at the same time, so it needs no capacity limit.
+ */
+public class FrameBufferPool {
+    private final ArrayDeque<byte[]> mBuffers = new ArrayDeque<>();
+    private int mBufferSize;
+
+    public synchronized int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /** Drops the pooled buffers if {@code bufferSize} differs from the current size. */
+    public synchronized void resize(int bufferSize) {
+        if (bufferSize != mBufferSize) {
+            mBuffers.clear();
+            mBufferSize = bufferSize;
+        }
+    }
+
+    public synchronized byte[] acquire() {
+        byte[] buffer = mBuffers.pollFirst();
+        if (buffer == null) {
+            buffer = new byte[mBufferSize];
+        }
+        return buffer;
+    }
+
+    public synchronized void release(byte[] buffer) {
+        if (buffer != null && buffer.length == mBufferSize) {
+            mBuffers.addFirst(buffer);
+        }
+    }
+}
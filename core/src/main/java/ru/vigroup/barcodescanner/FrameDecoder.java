@@ -0,0 +1,848 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Binarizer;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.MultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes preview frames: turns the region of interest upright (or not, see
+ * {@link #setRotationFreeDecoding(boolean)}), builds the luminance source and runs the passes the
+ * {@link DecodeScheduler} picks. Safe to call from several decode workers at once; formats and
+ * hints are read from a {@link ScanConfig} snapshot, so reconfiguring never blocks a worker.
+ */
+public class FrameDecoder {
+    public static final List<BarcodeFormat> ALL_FORMATS = new ArrayList<BarcodeFormat>();
+    // 2D formats whose readers only look for the symbol roughly upright (or upside down)
+    private static final List<BarcodeFormat> ORIENTATION_SENSITIVE_FORMATS = Arrays.asList(BarcodeFormat.PDF_417);
+    private static final Map<DecodeHintType, Object> TRY_HARDER_HINTS =
+            Collections.<DecodeHintType, Object>singletonMap(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    // masked codes are painted over with paper white
+    private static final byte MASK_LUMINANCE = (byte) 0xFF;
+    private static final int[] FULL_RESOLUTION = {1};
+    private static final ThreadLocal<ByteBufferLuminanceSource.Scratch> SCRATCH =
+            new ThreadLocal<ByteBufferLuminanceSource.Scratch>() {
+                @Override
+                protected ByteBufferLuminanceSource.Scratch initialValue() {
+                    return new ByteBufferLuminanceSource.Scratch();
+                }
+            };
+    // time the calling thread spent binarizing, see TimedBinarizer
+    private static final ThreadLocal<long[]> BINARIZE_NANOS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    static {
+        ALL_FORMATS.add(BarcodeFormat.UPC_A);
+        ALL_FORMATS.add(BarcodeFormat.UPC_E);
+        ALL_FORMATS.add(BarcodeFormat.EAN_13);
+        ALL_FORMATS.add(BarcodeFormat.EAN_8);
+        ALL_FORMATS.add(BarcodeFormat.RSS_14);
+        ALL_FORMATS.add(BarcodeFormat.CODE_39);
+        ALL_FORMATS.add(BarcodeFormat.CODE_93);
+        ALL_FORMATS.add(BarcodeFormat.CODE_128);
+        ALL_FORMATS.add(BarcodeFormat.ITF);
+        ALL_FORMATS.add(BarcodeFormat.CODABAR);
+        ALL_FORMATS.add(BarcodeFormat.QR_CODE);
+        ALL_FORMATS.add(BarcodeFormat.DATA_MATRIX);
+        ALL_FORMATS.add(BarcodeFormat.PDF_417);
+    }
+
+    private final AtomicReference<ScanConfig> mScanConfig;
+    // built from the decoder version of mScanConfig on first use
+    private volatile Readers mReaders;
+    private final FrameBufferPool mRotationBufferPool = new FrameBufferPool();
+    private volatile boolean mCropBeforeRotate = true;
+    private volatile boolean mRotationFreeDecoding = false;
+    private volatile DecodePyramid mDecodePyramid;
+    private volatile ScanMetrics mScanMetrics;
+    private volatile TiledDecoding mTiledDecoding;
+
+    /**
+     * The scheduler and the thread confined readers of one decoder version of the
+     * {@link ScanConfig}. Every thread builds its readers on first use.
+     */
+    private static final class Readers {
+        final long mVersion;
+        final DecodeScheduler mDecodeScheduler;
+        final ThreadLocal<MultiFormatReader> mUprightMultiFormatReader;
+        final ThreadLocal<List<MultipleBarcodeReader>> mMultipleBarcodeReaders;
+
+        Readers(ScanConfig config) {
+            mVersion = config.getDecoderVersion();
+            mDecodeScheduler = new DecodeScheduler(config.getFormats(), config.getTryHarderInterval(),
+                    config.getMissesBeforeTryHarder(), config.isLearnFormatOrder(), config.getOneDRowCount());
+            List<BarcodeFormat> uprightFormats = new ArrayList<BarcodeFormat>(config.getFormats());
+            uprightFormats.retainAll(ORIENTATION_SENSITIVE_FORMATS);
+            mUprightMultiFormatReader = createMultiFormatReader(uprightFormats);
+            mMultipleBarcodeReaders = createMultipleBarcodeReaders(config.getFormats());
+        }
+    }
+
+    public FrameDecoder() {
+        this(new AtomicReference<ScanConfig>(new ScanConfig()));
+    }
+
+    /**
+     * A decoder configured through {@code scanConfig}, which the scanner view shares with it so
+     * that formats and framing rect are published together.
+     */
+    FrameDecoder(AtomicReference<ScanConfig> scanConfig) {
+        mScanConfig = scanConfig;
+        mReaders = new Readers(scanConfig.get());
+    }
+
+    /** The current configuration, read without locking. */
+    public ScanConfig getScanConfig() {
+        return mScanConfig.get();
+    }
+
+    public void setFormats(Collection<BarcodeFormat> formats) {
+        ScanConfig config;
+        do {
+            config = mScanConfig.get();
+        } while (!mScanConfig.compareAndSet(config, config.withFormats(formats)));
+    }
+
+    public Collection<BarcodeFormat> getFormats() {
+        return mScanConfig.get().getFormats();
+    }
+
+    /**
+     * Configures the adaptive decode scheduler, see {@link DecodeScheduler}. Passing a
+     * {@code tryHarderInterval} of 1 restores exhaustive TRY_HARDER decoding of every frame.
+     */
+    public void setAdaptiveDecoding(int tryHarderInterval, int missesBeforeTryHarder, boolean learnFormatOrder) {
+        ScanConfig config;
+        do {
+            config = mScanConfig.get();
+        } while (!mScanConfig.compareAndSet(config,
+                config.withAdaptiveDecoding(tryHarderInterval, missesBeforeTryHarder, learnFormatOrder)));
+    }
+
+    /**
+     * Enables the 1D fast path, see {@link OneDRowScanner}. Pass 0 to disable it.
+     */
+    public void setOneDFastPath(int rowCount) {
+        ScanConfig config;
+        do {
+            config = mScanConfig.get();
+        } while (!mScanConfig.compareAndSet(config, config.withOneDRowCount(rowCount)));
+    }
+
+    /**
+     * The readers of the current configuration. Workers racing after a change may each build
+     * them, the last one published wins and a stale one is replaced on the next frame.
+     */
+    private Readers getReaders() {
+        ScanConfig config = mScanConfig.get();
+        Readers readers = mReaders;
+        if (readers.mVersion != config.getDecoderVersion()) {
+            readers = new Readers(config);
+            mReaders = readers;
+        }
+        return readers;
+    }
+
+    public DecodeScheduler getDecodeScheduler() {
+        return getReaders().mDecodeScheduler;
+    }
+
+    /**
+     * When enabled (the default) only the region of interest is rotated instead of the whole frame.
+     * Ignored while rotation free decoding is on.
+     */
+    public void setCropBeforeRotate(boolean cropBeforeRotate) {
+        mCropBeforeRotate = cropBeforeRotate;
+    }
+
+    /**
+     * Decodes frames in the camera sensor orientation instead of rotating them upright first.
+     */
+    public void setRotationFreeDecoding(boolean rotationFreeDecoding) {
+        mRotationFreeDecoding = rotationFreeDecoding;
+    }
+
+    public boolean isRotationFreeDecoding() {
+        return mRotationFreeDecoding;
+    }
+
+    /**
+     * Decodes downscaled levels of the region before the full resolution, see {@link DecodePyramid}.
+     * Pass {@code null} to decode at full resolution only. Multiple decoding always uses full resolution.
+     */
+    public void setDecodePyramid(DecodePyramid decodePyramid) {
+        mDecodePyramid = decodePyramid;
+    }
+
+    public DecodePyramid getDecodePyramid() {
+        return mDecodePyramid;
+    }
+
+    /**
+     * Splits big regions into tiles decoded concurrently with the whole region, see
+     * {@link TiledDecoding}. Pass {@code null} to decode on the calling thread only, the default.
+     * Ignored while rotation free decoding turns a frame by a quarter, and by multiple decoding.
+     */
+    public void setTiledDecoding(TiledDecoding tiledDecoding) {
+        mTiledDecoding = tiledDecoding;
+    }
+
+    public TiledDecoding getTiledDecoding() {
+        return mTiledDecoding;
+    }
+
+    /**
+     * Records the time of the rotate, luminance, binarize and decode stages of {@link #decode}
+     * into {@code scanMetrics}. Pass {@code null} to stop timing. With tiled decoding the tiles
+     * are binarized on other threads, their time counts as decode time.
+     */
+    public void setScanMetrics(ScanMetrics scanMetrics) {
+        mScanMetrics = scanMetrics;
+    }
+
+    public ScanMetrics getScanMetrics() {
+        return mScanMetrics;
+    }
+
+    // MultiFormatReader is not thread safe, every decode worker gets its own
+    private static ThreadLocal<MultiFormatReader> createMultiFormatReader(Collection<BarcodeFormat> formats) {
+        if (formats.isEmpty()) {
+            return new ThreadLocal<MultiFormatReader>();
+        }
+        final Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        return new ThreadLocal<MultiFormatReader>() {
+            @Override
+            protected MultiFormatReader initialValue() {
+                MultiFormatReader reader = new MultiFormatReader();
+                reader.setHints(hints);
+                return reader;
+            }
+        };
+    }
+
+    /**
+     * QR codes go to {@link QRCodeMultiReader}, which finds several symbols in one pass, all other
+     * formats to {@link GenericMultipleBarcodeReader}, which decodes one code and then searches the
+     * areas around it.
+     */
+    private static ThreadLocal<List<MultipleBarcodeReader>> createMultipleBarcodeReaders(
+            Collection<BarcodeFormat> formats) {
+        final boolean qrCode = formats.contains(BarcodeFormat.QR_CODE);
+        final List<BarcodeFormat> otherFormats = new ArrayList<BarcodeFormat>(formats);
+        otherFormats.remove(BarcodeFormat.QR_CODE);
+        final Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, otherFormats);
+        hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+        return new ThreadLocal<List<MultipleBarcodeReader>>() {
+            @Override
+            protected List<MultipleBarcodeReader> initialValue() {
+                List<MultipleBarcodeReader> readers = new ArrayList<MultipleBarcodeReader>();
+                if (qrCode) {
+                    readers.add(new QRCodeMultiReader());
+                }
+                if (!otherFormats.isEmpty()) {
+                    MultiFormatReader reader = new MultiFormatReader();
+                    reader.setHints(hints);
+                    readers.add(new GenericMultipleBarcodeReader(new StatefulReader(reader)));
+                }
+                return readers;
+            }
+        };
+    }
+
+    /**
+     * Lets {@link GenericMultipleBarcodeReader} use a configured reader. It passes hints with
+     * every sub-image, and {@link MultiFormatReader#decode(BinaryBitmap, Map)} would build a new
+     * set of readers for each of them.
+     */
+    private static final class StatefulReader implements Reader {
+        private final MultiFormatReader mReader;
+
+        StatefulReader(MultiFormatReader reader) {
+            mReader = reader;
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image) throws NotFoundException {
+            return mReader.decodeWithState(image);
+        }
+
+        @Override
+        public Result decode(BinaryBitmap image, Map<DecodeHintType, ?> hints) throws NotFoundException {
+            return mReader.decodeWithState(image);
+        }
+
+        @Override
+        public void reset() {
+            mReader.reset();
+        }
+    }
+
+    /**
+     * Decodes {@code region} of the frame, given in the coordinates of the upright frame, or the
+     * whole frame when it is null. Returns null when nothing was found or the region does not fit.
+     * Result points are in upright frame coordinates.
+     */
+    public Result decode(PreviewFrame frame, FrameRegion region) {
+        int degrees = frame.getOrientation();
+        boolean swap = degrees == 90 || degrees == 270;
+        int rotatedWidth = swap ? frame.getHeight() : frame.getWidth();
+        int rotatedHeight = swap ? frame.getWidth() : frame.getHeight();
+        if (region == null) {
+            region = new FrameRegion(0, 0, rotatedWidth, rotatedHeight);
+        }
+        if (!region.fitsWithin(rotatedWidth, rotatedHeight)) {
+            return null;
+        }
+        Result result = decodeRegion(frame, region);
+        return result != null ? translate(result, region.getLeft(), region.getTop()) : null;
+    }
+
+    // result points relative to the upright region
+    private Result decodeRegion(PreviewFrame frame, FrameRegion region) {
+        byte[] data = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int degrees = frame.getOrientation();
+        boolean swap = degrees == 90 || degrees == 270;
+        int rotatedWidth = swap ? height : width;
+        int rotatedHeight = swap ? width : height;
+
+        long startedAt = System.nanoTime();
+        if (mRotationFreeDecoding) {
+            FrameRegion sensorRegion = region.toSensor(width, height, degrees);
+            if (data != null) {
+                RotatedLuminanceSource source = new RotatedLuminanceSource(data, width, height,
+                        sensorRegion.getLeft(), sensorRegion.getTop(), sensorRegion.getWidth(),
+                        sensorRegion.getHeight(), 0);
+                return decodeInSensorOrientation(source, degrees % 180 != 0 ? source.rotate(degrees) : null,
+                        degrees, System.nanoTime() - startedAt);
+            }
+            ByteBufferLuminanceSource source = new ByteBufferLuminanceSource(frame.getBuffer(), width, height,
+                    frame.getRowStride(), 1, sensorRegion.getLeft(), sensorRegion.getTop(),
+                    sensorRegion.getWidth(), sensorRegion.getHeight(), 0, SCRATCH.get());
+            return decodeInSensorOrientation(source, degrees % 180 != 0 ? source.rotate(degrees) : null,
+                    degrees, System.nanoTime() - startedAt);
+        }
+        if (degrees == 0 || data == null) {
+            // a view, nothing is copied before the binarizer reads the matrix
+            LuminanceSource source = buildLuminanceSource(frame, region);
+            return decode(source, System.nanoTime() - startedAt);
+        }
+
+        mRotationBufferPool.resize(width * height);
+        byte[] rotationBuffer = mRotationBufferPool.acquire();
+        try {
+            LuminanceSource source;
+            long rotatedAt;
+            if (mCropBeforeRotate) {
+                FrameRotator.rotate(data, width, height, degrees, region.getLeft(), region.getTop(),
+                        region.getWidth(), region.getHeight(), rotationBuffer);
+                rotatedAt = System.nanoTime();
+                source = new PlanarYUVLuminanceSource(rotationBuffer, region.getWidth(), region.getHeight(),
+                        0, 0, region.getWidth(), region.getHeight(), false);
+            } else {
+                FrameRotator.rotate(data, width, height, degrees, rotationBuffer);
+                rotatedAt = System.nanoTime();
+                // a crop that tiled decoding can copy out in one pass, unlike PlanarYUVLuminanceSource
+                source = new RotatedLuminanceSource(rotationBuffer, rotatedWidth, rotatedHeight,
+                        region.getLeft(), region.getTop(), region.getWidth(), region.getHeight(), 0);
+            }
+            ScanMetrics scanMetrics = mScanMetrics;
+            if (scanMetrics != null) {
+                scanMetrics.record(ScanMetrics.Stage.ROTATE, rotatedAt - startedAt);
+            }
+            return decode(source, System.nanoTime() - rotatedAt);
+        } finally {
+            mRotationBufferPool.release(rotationBuffer);
+        }
+    }
+
+    /**
+     * Finds every code in {@code region} (the whole frame when null) with TRY_HARDER, skipping
+     * the areas in {@code masks}. Unlike {@link #decode}, this always works on an upright copy of
+     * the region and ignores the scheduler. Result points are in upright frame coordinates.
+     */
+    public List<Result> decodeMultiple(PreviewFrame frame, FrameRegion region, List<FrameRegion> masks) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int degrees = frame.getOrientation();
+        boolean swap = degrees == 90 || degrees == 270;
+        int rotatedWidth = swap ? height : width;
+        int rotatedHeight = swap ? width : height;
+        if (region == null) {
+            region = new FrameRegion(0, 0, rotatedWidth, rotatedHeight);
+        }
+        if (!region.fitsWithin(rotatedWidth, rotatedHeight)) {
+            return Collections.emptyList();
+        }
+
+        mRotationBufferPool.resize(width * height);
+        byte[] buffer = mRotationBufferPool.acquire();
+        try {
+            if (frame.getData() != null) {
+                FrameRotator.rotate(frame.getData(), width, height, degrees, region.getLeft(), region.getTop(),
+                        region.getWidth(), region.getHeight(), buffer);
+            } else {
+                ((ByteBufferLuminanceSource) buildLuminanceSource(frame, region)).readMatrix(buffer);
+            }
+            if (masks != null) {
+                for (FrameRegion mask : masks) {
+                    fill(buffer, region, mask);
+                }
+            }
+            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(new PlanarYUVLuminanceSource(buffer,
+                    region.getWidth(), region.getHeight(), 0, 0, region.getWidth(), region.getHeight(), false)));
+
+            List<Result> results = new ArrayList<Result>();
+            for (MultipleBarcodeReader reader : getReaders().mMultipleBarcodeReaders.get()) {
+                try {
+                    for (Result result : reader.decodeMultiple(bitmap, TRY_HARDER_HINTS)) {
+                        results.add(translate(result, region.getLeft(), region.getTop()));
+                    }
+                } catch (NotFoundException e) {
+                    // nothing of these formats in view
+                }
+            }
+            return results;
+        } finally {
+            mRotationBufferPool.release(buffer);
+        }
+    }
+
+    private static void fill(byte[] buffer, FrameRegion region, FrameRegion mask) {
+        int left = Math.max(mask.getLeft() - region.getLeft(), 0);
+        int top = Math.max(mask.getTop() - region.getTop(), 0);
+        int right = Math.min(mask.getRight() - region.getLeft(), region.getWidth());
+        int bottom = Math.min(mask.getBottom() - region.getTop(), region.getHeight());
+        for (int y = top; y < bottom; y++) {
+            int offset = y * region.getWidth();
+            Arrays.fill(buffer, offset + left, offset + Math.max(left, right), MASK_LUMINANCE);
+        }
+    }
+
+    private static Result translate(Result result, int dx, int dy) {
+        if (dx == 0 && dy == 0) {
+            return result;
+        }
+        return transform(result, 1, dx, dy);
+    }
+
+    // points of a level shrunk by factor, moved to the centre of their block at full resolution
+    private static Result scale(Result result, int factor) {
+        return transform(result, factor, (factor - 1) / 2f, (factor - 1) / 2f);
+    }
+
+    /**
+     * Turns points of a {@code width x height} source in sensor orientation into points of the
+     * upright source, see {@link FrameRegion#toSensor}.
+     */
+    private static Result toUpright(Result result, int degrees, int width, int height) {
+        ResultPoint[] points = result.getResultPoints();
+        if (degrees == 0 || points == null) {
+            return result;
+        }
+        ResultPoint[] rotated = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ResultPoint point = points[i];
+            if (point == null) {
+                continue;
+            }
+            if (degrees == 90) {
+                rotated[i] = new ResultPoint(height - point.getY(), point.getX());
+            } else if (degrees == 180) {
+                rotated[i] = new ResultPoint(width - point.getX(), height - point.getY());
+            } else {
+                rotated[i] = new ResultPoint(point.getY(), width - point.getX());
+            }
+        }
+        return withPoints(result, rotated);
+    }
+
+    private static Result transform(Result result, float scale, float dx, float dy) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return result;
+        }
+        ResultPoint[] transformed = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            if (points[i] != null) {
+                transformed[i] = new ResultPoint(points[i].getX() * scale + dx, points[i].getY() * scale + dy);
+            }
+        }
+        return withPoints(result, transformed);
+    }
+
+    private static Result withPoints(Result result, ResultPoint[] points) {
+        Result moved = new Result(result.getText(), result.getRawBytes(), result.getNumBits(), points,
+                result.getBarcodeFormat(), result.getTimestamp());
+        if (result.getResultMetadata() != null) {
+            moved.putAllMetadata(result.getResultMetadata());
+        }
+        return moved;
+    }
+
+    /**
+     * An upright view of {@code region} of the frame, given in upright frame coordinates, that is
+     * read straight from the frame's buffer. Rows and the matrix go into arrays reused by the
+     * calling thread, see {@link ByteBufferLuminanceSource.Scratch}.
+     */
+    public static LuminanceSource buildLuminanceSource(PreviewFrame frame, FrameRegion region) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int degrees = frame.getOrientation();
+        FrameRegion sensorRegion = region.toSensor(width, height, degrees);
+        return new ByteBufferLuminanceSource(frame.getBuffer(), width, height, frame.getRowStride(), 1,
+                sensorRegion.getLeft(), sensorRegion.getTop(), sensorRegion.getWidth(), sensorRegion.getHeight(),
+                degrees, SCRATCH.get());
+    }
+
+    public static PlanarYUVLuminanceSource buildLuminanceSource(byte[] data, int width, int height,
+                                                                FrameRegion region) {
+        return new PlanarYUVLuminanceSource(data, width, height, region.getLeft(), region.getTop(),
+                region.getWidth(), region.getHeight(), false);
+    }
+
+    private Result decode(LuminanceSource source, long luminanceNanos) {
+        return decode(source, newBitmap(source), null, 0, luminanceNanos);
+    }
+
+    private BinaryBitmap newBitmap(LuminanceSource source) {
+        return new BinaryBitmap(mScanMetrics != null ? new TimedBinarizer(source) : new HybridBinarizer(source));
+    }
+
+    /**
+     * Adds the time spent thresholding to {@link #BINARIZE_NANOS}, including the crops and
+     * rotations the readers binarize on their own.
+     */
+    private static final class TimedBinarizer extends Binarizer {
+        // HybridBinarizer is final
+        private final HybridBinarizer mBinarizer;
+
+        TimedBinarizer(LuminanceSource source) {
+            super(source);
+            mBinarizer = new HybridBinarizer(source);
+        }
+
+        @Override
+        public BitArray getBlackRow(int y, BitArray row) throws NotFoundException {
+            long start = System.nanoTime();
+            try {
+                return mBinarizer.getBlackRow(y, row);
+            } finally {
+                BINARIZE_NANOS.get()[0] += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public BitMatrix getBlackMatrix() throws NotFoundException {
+            long start = System.nanoTime();
+            try {
+                return mBinarizer.getBlackMatrix();
+            } finally {
+                BINARIZE_NANOS.get()[0] += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public Binarizer createBinarizer(LuminanceSource source) {
+            return new TimedBinarizer(source);
+        }
+    }
+
+    /**
+     * Runs the passes the scheduler picked for this frame, on the downscaled levels of
+     * {@code source} first when there is a pyramid and on {@code bitmap}, its full resolution,
+     * last. Fast passes use {@code fastBitmap} when given, which lets rotation free decoding hand
+     * them a view rotated by {@code degrees}. Result points of downscaled levels are scaled back,
+     * those of {@code source} are turned upright. With {@link TiledDecoding} the full resolution is
+     * decoded in tiles when there is no {@code fastBitmap}. When nothing is found and there is a
+     * {@code fastBitmap}, the formats only read upright get a last pass over it, see
+     * {@link #decodeInSensorOrientation}. {@code luminanceNanos} is the time it took to build
+     * {@code source}, for the metrics.
+     */
+    private Result decode(LuminanceSource source, BinaryBitmap bitmap, BinaryBitmap fastBitmap, int degrees,
+                          long luminanceNanos) {
+        ScanMetrics scanMetrics = mScanMetrics;
+        long[] binarizeNanos = scanMetrics != null ? BINARIZE_NANOS.get() : null;
+        long binarizedBefore = binarizeNanos != null ? binarizeNanos[0] : 0;
+        long startedAt = System.nanoTime();
+        DecodeScheduler decodeScheduler = getReaders().mDecodeScheduler;
+        DecodePyramid decodePyramid = mDecodePyramid;
+        TiledDecoding tiledDecoding = mTiledDecoding;
+        int[] factors = decodePyramid != null
+                ? decodePyramid.getFactors(source.getWidth(), source.getHeight()) : FULL_RESOLUTION;
+        DecodeScheduler.Pass[] passes = decodeScheduler.nextFrame();
+        DecodeScheduler.Pass hitPass = null;
+        Result rawResult = null;
+        int hitFactor = 0;
+        boolean hitUpright = false;
+        // pyramid levels are built inside this method's window, unlike source
+        long downscaleNanos = 0;
+        for (int factor : factors) {
+            BinaryBitmap levelBitmap = bitmap;
+            BinaryBitmap levelFastBitmap = fastBitmap;
+            if (factor != 1) {
+                long downscaleStartedAt = System.nanoTime();
+                RotatedLuminanceSource level = decodePyramid.downscale(source, factor);
+                downscaleNanos += System.nanoTime() - downscaleStartedAt;
+                levelBitmap = newBitmap(level);
+                levelFastBitmap = fastBitmap != null ? newBitmap(level.rotate(degrees)) : null;
+            }
+            List<FrameRegion> tiles = factor == 1 && levelFastBitmap == null && tiledDecoding != null
+                    ? tiledDecoding.getTiles(source.getWidth(), source.getHeight())
+                    : Collections.<FrameRegion>emptyList();
+            if (!tiles.isEmpty()) {
+                TileJob job = new TileJob(tiledDecoding, source, passes);
+                job.decode(levelBitmap, tiles);
+                rawResult = job.mResult;
+                hitPass = job.mHitPass;
+            } else {
+                for (DecodeScheduler.Pass pass : passes) {
+                    boolean upright = !pass.isTryHarder() && levelFastBitmap != null;
+                    rawResult = pass.decode(upright ? levelFastBitmap : levelBitmap);
+                    if (rawResult != null) {
+                        hitPass = pass;
+                        hitUpright = upright;
+                        break;
+                    }
+                }
+            }
+            if (rawResult != null) {
+                hitFactor = factor;
+                break;
+            }
+        }
+        if (rawResult == null && fastBitmap != null) {
+            // formats whose readers need the code roughly upright, outside the scheduled passes
+            MultiFormatReader uprightReader = getReaders().mUprightMultiFormatReader.get();
+            if (uprightReader != null) {
+                rawResult = decode(uprightReader, fastBitmap);
+                hitFactor = 1;
+                hitUpright = true;
+            }
+        }
+        decodeScheduler.onFrameDecoded(hitPass, rawResult);
+        if (decodePyramid != null) {
+            decodePyramid.onFrameDecoded(hitFactor);
+        }
+        if (scanMetrics != null) {
+            long binarized = binarizeNanos[0] - binarizedBefore;
+            scanMetrics.record(ScanMetrics.Stage.LUMINANCE, luminanceNanos + downscaleNanos);
+            scanMetrics.record(ScanMetrics.Stage.BINARIZE, binarized);
+            scanMetrics.record(ScanMetrics.Stage.DECODE, System.nanoTime() - startedAt - binarized - downscaleNanos);
+        }
+        if (rawResult == null) {
+            return null;
+        }
+        if (hitFactor > 1) {
+            rawResult = scale(rawResult, hitFactor);
+        }
+        return hitUpright ? rawResult : toUpright(rawResult, degrees, source.getWidth(), source.getHeight());
+    }
+
+    /**
+     * Decodes one region in tiles, see {@link TiledDecoding}. The tiles read a copy of the region,
+     * so tasks still finishing their pass after the hit do not read a buffer that went back to the
+     * camera; the last tile to finish returns the copy to the pool. The whole region is decoded on
+     * the calling thread from the source itself.
+     */
+    private final class TileJob {
+        private final TiledDecoding mTiledDecoding;
+        private final DecodeScheduler.Pass[] mPasses;
+        private final byte[] mMatrix;
+        private final int mWidth;
+        private final int mHeight;
+        // guarded by this
+        private int mPending;
+        private boolean mCancelled;
+        private boolean mTileHit;
+        DecodeScheduler.Pass mHitPass;
+        Result mResult;
+
+        TileJob(TiledDecoding tiledDecoding, LuminanceSource source, DecodeScheduler.Pass[] passes) {
+            mTiledDecoding = tiledDecoding;
+            mPasses = passes;
+            mWidth = source.getWidth();
+            mHeight = source.getHeight();
+            FrameBufferPool bufferPool = tiledDecoding.getBufferPool();
+            bufferPool.resize(mWidth * mHeight);
+            mMatrix = bufferPool.acquire();
+            copyMatrix(source, mMatrix);
+        }
+
+        /**
+         * Decodes {@code bitmap}, the whole region, while the pool decodes the tiles. Returns once
+         * one of them found a code or all of them are done, the result is in the fields.
+         */
+        void decode(BinaryBitmap bitmap, List<FrameRegion> tiles) {
+            synchronized (this) {
+                mPending = tiles.size();
+            }
+            for (FrameRegion tile : tiles) {
+                submit(tile);
+            }
+            DecodeScheduler.Pass hitPass = null;
+            Result result = null;
+            for (DecodeScheduler.Pass pass : mPasses) {
+                if (isCancelled()) {
+                    break;
+                }
+                result = pass.decode(bitmap);
+                if (result != null) {
+                    hitPass = pass;
+                    break;
+                }
+            }
+            boolean interrupted = false;
+            synchronized (this) {
+                if (result != null && mResult == null) {
+                    mResult = result;
+                    mHitPass = hitPass;
+                    mTileHit = false;
+                }
+                while (mResult == null && mPending > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        break;
+                    }
+                }
+                mCancelled = true;
+                mTiledDecoding.onFrameDecoded(mResult != null && mTileHit, mResult != null && !mTileHit);
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void submit(final FrameRegion tile) {
+            try {
+                mTiledDecoding.getExecutor().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        decodeTile(tile);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                onTileDone(null, null);
+            }
+        }
+
+        private void decodeTile(FrameRegion tile) {
+            DecodeScheduler.Pass hitPass = null;
+            Result result = null;
+            try {
+                BinaryBitmap bitmap = null;
+                for (DecodeScheduler.Pass pass : mPasses) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    if (bitmap == null) {
+                        bitmap = newBitmap(new PlanarYUVLuminanceSource(mMatrix, mWidth, mHeight,
+                                tile.getLeft(), tile.getTop(), tile.getWidth(), tile.getHeight(), false));
+                    }
+                    result = pass.decode(bitmap);
+                    if (result != null) {
+                        hitPass = pass;
+                        result = translate(result, tile.getLeft(), tile.getTop());
+                        break;
+                    }
+                }
+            } finally {
+                onTileDone(hitPass, result);
+            }
+        }
+
+        private synchronized boolean isCancelled() {
+            return mCancelled || mResult != null;
+        }
+
+        private void onTileDone(DecodeScheduler.Pass hitPass, Result result) {
+            boolean last;
+            synchronized (this) {
+                if (result != null && mResult == null && !mCancelled) {
+                    mResult = result;
+                    mHitPass = hitPass;
+                    mTileHit = true;
+                }
+                last = --mPending == 0;
+                notifyAll();
+            }
+            if (last) {
+                mTiledDecoding.getBufferPool().release(mMatrix);
+            }
+        }
+    }
+
+    // one pass over the pixels: the sources of this package write straight into matrix, an
+    // uncropped PlanarYUVLuminanceSource hands out its own array
+    private static void copyMatrix(LuminanceSource source, byte[] matrix) {
+        if (source instanceof RotatedLuminanceSource) {
+            ((RotatedLuminanceSource) source).readMatrix(matrix);
+        } else if (source instanceof ByteBufferLuminanceSource) {
+            ((ByteBufferLuminanceSource) source).readMatrix(matrix);
+        } else {
+            System.arraycopy(source.getMatrix(), 0, matrix, 0, source.getWidth() * source.getHeight());
+        }
+    }
+
+    private static Result decode(MultiFormatReader multiFormatReader, BinaryBitmap bitmap) {
+        try {
+            return multiFormatReader.decodeWithState(bitmap);
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            multiFormatReader.reset();
+        }
+    }
+
+    /**
+     * Decodes the region straight from the unrotated frame. QR, Data Matrix and Aztec do not care
+     * about orientation and the TRY_HARDER 1D readers try the quarter turn themselves through
+     * {@link RotatedLuminanceSource#rotateCounterClockwise()}, so only formats that cannot do
+     * that get a second pass over an upright view. Fast passes do not rotate, so on quarter turns
+     * they read the frame through the upright view, {@code uprightSource}, which is null unless
+     * the frame needs a quarter turn of {@code degrees}.
+     */
+    private Result decodeInSensorOrientation(LuminanceSource source, LuminanceSource uprightSource, int degrees,
+                                             long luminanceNanos) {
+        BinaryBitmap bitmap = newBitmap(source);
+        BinaryBitmap uprightBitmap = null;
+        if (uprightSource != null) {
+            uprightBitmap = newBitmap(uprightSource);
+        }
+        return decode(source, bitmap, uprightBitmap, degrees, luminanceNanos);
+    }
+}
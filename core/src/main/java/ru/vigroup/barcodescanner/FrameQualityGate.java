@@ -0,0 +1,170 @@
+package ru.vigroup.barcodescanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides before decoding whether a frame is worth it. The luminance plane inside the region of
+ * interest is sampled on a grid of at most {@value #MAX_GRID} x {@value #MAX_GRID} points, and
+ * two cheap scores are computed from it:
+ * <ul>
+ * <li>sharpness, the mean squared gradient to the neighbouring pixels, which drops when the
+ * frame is out of focus or smeared by motion,</li>
+ * <li>motion, the mean absolute difference to the previous frame's grid.</li>
+ * </ul>
+ * A frame is skipped when its sharpness is below {@code sharpnessRatio} of the running average
+ * or its motion is above {@code motionThreshold}. The average adapts to the scene, so a matte
+ * label is not held to the standard of a glossy one. After {@code maxConsecutiveSkips} skipped
+ * frames the next one is decoded anyway, so a scene that never looks sharp is still scanned.
+ */
+public class FrameQualityGate {
+    public static final float DEFAULT_SHARPNESS_RATIO = 0.6f;
+    public static final float DEFAULT_MOTION_THRESHOLD = 8f;
+    public static final int DEFAULT_MAX_CONSECUTIVE_SKIPS = 4;
+
+    static final int MAX_GRID = 64;
+    private static final float AVERAGE_WEIGHT = 0.1f;
+
+    private final float mSharpnessRatio;
+    private final float mMotionThreshold;
+    private final int mMaxConsecutiveSkips;
+
+    private byte[] mGrid = new byte[MAX_GRID * MAX_GRID];
+    private byte[] mPreviousGrid = new byte[MAX_GRID * MAX_GRID];
+    private int mGridSize;
+    private int mPreviousGridSize = -1;
+    private float mSharpnessAverage = -1;
+    private float mLastSharpness;
+    private float mLastMotion;
+    private int mConsecutiveSkips;
+    private long mDecodedFrames;
+    private long mBlurredFrames;
+    private long mMovingFrames;
+
+    public FrameQualityGate() {
+        this(DEFAULT_SHARPNESS_RATIO, DEFAULT_MOTION_THRESHOLD, DEFAULT_MAX_CONSECUTIVE_SKIPS);
+    }
+
+    public FrameQualityGate(float sharpnessRatio, float motionThreshold, int maxConsecutiveSkips) {
+        if (sharpnessRatio < 0 || motionThreshold <= 0 || maxConsecutiveSkips < 0) {
+            throw new IllegalArgumentException("sharpnessRatio must be >= 0, motionThreshold > 0 "
+                    + "and maxConsecutiveSkips >= 0");
+        }
+        mSharpnessRatio = sharpnessRatio;
+        mMotionThreshold = motionThreshold;
+        mMaxConsecutiveSkips = maxConsecutiveSkips;
+    }
+
+    /**
+     * Scores {@code sensorRegion} of the frame, given in sensor orientation, or the whole frame
+     * when it is null, and returns whether it should be decoded.
+     */
+    public synchronized boolean shouldDecode(PreviewFrame frame, FrameRegion sensorRegion) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        if (sensorRegion == null) {
+            sensorRegion = new FrameRegion(0, 0, width, height);
+        }
+        if (!sensorRegion.fitsWithin(width, height)) {
+            mDecodedFrames++;
+            return true;
+        }
+
+        float sharpness = sample(frame.getBuffer(), frame.getRowStride(), sensorRegion);
+        float motion = difference();
+        byte[] grid = mPreviousGrid;
+        mPreviousGrid = mGrid;
+        mGrid = grid;
+        mPreviousGridSize = mGridSize;
+        mLastSharpness = sharpness;
+        mLastMotion = motion;
+
+        boolean blurred = mSharpnessAverage >= 0 && sharpness < mSharpnessAverage * mSharpnessRatio;
+        boolean moving = motion > mMotionThreshold;
+        mSharpnessAverage = mSharpnessAverage < 0
+                ? sharpness : mSharpnessAverage + (sharpness - mSharpnessAverage) * AVERAGE_WEIGHT;
+
+        if ((blurred || moving) && mConsecutiveSkips < mMaxConsecutiveSkips) {
+            mConsecutiveSkips++;
+            if (blurred) {
+                mBlurredFrames++;
+            } else {
+                mMovingFrames++;
+            }
+            return false;
+        }
+        mConsecutiveSkips = 0;
+        mDecodedFrames++;
+        return true;
+    }
+
+    // fills mGrid and returns the mean squared gradient at the grid points
+    private float sample(ByteBuffer data, int rowStride, FrameRegion region) {
+        int stepX = Math.max(1, (region.getWidth() + MAX_GRID - 1) / MAX_GRID);
+        int stepY = Math.max(1, (region.getHeight() + MAX_GRID - 1) / MAX_GRID);
+        int right = region.getRight() - 1;
+        int bottom = region.getBottom() - 1;
+        long energy = 0;
+        int count = 0;
+        for (int y = region.getTop(); y < bottom; y += stepY) {
+            int offset = data.position() + y * rowStride;
+            for (int x = region.getLeft(); x < right; x += stepX) {
+                int pixel = data.get(offset + x) & 0xFF;
+                int dx = (data.get(offset + x + 1) & 0xFF) - pixel;
+                int dy = (data.get(offset + rowStride + x) & 0xFF) - pixel;
+                energy += dx * dx + dy * dy;
+                mGrid[count++] = (byte) pixel;
+            }
+        }
+        mGridSize = count;
+        return count > 0 ? (float) energy / count : 0;
+    }
+
+    // mean absolute difference between mGrid and mPreviousGrid
+    private float difference() {
+        if (mGridSize != mPreviousGridSize || mGridSize == 0) {
+            // first frame or the region changed, nothing to compare with
+            return 0;
+        }
+        long sum = 0;
+        for (int i = 0; i < mGridSize; i++) {
+            sum += Math.abs((mGrid[i] & 0xFF) - (mPreviousGrid[i] & 0xFF));
+        }
+        return (float) sum / mGridSize;
+    }
+
+    public synchronized float getLastSharpness() {
+        return mLastSharpness;
+    }
+
+    public synchronized float getLastMotion() {
+        return mLastMotion;
+    }
+
+    public synchronized long getDecodedFrameCount() {
+        return mDecodedFrames;
+    }
+
+    /** Frames skipped because they were not sharp enough. */
+    public synchronized long getBlurredFrameCount() {
+        return mBlurredFrames;
+    }
+
+    /** Frames skipped because they differed too much from the previous one. */
+    public synchronized long getMovingFrameCount() {
+        return mMovingFrames;
+    }
+
+    public synchronized long getSkippedFrameCount() {
+        return mBlurredFrames + mMovingFrames;
+    }
+
+    /** Forgets the scene and the counters, e.g. when the camera is restarted. */
+    public synchronized void reset() {
+        mPreviousGridSize = -1;
+        mSharpnessAverage = -1;
+        mConsecutiveSkips = 0;
+        mDecodedFrames = 0;
+        mBlurredFrames = 0;
+        mMovingFrames = 0;
+    }
+}
@@ -0,0 +1,114 @@
+package ru.vigroup.barcodescanner;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends preview frames to a file that {@link FrameReplay} plays back, so a label that fails in
+ * the field can be decoded again on a desktop and a set of recordings serves as a regression and
+ * latency test. Only the luminance plane is kept, without row padding.
+ *
+ * <p>The file starts with {@link #MAGIC} and {@link #VERSION}, then holds one record per frame:
+ * width, height, orientation, the timestamp in nanoseconds as a long, the framing region as left,
+ * top, width and height (all 0 when there is none), all big endian, followed by the plane. A record
+ * cut short by a crash is skipped on replay, so recording into an existing file appends to it.
+ */
+public class FrameRecorder implements Closeable {
+    /** "BSRF", barcode scanner recorded frames. */
+    static final int MAGIC = 0x42535246;
+    static final int VERSION = 1;
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 36;
+
+    private final FileOutputStream mStream;
+    private final FileChannel mChannel;
+    private final ByteBuffer mHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+    private ByteBuffer mPlane = ByteBuffer.allocate(0);
+    private long mFrameCount;
+    private boolean mClosed;
+
+    public FrameRecorder(File file) throws IOException {
+        if (file.length() > 0) {
+            checkHeader(file);
+        }
+        mStream = new FileOutputStream(file, true);
+        mChannel = mStream.getChannel();
+        if (mChannel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            write(header);
+        }
+    }
+
+    private static void checkHeader(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            if (input.length() < FILE_HEADER_SIZE || input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a frame recording: " + file);
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Appends {@code frame} with its framing {@code region} in upright frame coordinates, or null
+     * when there is none. Call before the frame is recycled.
+     */
+    public synchronized void record(PreviewFrame frame, FrameRegion region, long timestampNanos) throws IOException {
+        if (mClosed) {
+            throw new IOException("Recorder is closed");
+        }
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        mHeader.clear();
+        mHeader.putInt(width).putInt(height).putInt(frame.getOrientation()).putLong(timestampNanos);
+        if (region != null) {
+            mHeader.putInt(region.getLeft()).putInt(region.getTop()).putInt(region.getWidth()).putInt(region.getHeight());
+        } else {
+            mHeader.putInt(0).putInt(0).putInt(0).putInt(0);
+        }
+        mHeader.flip();
+
+        int size = width * height;
+        if (mPlane.capacity() < size) {
+            mPlane = ByteBuffer.allocate(size);
+        }
+        mPlane.clear();
+        ByteBuffer buffer = frame.getBuffer().duplicate();
+        int start = buffer.position();
+        for (int y = 0; y < height; y++) {
+            buffer.limit(start + y * frame.getRowStride() + width);
+            buffer.position(start + y * frame.getRowStride());
+            mPlane.put(buffer);
+        }
+        mPlane.flip();
+
+        write(mHeader);
+        write(mPlane);
+        mFrameCount++;
+    }
+
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (!mClosed) {
+            mClosed = true;
+            mStream.close();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
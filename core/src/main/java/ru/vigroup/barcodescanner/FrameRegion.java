@@ -0,0 +1,98 @@
+package ru.vigroup.barcodescanner;
+
+/**
+ * An integer rectangle inside a frame, used to map the view finder's framing rect to the part of
+ * a preview frame that gets decoded.
+ */
+public final class FrameRegion {
+    private final int mLeft;
+    private final int mTop;
+    private final int mWidth;
+    private final int mHeight;
+
+    public FrameRegion(int left, int top, int width, int height) {
+        mLeft = left;
+        mTop = top;
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Scales a rect given in the coordinates of a {@code viewWidth x viewHeight} view to an upright
+     * {@code frameWidth x frameHeight} frame shown in that view.
+     */
+    public static FrameRegion fromView(float left, float top, float right, float bottom,
+                                       int viewWidth, int viewHeight, int frameWidth, int frameHeight) {
+        int frameLeft = (int) (left * frameWidth / viewWidth);
+        int frameTop = (int) (top * frameHeight / viewHeight);
+        int frameRight = (int) (right * frameWidth / viewWidth);
+        int frameBottom = (int) (bottom * frameHeight / viewHeight);
+        return new FrameRegion(frameLeft, frameTop, frameRight - frameLeft, frameBottom - frameTop);
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getRight() {
+        return mLeft + mWidth;
+    }
+
+    public int getBottom() {
+        return mTop + mHeight;
+    }
+
+    public boolean fitsWithin(int frameWidth, int frameHeight) {
+        return mLeft >= 0 && mTop >= 0 && mWidth > 0 && mHeight > 0
+                && getRight() <= frameWidth && getBottom() <= frameHeight;
+    }
+
+    /**
+     * Maps this region of the upright frame back to the native orientation of a
+     * {@code sensorWidth x sensorHeight} frame that needs a clockwise rotation of
+     * {@code orientation} degrees to be upright.
+     */
+    public FrameRegion toSensor(int sensorWidth, int sensorHeight, int orientation) {
+        switch (orientation) {
+            case 90:
+                return new FrameRegion(mTop, sensorHeight - getRight(), mHeight, mWidth);
+            case 180:
+                return new FrameRegion(sensorWidth - getRight(), sensorHeight - getBottom(), mWidth, mHeight);
+            case 270:
+                return new FrameRegion(sensorWidth - getBottom(), mLeft, mHeight, mWidth);
+            default:
+                return this;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof FrameRegion)) {
+            return false;
+        }
+        FrameRegion other = (FrameRegion) o;
+        return mLeft == other.mLeft && mTop == other.mTop && mWidth == other.mWidth && mHeight == other.mHeight;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((mLeft * 31 + mTop) * 31 + mWidth) * 31 + mHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameRegion(" + mLeft + ", " + mTop + ", " + mWidth + "x" + mHeight + ")";
+    }
+}
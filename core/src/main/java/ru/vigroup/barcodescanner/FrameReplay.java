@@ -0,0 +1,223 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.Result;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Plays back a file written by {@link FrameRecorder}. The file is memory mapped and every frame is
+ * a view of the mapping, so frames reach the decoder the way camera2 frames do, without copies.
+ * {@link #replay(FrameDecoder)} runs them through {@link FrameDecoder#decode} like the scanner
+ * view's decode workers and reports the latency of every frame.
+ */
+public class FrameReplay implements Closeable {
+    /** A recorded frame with the framing region and time it was recorded with. */
+    public static final class Entry {
+        private final PreviewFrame mFrame;
+        private final FrameRegion mRegion;
+        private final long mTimestampNanos;
+
+        Entry(PreviewFrame frame, FrameRegion region, long timestampNanos) {
+            mFrame = frame;
+            mRegion = region;
+            mTimestampNanos = timestampNanos;
+        }
+
+        public PreviewFrame getFrame() {
+            return mFrame;
+        }
+
+        /** The framing region in upright frame coordinates, or null when none was recorded. */
+        public FrameRegion getRegion() {
+            return mRegion;
+        }
+
+        public long getTimestampNanos() {
+            return mTimestampNanos;
+        }
+    }
+
+    /** The outcome of a {@link #replay(FrameDecoder)}. */
+    public static final class Report {
+        private final Result[] mResults;
+        private final LatencyHistogram mFrameLatencies;
+        private final ScanMetrics mScanMetrics;
+        private final long mTimeToFirstResultMillis;
+
+        Report(Result[] results, LatencyHistogram frameLatencies, ScanMetrics scanMetrics,
+               long timeToFirstResultMillis) {
+            mResults = results;
+            mFrameLatencies = frameLatencies;
+            mScanMetrics = scanMetrics;
+            mTimeToFirstResultMillis = timeToFirstResultMillis;
+        }
+
+        public int getFrameCount() {
+            return mResults.length;
+        }
+
+        /** The result of the frame at {@code index}, or null when it did not decode. */
+        public Result getResult(int index) {
+            return mResults[index];
+        }
+
+        public int getResultCount() {
+            int count = 0;
+            for (Result result : mResults) {
+                if (result != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /** Decode time of every frame in microseconds. */
+        public LatencyHistogram getFrameLatencies() {
+            return mFrameLatencies;
+        }
+
+        /** Stage timings of the replay, see {@link ScanMetrics}. */
+        public ScanMetrics getScanMetrics() {
+            return mScanMetrics;
+        }
+
+        /**
+         * Recorded time from the first frame to the frame that decoded first, plus its decode
+         * time: when the result would have been there had decoding kept up. -1 without results.
+         */
+        public long getTimeToFirstResultMillis() {
+            return mTimeToFirstResultMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d frames, %d decoded, first result after %d ms, "
+                            + "latency p50 %.1f ms, p95 %.1f ms, max %.1f ms",
+                    getFrameCount(), getResultCount(), mTimeToFirstResultMillis,
+                    mFrameLatencies.getValueAtPercentile(50) / 1000f,
+                    mFrameLatencies.getValueAtPercentile(95) / 1000f, mFrameLatencies.getMax() / 1000f);
+        }
+    }
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int[] mOffsets;
+
+    public FrameReplay(File file) throws IOException {
+        mFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = mFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Recording larger than 2 GB: " + file);
+            }
+            mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mBuffer.limit() < FrameRecorder.FILE_HEADER_SIZE || mBuffer.getInt(0) != FrameRecorder.MAGIC
+                    || mBuffer.getInt(4) != FrameRecorder.VERSION) {
+                throw new IOException("Not a frame recording: " + file);
+            }
+            mOffsets = indexRecords(mBuffer);
+        } catch (IOException | RuntimeException e) {
+            mFile.close();
+            throw e;
+        }
+    }
+
+    // offsets of the complete records, a truncated or corrupt record ends the recording
+    private static int[] indexRecords(ByteBuffer buffer) {
+        List<Integer> offsets = new ArrayList<Integer>();
+        long offset = FrameRecorder.FILE_HEADER_SIZE;
+        while (offset + FrameRecorder.RECORD_HEADER_SIZE <= buffer.limit()) {
+            int width = buffer.getInt((int) offset);
+            int height = buffer.getInt((int) offset + 4);
+            if (width <= 0 || height <= 0) {
+                break;
+            }
+            long end = offset + FrameRecorder.RECORD_HEADER_SIZE + (long) width * height;
+            if (end > buffer.limit()) {
+                break;
+            }
+            offsets.add((int) offset);
+            offset = end;
+        }
+        int[] result = new int[offsets.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = offsets.get(i);
+        }
+        return result;
+    }
+
+    public int getFrameCount() {
+        return mOffsets.length;
+    }
+
+    /** The frame at {@code index}, valid until this replay is closed. */
+    public Entry getEntry(int index) {
+        int offset = mOffsets[index];
+        int width = mBuffer.getInt(offset);
+        int height = mBuffer.getInt(offset + 4);
+        int orientation = mBuffer.getInt(offset + 8);
+        long timestamp = mBuffer.getLong(offset + 12);
+        int regionWidth = mBuffer.getInt(offset + 28);
+        FrameRegion region = regionWidth > 0 ? new FrameRegion(mBuffer.getInt(offset + 20),
+                mBuffer.getInt(offset + 24), regionWidth, mBuffer.getInt(offset + 32)) : null;
+
+        ByteBuffer plane = mBuffer.duplicate();
+        plane.position(offset + FrameRecorder.RECORD_HEADER_SIZE);
+        plane.limit(offset + FrameRecorder.RECORD_HEADER_SIZE + width * height);
+        return new Entry(new PreviewFrame(plane.slice(), width, height, width, orientation, null),
+                region, timestamp);
+    }
+
+    /**
+     * Decodes every frame in its recorded framing region, on the calling thread. The decoder's
+     * own {@link ScanMetrics} are replaced for the replay and restored afterwards. Its
+     * {@link DecodeScheduler} carries over, pass a new decoder for results that do not depend on
+     * earlier frames.
+     */
+    public Report replay(FrameDecoder decoder) {
+        ScanMetrics scanMetrics = new ScanMetrics();
+        ScanMetrics previousScanMetrics = decoder.getScanMetrics();
+        decoder.setScanMetrics(scanMetrics);
+        try {
+            LatencyHistogram frameLatencies = new LatencyHistogram();
+            Result[] results = new Result[mOffsets.length];
+            long firstTimestamp = 0;
+            long timeToFirstResult = -1;
+            for (int i = 0; i < mOffsets.length; i++) {
+                Entry entry = getEntry(i);
+                if (i == 0) {
+                    firstTimestamp = entry.getTimestampNanos();
+                    scanMetrics.onCameraStarted(firstTimestamp);
+                }
+                scanMetrics.onFrameReceived(entry.getTimestampNanos());
+                long startedAt = System.nanoTime();
+                results[i] = decoder.decode(entry.getFrame(), entry.getRegion());
+                long latency = System.nanoTime() - startedAt;
+                frameLatencies.record(latency / 1000);
+                // on the recorded timeline, as if decoding had started when the frame arrived
+                scanMetrics.onFrameDecoded(results[i] != null, entry.getTimestampNanos() + latency);
+                if (results[i] != null && timeToFirstResult < 0) {
+                    timeToFirstResult = (entry.getTimestampNanos() - firstTimestamp + latency) / 1000000;
+                }
+            }
+            return new Report(results, frameLatencies, scanMetrics, timeToFirstResult);
+        } finally {
+            decoder.setScanMetrics(previousScanMetrics);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the mapping itself goes away with the buffer
+        mFile.close();
+    }
+}
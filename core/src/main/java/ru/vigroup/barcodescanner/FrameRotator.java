@@ -0,0 +1,121 @@
+package ru.vigroup.barcodescanner;
+
+/**
+ * Rotates the luminance (Y) plane of a preview frame clockwise by a multiple of 90 degrees.
+ * The chroma half of an NV21 buffer is never touched. Quarter turns walk the frame in square
+ * tiles so that both the strided reads and the sequential writes stay within a few cache lines.
+ */
+public final class FrameRotator {
+    private static final int TILE_SIZE = 32;
+
+    private FrameRotator() {
+    }
+
+    /**
+     * Rotates the whole {@code width x height} plane into {@code dst}. The result is
+     * {@code height x width} for 90 and 270 degrees.
+     */
+    public static void rotate(byte[] src, int width, int height, int degrees, byte[] dst) {
+        boolean swap = degrees == 90 || degrees == 270;
+        rotate(src, width, height, degrees, 0, 0, swap ? height : width, swap ? width : height, dst);
+    }
+
+    /**
+     * Rotates only the region that ends up at {@code (left, top, cropWidth, cropHeight)} of the
+     * rotated frame, so pixels outside of it are never read. The result is a tightly packed
+     * {@code cropWidth x cropHeight} plane.
+     */
+    public static void rotate(byte[] src, int width, int height, int degrees,
+                              int left, int top, int cropWidth, int cropHeight, byte[] dst) {
+        int rotatedWidth;
+        int rotatedHeight;
+        switch (degrees) {
+            case 0:
+            case 180:
+                rotatedWidth = width;
+                rotatedHeight = height;
+                break;
+            case 90:
+            case 270:
+                rotatedWidth = height;
+                rotatedHeight = width;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rotation: " + degrees);
+        }
+        if (left < 0 || top < 0 || cropWidth < 0 || cropHeight < 0
+                || left + cropWidth > rotatedWidth || top + cropHeight > rotatedHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        if (dst.length < cropWidth * cropHeight) {
+            throw new IllegalArgumentException("Destination buffer is too small.");
+        }
+
+        switch (degrees) {
+            case 0:
+                for (int y = 0; y < cropHeight; y++) {
+                    System.arraycopy(src, (top + y) * width + left, dst, y * cropWidth, cropWidth);
+                }
+                break;
+            case 90:
+                rotate90(src, width, height, left, top, cropWidth, cropHeight, dst);
+                break;
+            case 180:
+                rotate180(src, width, height, left, top, cropWidth, cropHeight, dst);
+                break;
+            case 270:
+                rotate270(src, width, left, top, cropWidth, cropHeight, dst);
+                break;
+        }
+    }
+
+    // dst(x, y) = src(y, height - 1 - x)
+    private static void rotate90(byte[] src, int width, int height,
+                                 int left, int top, int cropWidth, int cropHeight, byte[] dst) {
+        for (int tileY = 0; tileY < cropHeight; tileY += TILE_SIZE) {
+            int tileYEnd = Math.min(tileY + TILE_SIZE, cropHeight);
+            for (int tileX = 0; tileX < cropWidth; tileX += TILE_SIZE) {
+                int tileXEnd = Math.min(tileX + TILE_SIZE, cropWidth);
+                for (int y = tileY; y < tileYEnd; y++) {
+                    int out = y * cropWidth + tileX;
+                    int in = (height - 1 - left - tileX) * width + top + y;
+                    for (int x = tileX; x < tileXEnd; x++) {
+                        dst[out++] = src[in];
+                        in -= width;
+                    }
+                }
+            }
+        }
+    }
+
+    // dst(x, y) = src(width - 1 - x, height - 1 - y)
+    private static void rotate180(byte[] src, int width, int height,
+                                  int left, int top, int cropWidth, int cropHeight, byte[] dst) {
+        int out = 0;
+        for (int y = 0; y < cropHeight; y++) {
+            int in = (height - 1 - top - y) * width + width - 1 - left;
+            for (int x = 0; x < cropWidth; x++) {
+                dst[out++] = src[in--];
+            }
+        }
+    }
+
+    // dst(x, y) = src(width - 1 - y, x)
+    private static void rotate270(byte[] src, int width,
+                                  int left, int top, int cropWidth, int cropHeight, byte[] dst) {
+        for (int tileY = 0; tileY < cropHeight; tileY += TILE_SIZE) {
+            int tileYEnd = Math.min(tileY + TILE_SIZE, cropHeight);
+            for (int tileX = 0; tileX < cropWidth; tileX += TILE_SIZE) {
+                int tileXEnd = Math.min(tileX + TILE_SIZE, cropWidth);
+                for (int y = tileY; y < tileYEnd; y++) {
+                    int out = y * cropWidth + tileX;
+                    int in = (left + tileX) * width + width - 1 - top - y;
+                    for (int x = tileX; x < tileXEnd; x++) {
+                        dst[out++] = src[in];
+                        in += width;
+                    }
+                }
+            }
+        }
+    }
+}
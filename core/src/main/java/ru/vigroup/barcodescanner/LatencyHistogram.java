@@ -0,0 +1,103 @@
+package ru.vigroup.barcodescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in microseconds into log-linear buckets, like HdrHistogram at a coarser
+ * precision: below {@value #SUB_BUCKETS} every value has its own bucket, above each power of two
+ * is split into {@value #SUB_BUCKETS} buckets, so a percentile is off by at most
+ * 1/{@value #SUB_BUCKETS} of the value. Values above about 2 hours land in the last bucket.
+ *
+ * <p>Recording neither allocates nor locks, so decode workers record concurrently. Reads while
+ * others record see each counter consistent, not the histogram as a whole.
+ */
+public class LatencyHistogram {
+    static final int SUB_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int MAX_EXPONENT = 32;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        mCounts.incrementAndGet(bucketOf(micros));
+        mCount.incrementAndGet();
+        mSum.addAndGet(micros);
+        long max = mMax.get();
+        while (micros > max && !mMax.compareAndSet(max, micros)) {
+            max = mMax.get();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /** Mean in microseconds, 0 when nothing was recorded. */
+    public double getMean() {
+        long count = mCount.get();
+        return count > 0 ? (double) mSum.get() / count : 0;
+    }
+
+    /**
+     * The value below or at which {@code percentile} (0 to 100) percent of the recorded values
+     * fall, as the upper end of its bucket, or 0 when nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mCounts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Math.min(63 - Long.numberOfLeadingZeros(value), MAX_EXPONENT);
+        int subBucket = exponent == MAX_EXPONENT && value >= 2L << MAX_EXPONENT
+                ? SUB_BUCKETS - 1 : (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
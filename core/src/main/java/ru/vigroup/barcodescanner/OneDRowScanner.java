@@ -0,0 +1,120 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultMetadataType;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.oned.MultiFormatOneDReader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Looks for 1D barcodes on a handful of rows through the centre of the image, each binarized on
+ * its own with a global histogram threshold, instead of thresholding the whole image block by
+ * block. Not thread safe; a worker thread should own its instance.
+ */
+public class OneDRowScanner {
+    public static final int DEFAULT_ROW_COUNT = 5;
+
+    public static final List<BarcodeFormat> ONE_D_FORMATS = Collections.unmodifiableList(Arrays.asList(
+            BarcodeFormat.UPC_A, BarcodeFormat.UPC_E, BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+            BarcodeFormat.CODE_39, BarcodeFormat.CODE_93, BarcodeFormat.CODE_128, BarcodeFormat.ITF,
+            BarcodeFormat.CODABAR, BarcodeFormat.RSS_14, BarcodeFormat.RSS_EXPANDED,
+            BarcodeFormat.UPC_EAN_EXTENSION));
+
+    private final MultiFormatOneDReader mReader;
+    private final Map<DecodeHintType, Object> mHints;
+    private final int mRowCount;
+    private BitArray mRow;
+
+    public OneDRowScanner(Collection<BarcodeFormat> formats, int rowCount) {
+        if (rowCount < 1) {
+            throw new IllegalArgumentException("rowCount must be at least 1");
+        }
+        mHints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        mHints.put(DecodeHintType.POSSIBLE_FORMATS, getOneDFormats(formats));
+        mReader = new MultiFormatOneDReader(mHints);
+        mRowCount = rowCount;
+    }
+
+    /** Returns the 1D formats among {@code formats}, in their original order. */
+    public static List<BarcodeFormat> getOneDFormats(Collection<BarcodeFormat> formats) {
+        List<BarcodeFormat> oneDFormats = new ArrayList<BarcodeFormat>(formats);
+        oneDFormats.retainAll(ONE_D_FORMATS);
+        return oneDFormats;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    /**
+     * Scans rows alternating above and below the centre, spread over the middle half of the
+     * image. Each row is read left to right and then reversed. Returns {@code null} on a miss.
+     */
+    public Result decode(BinaryBitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int middle = height / 2;
+        int rowStep = Math.max(1, height / (2 * mRowCount));
+
+        try {
+            for (int i = 0; i < mRowCount; i++) {
+                int offset = rowStep * ((i + 1) / 2);
+                int rowNumber = (i & 1) == 0 ? middle + offset : middle - offset;
+                if (rowNumber < 0 || rowNumber >= height) {
+                    break;
+                }
+
+                try {
+                    mRow = bitmap.getBlackRow(rowNumber, mRow);
+                } catch (NotFoundException e) {
+                    continue;
+                }
+
+                for (int attempt = 0; attempt < 2; attempt++) {
+                    if (attempt == 1) {
+                        mRow.reverse();
+                    }
+                    try {
+                        Result result = mReader.decodeRow(rowNumber, mRow, mHints);
+                        if (attempt == 1) {
+                            result.putMetadata(ResultMetadataType.ORIENTATION, 180);
+                            mirrorResultPoints(result, width);
+                        }
+                        return result;
+                    } catch (NotFoundException e) {
+                        // try the next orientation or row
+                    }
+                }
+            }
+            return null;
+        } finally {
+            mReader.reset();
+        }
+    }
+
+    // points of a reversed row are mirrored, see OneDReader#doDecode
+    private static void mirrorResultPoints(Result result, int width) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return;
+        }
+        for (int i = 0; i < points.length; i++) {
+            ResultPoint point = points[i];
+            if (point != null) {
+                points[i] = new ResultPoint(width - point.getX() - 1, point.getY());
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ru.vigroup.barcodescanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A single preview frame in sensor orientation together with the rotation it needs to be upright.
+ * Only the luminance plane is read: an NV21 array, or a (possibly direct) buffer with padded rows
+ * such as the Y plane of a camera2 image.
+ */
+public class PreviewFrame {
+    /** Takes back frames whose buffer belongs to the camera, e.g. to close the image behind it. */
+    public interface Recycler {
+        void recycle(PreviewFrame frame);
+    }
+
+    private final byte[] mData;
+    private final ByteBuffer mBuffer;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mRowStride;
+    private final int mOrientation;
+    private final Recycler mRecycler;
+
+    public PreviewFrame(byte[] data, int width, int height, int orientation) {
+        mData = data;
+        mBuffer = ByteBuffer.wrap(data);
+        mWidth = width;
+        mHeight = height;
+        mRowStride = width;
+        mOrientation = orientation;
+        mRecycler = null;
+    }
+
+    /**
+     * A frame whose luminance plane starts at the position of {@code buffer}, with rows
+     * {@code rowStride} bytes apart. It is handed to {@code recycler} once decoded, or to the
+     * camera's own pool when that is null.
+     */
+    public PreviewFrame(ByteBuffer buffer, int width, int height, int rowStride, int orientation,
+                        Recycler recycler) {
+        if (rowStride < width) {
+            throw new IllegalArgumentException("rowStride must be at least width");
+        }
+        // unpadded heap buffers keep the array fast paths
+        mData = buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && rowStride == width
+                ? buffer.array() : null;
+        mBuffer = buffer;
+        mWidth = width;
+        mHeight = height;
+        mRowStride = rowStride;
+        mOrientation = orientation;
+        mRecycler = recycler;
+    }
+
+    /** The luminance plane as an array without row padding, or null when there is none. */
+    public byte[] getData() {
+        return mData;
+    }
+
+    public ByteBuffer getBuffer() {
+        return mBuffer;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /** Distance in bytes between the starts of two rows of the buffer. */
+    public int getRowStride() {
+        return mRowStride;
+    }
+
+    /** Clockwise rotation in degrees (0, 90, 180 or 270) that brings the frame upright. */
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    public Recycler getRecycler() {
+        return mRecycler;
+    }
+}
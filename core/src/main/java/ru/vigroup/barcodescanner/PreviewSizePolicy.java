@@ -0,0 +1,141 @@
+package ru.vigroup.barcodescanner;
+
+import java.util.List;
+
+/**
+ * Chooses the preview size and frame rate for decoding rather than for the screen. Only the
+ * framing rect is decoded, so a size is good enough once a code filling the framing rect has
+ * modules at least {@code minModuleWidth} pixels wide, or once the framing rect spans
+ * {@code decodeWidth} pixels when that is larger. The smallest such size wins: every extra pixel
+ * costs binarization and decode time, and the sensor often delivers small sizes at a higher rate.
+ *
+ * <p>The preview is scaled to cover the view, see {@code CameraPreview}, so the pixels the framing
+ * rect spans depend on how the aspect ratio of the size fits the view.
+ */
+public class PreviewSizePolicy {
+    /** Narrower modules blur into their neighbours and binarize unreliably. */
+    public static final float DEFAULT_MIN_MODULE_WIDTH = 2f;
+    /** Modules across an EAN-13 with its quiet zones, or a long Code 128. */
+    public static final int DEFAULT_MODULES = 160;
+    public static final int DEFAULT_MIN_FPS = 10;
+    public static final int DEFAULT_MAX_FPS = 30;
+
+    private final int mDecodeWidth;
+    private final float mMinModuleWidth;
+    private final int mModules;
+    private final int mMinFps;
+    private final int mMaxFps;
+
+    public PreviewSizePolicy() {
+        this(0, DEFAULT_MIN_MODULE_WIDTH, DEFAULT_MODULES, DEFAULT_MIN_FPS, DEFAULT_MAX_FPS);
+    }
+
+    /**
+     * @param decodeWidth pixels the framing rect should span at least, 0 to go by the module width only
+     * @param minModuleWidth pixels per module of a code filling the framing rect
+     * @param modules modules across the widest code to be scanned, quiet zones included
+     */
+    public PreviewSizePolicy(int decodeWidth, float minModuleWidth, int modules, int minFps, int maxFps) {
+        if (decodeWidth < 0 || minModuleWidth <= 0 || modules <= 0 || minFps < 0 || maxFps < minFps) {
+            throw new IllegalArgumentException("decodeWidth must be >= 0, minModuleWidth and modules > 0 "
+                    + "and minFps within [0, maxFps]");
+        }
+        mDecodeWidth = decodeWidth;
+        mMinModuleWidth = minModuleWidth;
+        mModules = modules;
+        mMinFps = minFps;
+        mMaxFps = maxFps;
+    }
+
+    public int getMinFps() {
+        return mMinFps;
+    }
+
+    public int getMaxFps() {
+        return mMaxFps;
+    }
+
+    /** Pixels the framing rect has to span in a frame. */
+    public int getRequiredFramingWidth() {
+        return Math.max(mDecodeWidth, (int) Math.ceil(mMinModuleWidth * mModules));
+    }
+
+    /**
+     * Pixels the framing rect spans in a {@code width x height} frame that is rotated clockwise by
+     * {@code displayOrientation} and scaled to cover a {@code viewWidth x viewHeight} view, in
+     * which the framing rect is {@code framingWidth} pixels wide.
+     */
+    public static float getFramingWidth(int width, int height, int displayOrientation,
+                                        int viewWidth, int viewHeight, float framingWidth) {
+        boolean swap = displayOrientation % 180 != 0;
+        int uprightWidth = swap ? height : width;
+        int uprightHeight = swap ? width : height;
+        float scale = Math.max((float) viewWidth / uprightWidth, (float) viewHeight / uprightHeight);
+        return framingWidth / scale;
+    }
+
+    /**
+     * Picks the smallest of {@code sizes}, given as {@code {width, height}} in sensor orientation,
+     * in which the framing rect spans {@link #getRequiredFramingWidth()} pixels, or the one in
+     * which it spans the most when none does. Returns null when {@code sizes} is empty.
+     */
+    public int[] chooseSize(List<int[]> sizes, int displayOrientation, int viewWidth, int viewHeight,
+                            float framingWidth) {
+        int required = getRequiredFramingWidth();
+        int[] smallest = null;
+        int[] widest = null;
+        float widestFraming = -1;
+        for (int[] size : sizes) {
+            float framing = getFramingWidth(size[0], size[1], displayOrientation, viewWidth, viewHeight,
+                    framingWidth);
+            if (framing >= required && (smallest == null || pixels(size) < pixels(smallest))) {
+                smallest = size;
+            }
+            if (framing > widestFraming || framing == widestFraming && pixels(size) < pixels(widest)) {
+                widest = size;
+                widestFraming = framing;
+            }
+        }
+        return smallest != null ? smallest : widest;
+    }
+
+    /**
+     * Picks from {@code ranges}, given as {@code {min, max}} in frames per {@code unitsPerFps}
+     * seconds, the range with the highest maximum up to {@code maxFps}. Among those the lowest
+     * minimum that is still at least {@code minFps} is preferred, which leaves auto exposure room
+     * in low light without long, blurred exposures. Returns null when {@code ranges} is empty.
+     */
+    public int[] chooseFpsRange(List<int[]> ranges, int unitsPerFps) {
+        int maxFps = mMaxFps * unitsPerFps;
+        int minFps = mMinFps * unitsPerFps;
+        int[] best = null;
+        for (int[] range : ranges) {
+            if (best == null || isBetterFpsRange(range, best, minFps, maxFps)) {
+                best = range;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isBetterFpsRange(int[] range, int[] best, int minFps, int maxFps) {
+        boolean fits = range[1] <= maxFps;
+        boolean bestFits = best[1] <= maxFps;
+        if (fits != bestFits) {
+            return fits;
+        }
+        if (range[1] != best[1]) {
+            // the highest maximum that fits, or the lowest one when none does
+            return fits == range[1] > best[1];
+        }
+        boolean steady = range[0] >= minFps;
+        boolean bestSteady = best[0] >= minFps;
+        if (steady != bestSteady) {
+            return steady;
+        }
+        return range[0] != best[0] && steady == range[0] < best[0];
+    }
+
+    private static long pixels(int[] size) {
+        return (long) size[0] * size[1];
+    }
+}
@@ -0,0 +1,86 @@
+package ru.vigroup.barcodescanner;
+
+/**
+ * Decides when an explicit focus is worth it, instead of refocusing on a timer. A focus is
+ * requested when the sharpness of the framing rect stays below {@code sharpnessDrop} of the best
+ * it has been since the last focus, or when nothing has been decoded for {@code stallMillis}.
+ * Requests are at least {@code minIntervalMillis} apart so the lens does not hunt.
+ *
+ * <p>The best sharpness decays slowly, so it follows the scene when the camera is pointed at
+ * something else without a drop in focus.
+ */
+public class RefocusPolicy {
+    public static final float DEFAULT_SHARPNESS_DROP = 0.5f;
+    public static final long DEFAULT_STALL_MILLIS = 3000;
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 1000;
+
+    static final int DROPPED_FRAMES_BEFORE_REFOCUS = 3;
+    private static final float PEAK_DECAY = 0.98f;
+
+    private final float mSharpnessDrop;
+    private final long mStallMillis;
+    private final long mMinIntervalMillis;
+
+    private float mPeakSharpness = -1;
+    private int mDroppedFrames;
+    private long mLastFocusAt;
+    private long mLastResultAt;
+    private long mLastRequestAt = Long.MIN_VALUE / 2;
+
+    public RefocusPolicy() {
+        this(DEFAULT_SHARPNESS_DROP, DEFAULT_STALL_MILLIS, DEFAULT_MIN_INTERVAL_MILLIS);
+    }
+
+    public RefocusPolicy(float sharpnessDrop, long stallMillis, long minIntervalMillis) {
+        if (sharpnessDrop < 0 || sharpnessDrop > 1 || stallMillis <= 0 || minIntervalMillis < 0) {
+            throw new IllegalArgumentException("sharpnessDrop must be within [0, 1], stallMillis > 0 "
+                    + "and minIntervalMillis >= 0");
+        }
+        mSharpnessDrop = sharpnessDrop;
+        mStallMillis = stallMillis;
+        mMinIntervalMillis = minIntervalMillis;
+    }
+
+    /** The lens settled, either after an explicit focus or a continuous focus move. */
+    public synchronized void onFocusFinished(long now) {
+        mLastFocusAt = now;
+        mPeakSharpness = -1;
+        mDroppedFrames = 0;
+    }
+
+    public synchronized void onResult(long now) {
+        mLastResultAt = now;
+    }
+
+    /**
+     * Takes the sharpness of a frame, or {@link Float#NaN} when it is not known, and returns
+     * whether a focus should be requested now.
+     */
+    public synchronized boolean onFrame(float sharpness, long now) {
+        boolean dropped = false;
+        if (!Float.isNaN(sharpness)) {
+            if (sharpness >= mPeakSharpness * PEAK_DECAY) {
+                mPeakSharpness = sharpness;
+            } else {
+                mPeakSharpness *= PEAK_DECAY;
+            }
+            mDroppedFrames = sharpness < mPeakSharpness * mSharpnessDrop ? mDroppedFrames + 1 : 0;
+            dropped = mDroppedFrames >= DROPPED_FRAMES_BEFORE_REFOCUS;
+        }
+        boolean stalled = now - Math.max(mLastResultAt, mLastFocusAt) > mStallMillis;
+        if ((dropped || stalled) && now - mLastRequestAt >= mMinIntervalMillis) {
+            mLastRequestAt = now;
+            mLastFocusAt = now;
+            mDroppedFrames = 0;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void reset(long now) {
+        mPeakSharpness = -1;
+        mDroppedFrames = 0;
+        mLastFocusAt = now;
+        mLastResultAt = now;
+    }
+}
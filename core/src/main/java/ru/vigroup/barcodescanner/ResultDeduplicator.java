@@ -0,0 +1,53 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently reported codes by text and format so that a code held in front of the
+ * camera is reported once. Every sighting restarts the code's time to live; once it has been out
+ * of view for longer than that it is reported again. The least recently seen codes are evicted
+ * when more than {@code capacity} distinct codes are tracked.
+ */
+public class ResultDeduplicator {
+    public static final long DEFAULT_TTL_MILLIS = 3000;
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final long mTtlMillis;
+    private final Map<String, Long> mLastSeen;
+
+    public ResultDeduplicator() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_CAPACITY);
+    }
+
+    public ResultDeduplicator(long ttlMillis, final int capacity) {
+        if (ttlMillis < 0 || capacity < 1) {
+            throw new IllegalArgumentException("ttlMillis must be >= 0 and capacity >= 1");
+        }
+        mTtlMillis = ttlMillis;
+        mLastSeen = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public boolean shouldReport(Result result, long nowMillis) {
+        return shouldReport(result.getText(), result.getBarcodeFormat(), nowMillis);
+    }
+
+    /** Records a sighting and returns whether it is new enough to be reported. */
+    public synchronized boolean shouldReport(String text, BarcodeFormat format, long nowMillis) {
+        // format names never contain ':', so the key is unambiguous
+        Long lastSeen = mLastSeen.put(format + ":" + text, nowMillis);
+        return lastSeen == null || nowMillis - lastSeen > mTtlMillis;
+    }
+
+    public synchronized void clear() {
+        mLastSeen.clear();
+    }
+}
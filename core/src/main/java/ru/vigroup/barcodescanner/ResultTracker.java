@@ -0,0 +1,225 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Follows codes across frames by where they are, so that several labels with the same contents
+ * are told apart and each one is reported once while it stays in view. A result belongs to a
+ * track when format and text match and its centre is within {@code maxMovement} code sizes of
+ * where the track was last seen. Tracks not seen for {@code ttlMillis} are forgotten.
+ *
+ * <p>Tracks seen within the last {@code maskMillis} are returned by {@link #getMaskRegions(long)}
+ * so the decoder can skip their area. Once a mask expires the code is decoded again, which keeps
+ * its track alive for as long as it stays in view.
+ *
+ * <p>Result points are expected in upright frame coordinates, as returned by
+ * {@link FrameDecoder#decodeMultiple}.
+ */
+public class ResultTracker {
+    public static final long DEFAULT_TTL_MILLIS = 1500;
+    public static final long DEFAULT_MASK_MILLIS = 500;
+    public static final float DEFAULT_MAX_MOVEMENT = 0.75f;
+
+    // 1D results only have points along the scan line and QR results skip the fourth corner
+    private static final float MIN_ASPECT = 0.5f;
+    private static final float MASK_PADDING = 0.25f;
+
+    private final long mTtlMillis;
+    private final long mMaskMillis;
+    private final float mMaxMovement;
+    private final List<Track> mTracks = new ArrayList<Track>();
+
+    private static final class Track {
+        final String mKey;
+        float mCenterX;
+        float mCenterY;
+        float mWidth;
+        float mHeight;
+        long mLastSeen;
+
+        Track(String key, float[] bounds, long now) {
+            mKey = key;
+            update(bounds, now);
+        }
+
+        void update(float[] bounds, long now) {
+            mLastSeen = now;
+            if (bounds == null) {
+                mWidth = 0;
+                mHeight = 0;
+                return;
+            }
+            mCenterX = (bounds[0] + bounds[2]) / 2;
+            mCenterY = (bounds[1] + bounds[3]) / 2;
+            mWidth = bounds[2] - bounds[0];
+            mHeight = bounds[3] - bounds[1];
+        }
+    }
+
+    public ResultTracker() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MASK_MILLIS, DEFAULT_MAX_MOVEMENT);
+    }
+
+    public ResultTracker(long ttlMillis, long maskMillis, float maxMovement) {
+        if (ttlMillis < 0 || maskMillis < 0 || maskMillis > ttlMillis || maxMovement <= 0) {
+            throw new IllegalArgumentException("need 0 <= maskMillis <= ttlMillis and maxMovement > 0");
+        }
+        mTtlMillis = ttlMillis;
+        mMaskMillis = maskMillis;
+        mMaxMovement = maxMovement;
+    }
+
+    /**
+     * Associates the results of one frame with the known tracks and returns the ones that start a
+     * new track. Results without points are tracked by format and text alone.
+     */
+    public synchronized List<Result> update(List<Result> results, long now) {
+        return commit(match(results, now), now);
+    }
+
+    /**
+     * Like {@link #update} but without starting tracks: moves the known tracks along and returns
+     * the results that belong to none, for {@link #commit} once they have been reported. Lets a
+     * decode worker match results while only the thread delivering them marks them as reported.
+     */
+    public synchronized List<Result> match(List<Result> results, long now) {
+        expire(now);
+        List<Result> unmatched = new ArrayList<Result>();
+        for (Result result : results) {
+            float[] bounds = getBounds(result);
+            Track track = findTrack(keyOf(result), bounds);
+            if (track != null) {
+                track.update(bounds, now);
+            } else {
+                unmatched.add(result);
+            }
+        }
+        return unmatched;
+    }
+
+    /**
+     * Starts tracks for results returned by {@link #match}, seen at {@code now}. Returns the ones
+     * that really are new, a track may have been started for a code since it was matched.
+     */
+    public synchronized List<Result> commit(List<Result> results, long now) {
+        expire(now);
+        List<Result> newResults = new ArrayList<Result>();
+        for (Result result : results) {
+            String key = keyOf(result);
+            float[] bounds = getBounds(result);
+            Track track = findTrack(key, bounds);
+            if (track != null) {
+                track.update(bounds, now);
+            } else {
+                mTracks.add(new Track(key, bounds, now));
+                newResults.add(result);
+            }
+        }
+        return newResults;
+    }
+
+    /** Areas of codes seen within the mask time, padded a little, in upright frame coordinates. */
+    public synchronized List<FrameRegion> getMaskRegions(long now) {
+        List<FrameRegion> regions = new ArrayList<FrameRegion>();
+        for (Track track : mTracks) {
+            if (now - track.mLastSeen > mMaskMillis || track.mWidth <= 0) {
+                continue;
+            }
+            float padding = Math.max(track.mWidth, track.mHeight) * MASK_PADDING;
+            float halfWidth = track.mWidth / 2 + padding;
+            float halfHeight = track.mHeight / 2 + padding;
+            regions.add(new FrameRegion((int) (track.mCenterX - halfWidth), (int) (track.mCenterY - halfHeight),
+                    (int) (2 * halfWidth), (int) (2 * halfHeight)));
+        }
+        return regions;
+    }
+
+    public synchronized int getTrackCount(long now) {
+        expire(now);
+        return mTracks.size();
+    }
+
+    public synchronized void clear() {
+        mTracks.clear();
+    }
+
+    private void expire(long now) {
+        Iterator<Track> iterator = mTracks.iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().mLastSeen > mTtlMillis) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private Track findTrack(String key, float[] bounds) {
+        Track closest = null;
+        float closestDistance = Float.MAX_VALUE;
+        for (Track track : mTracks) {
+            if (!track.mKey.equals(key)) {
+                continue;
+            }
+            if (bounds == null || track.mWidth <= 0) {
+                return track;
+            }
+            float dx = (bounds[0] + bounds[2]) / 2 - track.mCenterX;
+            float dy = (bounds[1] + bounds[3]) / 2 - track.mCenterY;
+            float distance = (float) Math.sqrt(dx * dx + dy * dy);
+            float size = Math.max(Math.max(track.mWidth, track.mHeight),
+                    Math.max(bounds[2] - bounds[0], bounds[3] - bounds[1]));
+            if (distance <= size * mMaxMovement && distance < closestDistance) {
+                closest = track;
+                closestDistance = distance;
+            }
+        }
+        return closest;
+    }
+
+    static String keyOf(Result result) {
+        return result.getBarcodeFormat() + ":" + result.getText();
+    }
+
+    /**
+     * Bounding box of the result points as left, top, right, bottom, widened so that neither side
+     * is shorter than half of the other. Returns null when there are no points.
+     */
+    static float[] getBounds(Result result) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null || points.length == 0) {
+            return null;
+        }
+        float left = Float.MAX_VALUE;
+        float top = Float.MAX_VALUE;
+        float right = -Float.MAX_VALUE;
+        float bottom = -Float.MAX_VALUE;
+        for (ResultPoint point : points) {
+            if (point == null) {
+                continue;
+            }
+            left = Math.min(left, point.getX());
+            top = Math.min(top, point.getY());
+            right = Math.max(right, point.getX());
+            bottom = Math.max(bottom, point.getY());
+        }
+        if (left > right) {
+            return null;
+        }
+        float width = right - left;
+        float height = bottom - top;
+        if (height < width * MIN_ASPECT) {
+            float grow = (width * MIN_ASPECT - height) / 2;
+            top -= grow;
+            bottom += grow;
+        } else if (width < height * MIN_ASPECT) {
+            float grow = (height * MIN_ASPECT - width) / 2;
+            left -= grow;
+            right += grow;
+        }
+        return new float[]{left, top, right, bottom};
+    }
+}
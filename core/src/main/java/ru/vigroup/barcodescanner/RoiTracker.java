@@ -0,0 +1,165 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.Result;
+
+/**
+ * Predicts where the last decoded code will be in the next frame, so that steady continuous
+ * scanning decodes a tight crop around it instead of the whole framing rect. The crop is the
+ * code's last bounds moved along its estimated velocity and padded by {@code margin} code sizes
+ * on every side, clipped to the framing rect.
+ *
+ * <p>After {@code maxMisses} crops in a row without a result, when the code was last seen more
+ * than {@code ttlMillis} ago, or when the crop would not be much smaller than the framing rect,
+ * {@link #predict} returns null and the framing rect is decoded. Every {@code refreshInterval}-th
+ * prediction is skipped as well, so codes appearing next to a tracked one are still found.
+ *
+ * <p>Result points are expected in upright frame coordinates, as returned by
+ * {@link FrameDecoder#decode}. Decode workers may share a tracker.
+ */
+public class RoiTracker {
+    public static final float DEFAULT_MARGIN = 0.5f;
+    public static final int DEFAULT_MAX_MISSES = 2;
+    public static final long DEFAULT_TTL_MILLIS = 500;
+    public static final int DEFAULT_REFRESH_INTERVAL = 5;
+
+    // below that HybridBinarizer falls back to a global threshold
+    private static final int MIN_SIZE = 64;
+    // crops covering more of the framing rect save too little to be worth a miss
+    private static final float MAX_AREA = 0.5f;
+    // weight of the newest velocity sample
+    private static final float VELOCITY_SMOOTHING = 0.5f;
+
+    private final float mMargin;
+    private final int mMaxMisses;
+    private final long mTtlMillis;
+    private final int mRefreshInterval;
+
+    private boolean mTracking;
+    private float mCenterX;
+    private float mCenterY;
+    private float mWidth;
+    private float mHeight;
+    // pixels per millisecond
+    private float mVelocityX;
+    private float mVelocityY;
+    private long mLastSeen;
+    private int mMisses;
+    private int mPredictions;
+    private long mHitCount;
+    private long mMissCount;
+
+    public RoiTracker() {
+        this(DEFAULT_MARGIN, DEFAULT_MAX_MISSES, DEFAULT_TTL_MILLIS, DEFAULT_REFRESH_INTERVAL);
+    }
+
+    public RoiTracker(float margin, int maxMisses, long ttlMillis, int refreshInterval) {
+        if (margin < 0 || maxMisses < 1 || ttlMillis <= 0 || refreshInterval < 2) {
+            throw new IllegalArgumentException("need margin >= 0, maxMisses >= 1, ttlMillis > 0 "
+                    + "and refreshInterval >= 2");
+        }
+        mMargin = margin;
+        mMaxMisses = maxMisses;
+        mTtlMillis = ttlMillis;
+        mRefreshInterval = refreshInterval;
+    }
+
+    /**
+     * The region to decode instead of {@code framingRegion} at {@code now}, both in upright frame
+     * coordinates, or null to decode the framing region.
+     */
+    public synchronized FrameRegion predict(FrameRegion framingRegion, long now) {
+        long elapsed = now - mLastSeen;
+        if (!mTracking || mMisses >= mMaxMisses || elapsed > mTtlMillis) {
+            return null;
+        }
+        if (++mPredictions % mRefreshInterval == 0) {
+            return null;
+        }
+        elapsed = Math.max(elapsed, 0);
+        float centerX = mCenterX + mVelocityX * elapsed;
+        float centerY = mCenterY + mVelocityY * elapsed;
+        float padding = Math.max(mWidth, mHeight) * mMargin;
+        // the velocity is an estimate, leave room for half of the predicted movement again
+        float halfWidth = Math.max(mWidth / 2 + padding + Math.abs(mVelocityX * elapsed) / 2, MIN_SIZE / 2);
+        float halfHeight = Math.max(mHeight / 2 + padding + Math.abs(mVelocityY * elapsed) / 2, MIN_SIZE / 2);
+
+        int left = Math.max((int) (centerX - halfWidth), framingRegion.getLeft());
+        int top = Math.max((int) (centerY - halfHeight), framingRegion.getTop());
+        int right = Math.min((int) Math.ceil(centerX + halfWidth), framingRegion.getRight());
+        int bottom = Math.min((int) Math.ceil(centerY + halfHeight), framingRegion.getBottom());
+        if (right - left < MIN_SIZE || bottom - top < MIN_SIZE) {
+            // out of the framing rect, or too close to its edge to decode
+            return null;
+        }
+        long area = (long) (right - left) * (bottom - top);
+        if (area > (long) framingRegion.getWidth() * framingRegion.getHeight() * MAX_AREA) {
+            return null;
+        }
+        return new FrameRegion(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Reports the outcome of decoding the region {@code predicted} by {@link #predict}, or the
+     * framing region when that is null. {@code result} is null on a miss.
+     */
+    public synchronized void update(FrameRegion predicted, Result result, long now) {
+        if (result == null) {
+            if (predicted != null) {
+                mMisses++;
+                mMissCount++;
+            }
+            return;
+        }
+        if (predicted != null) {
+            mHitCount++;
+        }
+        mMisses = 0;
+        float[] bounds = ResultTracker.getBounds(result);
+        if (bounds == null) {
+            mTracking = false;
+            return;
+        }
+        float centerX = (bounds[0] + bounds[2]) / 2;
+        float centerY = (bounds[1] + bounds[3]) / 2;
+        long elapsed = now - mLastSeen;
+        if (mTracking && elapsed < 0) {
+            // a worker finishing an older frame after a newer one, keep the newer position
+            return;
+        }
+        if (!mTracking || elapsed > mTtlMillis) {
+            mVelocityX = 0;
+            mVelocityY = 0;
+        } else if (elapsed > 0) {
+            mVelocityX += ((centerX - mCenterX) / elapsed - mVelocityX) * VELOCITY_SMOOTHING;
+            mVelocityY += ((centerY - mCenterY) / elapsed - mVelocityY) * VELOCITY_SMOOTHING;
+        }
+        mTracking = true;
+        mCenterX = centerX;
+        mCenterY = centerY;
+        mWidth = bounds[2] - bounds[0];
+        mHeight = bounds[3] - bounds[1];
+        mLastSeen = now;
+    }
+
+    /** Forgets the tracked code, e.g. when scanning resumes for a different one. */
+    public synchronized void clear() {
+        mTracking = false;
+        mMisses = 0;
+        mPredictions = 0;
+    }
+
+    /** Predicted regions that decoded. */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    /** Predicted regions that did not decode. */
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized void reset() {
+        mHitCount = 0;
+        mMissCount = 0;
+    }
+}
@@ -0,0 +1,154 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * A cropped view of a luminance plane in sensor orientation, presented rotated clockwise by a
+ * multiple of 90 degrees. Nothing is copied up front: rows and the matrix are read through the
+ * rotation when a binarizer asks for them, and crops and further rotations are new views.
+ */
+public final class RotatedLuminanceSource extends LuminanceSource {
+    private final byte[] mData;
+    private final int mDataWidth;
+    private final int mDataHeight;
+    private final int mLeft;
+    private final int mTop;
+    private final int mCropWidth;
+    private final int mCropHeight;
+    private final int mDegrees;
+
+    /**
+     * The region {@code (left, top, cropWidth, cropHeight)} is given in sensor coordinates and is
+     * presented rotated clockwise by {@code degrees}.
+     */
+    public RotatedLuminanceSource(byte[] data, int dataWidth, int dataHeight,
+                                  int left, int top, int cropWidth, int cropHeight, int degrees) {
+        super(degrees % 180 == 0 ? cropWidth : cropHeight, degrees % 180 == 0 ? cropHeight : cropWidth);
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("Unsupported rotation: " + degrees);
+        }
+        if (left < 0 || top < 0 || left + cropWidth > dataWidth || top + cropHeight > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        mData = data;
+        mDataWidth = dataWidth;
+        mDataHeight = dataHeight;
+        mLeft = left;
+        mTop = top;
+        mCropWidth = cropWidth;
+        mCropHeight = cropHeight;
+        mDegrees = degrees;
+    }
+
+    public int getDegrees() {
+        return mDegrees;
+    }
+
+    /** Returns the same region rotated by {@code degrees} instead of this view's rotation. */
+    public RotatedLuminanceSource rotate(int degrees) {
+        return new RotatedLuminanceSource(mData, mDataWidth, mDataHeight,
+                mLeft, mTop, mCropWidth, mCropHeight, degrees);
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int offset = dataOffset(0, y);
+        int step = dataOffset(width > 1 ? 1 : 0, y) - offset;
+        if (step == 1) {
+            System.arraycopy(mData, offset, row, 0, width);
+        } else {
+            for (int x = 0; x < width; x++) {
+                row[x] = mData[offset];
+                offset += step;
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        byte[] matrix = new byte[getWidth() * getHeight()];
+        readMatrix(matrix);
+        return matrix;
+    }
+
+    /** Writes the view into {@code matrix}, row after row. */
+    void readMatrix(byte[] matrix) {
+        int width = getWidth();
+        int height = getHeight();
+        if (mDegrees == 0) {
+            for (int y = 0; y < height; y++) {
+                System.arraycopy(mData, (mTop + y) * mDataWidth + mLeft, matrix, y * width, width);
+            }
+            return;
+        }
+
+        // position of the crop inside the fully rotated frame
+        int left;
+        int top;
+        switch (mDegrees) {
+            case 90:
+                left = mDataHeight - mTop - mCropHeight;
+                top = mLeft;
+                break;
+            case 180:
+                left = mDataWidth - mLeft - mCropWidth;
+                top = mDataHeight - mTop - mCropHeight;
+                break;
+            default:
+                left = mTop;
+                top = mDataWidth - mLeft - mCropWidth;
+                break;
+        }
+        FrameRotator.rotate(mData, mDataWidth, mDataHeight, mDegrees, left, top, width, height, matrix);
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        int first = dataOffset(left, top);
+        int last = dataOffset(left + width - 1, top + height - 1);
+        int firstX = first % mDataWidth;
+        int lastX = last % mDataWidth;
+        int firstY = first / mDataWidth;
+        int lastY = last / mDataWidth;
+        return new RotatedLuminanceSource(mData, mDataWidth, mDataHeight,
+                Math.min(firstX, lastX), Math.min(firstY, lastY),
+                Math.abs(lastX - firstX) + 1, Math.abs(lastY - firstY) + 1, mDegrees);
+    }
+
+    @Override
+    public boolean isRotateSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource rotateCounterClockwise() {
+        return rotate((mDegrees + 270) % 360);
+    }
+
+    // index into mData of the pixel shown at (x, y)
+    private int dataOffset(int x, int y) {
+        switch (mDegrees) {
+            case 90:
+                return (mTop + mCropHeight - 1 - x) * mDataWidth + mLeft + y;
+            case 180:
+                return (mTop + mCropHeight - 1 - y) * mDataWidth + mLeft + mCropWidth - 1 - x;
+            case 270:
+                return (mTop + x) * mDataWidth + mLeft + mCropWidth - 1 - y;
+            default:
+                return (mTop + y) * mDataWidth + mLeft + x;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of what decoding a frame depends on: the formats and decode hints, and the
+ * framing rect, both as laid out in the view and mapped into the preview size of the frames.
+ * Every change publishes a new snapshot through a single atomic reference, so decode workers
+ * read a consistent configuration without locking while the UI thread reconfigures.
+ *
+ * <p>{@link #getVersion()} grows with every change, {@link #getDecoderVersion()} only with
+ * changes of formats and hints, the ones after which readers have to be rebuilt.
+ */
+public final class ScanConfig {
+    private final long mVersion;
+    private final long mDecoderVersion;
+    private final List<BarcodeFormat> mFormats;
+    private final int mTryHarderInterval;
+    private final int mMissesBeforeTryHarder;
+    private final boolean mLearnFormatOrder;
+    private final int mOneDRowCount;
+    // the framing rect in view coordinates, views of 0 size while there is none
+    private final float mFramingLeft;
+    private final float mFramingTop;
+    private final float mFramingRight;
+    private final float mFramingBottom;
+    private final int mViewWidth;
+    private final int mViewHeight;
+    private final int mPreviewWidth;
+    private final int mPreviewHeight;
+    private final FrameRegion mFramingRegion;
+
+    /** All formats, the default adaptive decoding, no 1D fast path and no framing rect yet. */
+    public ScanConfig() {
+        this(0, 0, FrameDecoder.ALL_FORMATS, DecodeScheduler.DEFAULT_TRY_HARDER_INTERVAL,
+                DecodeScheduler.DEFAULT_MISSES_BEFORE_TRY_HARDER, true, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    private ScanConfig(long version, long decoderVersion, Collection<BarcodeFormat> formats,
+                       int tryHarderInterval, int missesBeforeTryHarder, boolean learnFormatOrder,
+                       int oneDRowCount, float framingLeft, float framingTop, float framingRight,
+                       float framingBottom, int viewWidth, int viewHeight, int previewWidth, int previewHeight) {
+        mVersion = version;
+        mDecoderVersion = decoderVersion;
+        mFormats = Collections.unmodifiableList(new ArrayList<BarcodeFormat>(formats));
+        mTryHarderInterval = tryHarderInterval;
+        mMissesBeforeTryHarder = missesBeforeTryHarder;
+        mLearnFormatOrder = learnFormatOrder;
+        mOneDRowCount = oneDRowCount;
+        mFramingLeft = framingLeft;
+        mFramingTop = framingTop;
+        mFramingRight = framingRight;
+        mFramingBottom = framingBottom;
+        mViewWidth = viewWidth;
+        mViewHeight = viewHeight;
+        mPreviewWidth = previewWidth;
+        mPreviewHeight = previewHeight;
+        mFramingRegion = mapFramingRect(previewWidth, previewHeight);
+    }
+
+    /** {@code formats} to decode, or all of {@link FrameDecoder#ALL_FORMATS} for null. */
+    public ScanConfig withFormats(Collection<BarcodeFormat> formats) {
+        return new ScanConfig(mVersion + 1, mVersion + 1, formats != null ? formats : FrameDecoder.ALL_FORMATS,
+                mTryHarderInterval, mMissesBeforeTryHarder, mLearnFormatOrder, mOneDRowCount, mFramingLeft,
+                mFramingTop, mFramingRight, mFramingBottom, mViewWidth, mViewHeight, mPreviewWidth, mPreviewHeight);
+    }
+
+    /** See {@link DecodeScheduler}. */
+    public ScanConfig withAdaptiveDecoding(int tryHarderInterval, int missesBeforeTryHarder,
+                                           boolean learnFormatOrder) {
+        if (tryHarderInterval < 1 || missesBeforeTryHarder < 1) {
+            throw new IllegalArgumentException("tryHarderInterval and missesBeforeTryHarder must be at least 1");
+        }
+        return new ScanConfig(mVersion + 1, mVersion + 1, mFormats, tryHarderInterval, missesBeforeTryHarder,
+                learnFormatOrder, mOneDRowCount, mFramingLeft, mFramingTop, mFramingRight, mFramingBottom,
+                mViewWidth, mViewHeight, mPreviewWidth, mPreviewHeight);
+    }
+
+    /** See {@link OneDRowScanner}, 0 disables the 1D fast path. */
+    public ScanConfig withOneDRowCount(int oneDRowCount) {
+        if (oneDRowCount < 0) {
+            throw new IllegalArgumentException("oneDRowCount must not be negative");
+        }
+        return new ScanConfig(mVersion + 1, mVersion + 1, mFormats, mTryHarderInterval, mMissesBeforeTryHarder,
+                mLearnFormatOrder, oneDRowCount, mFramingLeft, mFramingTop, mFramingRight, mFramingBottom,
+                mViewWidth, mViewHeight, mPreviewWidth, mPreviewHeight);
+    }
+
+    /**
+     * The framing rect as laid out in a {@code viewWidth x viewHeight} preview view. Returns this
+     * snapshot when nothing changed, so layout passes do not publish new versions.
+     */
+    public ScanConfig withFramingRect(float left, float top, float right, float bottom, int viewWidth,
+                                      int viewHeight) {
+        if (left == mFramingLeft && top == mFramingTop && right == mFramingRight && bottom == mFramingBottom
+                && viewWidth == mViewWidth && viewHeight == mViewHeight) {
+            return this;
+        }
+        return new ScanConfig(mVersion + 1, mDecoderVersion, mFormats, mTryHarderInterval, mMissesBeforeTryHarder,
+                mLearnFormatOrder, mOneDRowCount, left, top, right, bottom, viewWidth, viewHeight,
+                mPreviewWidth, mPreviewHeight);
+    }
+
+    public ScanConfig withoutFramingRect() {
+        return withFramingRect(0, 0, 0, 0, 0, 0);
+    }
+
+    /** Maps the framing rect into upright frames of {@code previewWidth x previewHeight}. */
+    public ScanConfig withPreviewSize(int previewWidth, int previewHeight) {
+        if (previewWidth == mPreviewWidth && previewHeight == mPreviewHeight) {
+            return this;
+        }
+        return new ScanConfig(mVersion + 1, mDecoderVersion, mFormats, mTryHarderInterval, mMissesBeforeTryHarder,
+                mLearnFormatOrder, mOneDRowCount, mFramingLeft, mFramingTop, mFramingRight, mFramingBottom,
+                mViewWidth, mViewHeight, previewWidth, previewHeight);
+    }
+
+    private FrameRegion mapFramingRect(int previewWidth, int previewHeight) {
+        if (!hasFramingRect() || previewWidth <= 0 || previewHeight <= 0) {
+            return null;
+        }
+        return FrameRegion.fromView(mFramingLeft, mFramingTop, mFramingRight, mFramingBottom, mViewWidth,
+                mViewHeight, previewWidth, previewHeight);
+    }
+
+    public long getVersion() {
+        return mVersion;
+    }
+
+    public long getDecoderVersion() {
+        return mDecoderVersion;
+    }
+
+    public List<BarcodeFormat> getFormats() {
+        return mFormats;
+    }
+
+    public int getTryHarderInterval() {
+        return mTryHarderInterval;
+    }
+
+    public int getMissesBeforeTryHarder() {
+        return mMissesBeforeTryHarder;
+    }
+
+    public boolean isLearnFormatOrder() {
+        return mLearnFormatOrder;
+    }
+
+    public int getOneDRowCount() {
+        return mOneDRowCount;
+    }
+
+    public boolean hasFramingRect() {
+        return mViewWidth > 0 && mViewHeight > 0;
+    }
+
+    public int getPreviewWidth() {
+        return mPreviewWidth;
+    }
+
+    public int getPreviewHeight() {
+        return mPreviewHeight;
+    }
+
+    /** The framing rect in upright frames of the preview size, or null without either. */
+    public FrameRegion getFramingRegion() {
+        return mFramingRegion;
+    }
+
+    /**
+     * The framing rect in upright frames of {@code previewWidth x previewHeight}, mapped anew
+     * unless that is the preview size of this snapshot. Null without a framing rect.
+     */
+    public FrameRegion getFramingRegion(int previewWidth, int previewHeight) {
+        if (previewWidth == mPreviewWidth && previewHeight == mPreviewHeight) {
+            return mFramingRegion;
+        }
+        return mapFramingRect(previewWidth, previewHeight);
+    }
+}
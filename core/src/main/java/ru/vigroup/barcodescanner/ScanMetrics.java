@@ -0,0 +1,126 @@
+package ru.vigroup.barcodescanner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the time of the frame pipeline goes: a {@link LatencyHistogram} per {@link Stage} and
+ * counters of frames received, dropped, decoded and decoded with a result, plus the time from
+ * the camera start to the first result. Times are taken with {@link System#nanoTime()}.
+ *
+ * <p>Recording is lock and allocation free, so it stays on in production. Counters keep going
+ * until {@link #reset()}, which a {@link Listener} may call to report per interval.
+ */
+public class ScanMetrics {
+    public enum Stage {
+        /** Between two frames arriving from the camera. */
+        FRAME_INTERVAL,
+        /** Turning the region of interest upright, only on the copying paths. */
+        ROTATE,
+        /** Building the luminance source and the downscaled levels. */
+        LUMINANCE,
+        /** Thresholding to black and white, including reading the luminance of views. */
+        BINARIZE,
+        /** The readers, without binarization. */
+        DECODE
+    }
+
+    /** Receives the metrics periodically on the main thread. */
+    public interface Listener {
+        void onScanMetrics(ScanMetrics metrics);
+    }
+
+    private final LatencyHistogram[] mHistograms = new LatencyHistogram[Stage.values().length];
+    private final AtomicLong mFramesReceived = new AtomicLong();
+    private final AtomicLong mFramesDropped = new AtomicLong();
+    private final AtomicLong mFramesDecoded = new AtomicLong();
+    private final AtomicLong mFramesWithResult = new AtomicLong();
+    private final AtomicLong mLastFrameAt = new AtomicLong();
+    private final AtomicLong mCameraStartedAt = new AtomicLong();
+    private final AtomicLong mFirstResultMicros = new AtomicLong(-1);
+
+    public ScanMetrics() {
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /** Starts timing until the first result and the intervals of a new frame stream. */
+    public void onCameraStarted(long nanoTime) {
+        mCameraStartedAt.set(nanoTime);
+        mFirstResultMicros.set(-1);
+        mLastFrameAt.set(0);
+    }
+
+    public void onFrameReceived(long nanoTime) {
+        mFramesReceived.incrementAndGet();
+        long last = mLastFrameAt.getAndSet(nanoTime);
+        if (last != 0) {
+            record(Stage.FRAME_INTERVAL, nanoTime - last);
+        }
+    }
+
+    /** A frame that was not decoded: superseded by a newer one, blurred, or taken while focusing. */
+    public void onFrameDropped() {
+        mFramesDropped.incrementAndGet();
+    }
+
+    public void onFrameDecoded(boolean hit, long nanoTime) {
+        mFramesDecoded.incrementAndGet();
+        if (!hit) {
+            return;
+        }
+        mFramesWithResult.incrementAndGet();
+        long startedAt = mCameraStartedAt.get();
+        if (startedAt != 0 && mFirstResultMicros.get() < 0) {
+            mFirstResultMicros.compareAndSet(-1, (nanoTime - startedAt) / 1000);
+        }
+    }
+
+    public void record(Stage stage, long nanos) {
+        mHistograms[stage.ordinal()].record(nanos / 1000);
+    }
+
+    /** Durations of {@code stage} in microseconds. */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return mHistograms[stage.ordinal()];
+    }
+
+    public long getFramesReceived() {
+        return mFramesReceived.get();
+    }
+
+    public long getFramesDropped() {
+        return mFramesDropped.get();
+    }
+
+    public long getFramesDecoded() {
+        return mFramesDecoded.get();
+    }
+
+    public long getFramesWithResult() {
+        return mFramesWithResult.get();
+    }
+
+    /** Share of decoded frames that gave a result, 0 before the first decode. */
+    public float getSuccessRate() {
+        long decoded = mFramesDecoded.get();
+        return decoded > 0 ? (float) mFramesWithResult.get() / decoded : 0;
+    }
+
+    /** Time from the last camera start to the first result, or -1 while there is none. */
+    public long getTimeToFirstResultMillis() {
+        long micros = mFirstResultMicros.get();
+        return micros < 0 ? -1 : micros / 1000;
+    }
+
+    /** Clears histograms and counters; the time to the first result is kept. */
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms) {
+            histogram.reset();
+        }
+        mFramesReceived.set(0);
+        mFramesDropped.set(0);
+        mFramesDecoded.set(0);
+        mFramesWithResult.set(0);
+    }
+}
@@ -0,0 +1,151 @@
+package ru.vigroup.barcodescanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings and threads of tiled decoding, see {@link FrameDecoder#setTiledDecoding}. A region
+ * larger than twice {@code maxCodeSize} is split into tiles of twice that size, {@code maxCodeSize}
+ * apart, so every code up to that size lies wholly inside one tile. The tiles are decoded on the
+ * pool while the decode worker decodes the whole region itself; the first result wins and the
+ * other tasks stop after their current pass, tasks that have not started yet do not run at all.
+ * Bigger codes are still found by the whole region, so tiling never finds less, it finds codes
+ * that fit a tile sooner.
+ *
+ * <p>The pool threads time out when idle, so nothing needs to be shut down. Any
+ * {@link ExecutorService} may be passed instead, e.g. a {@code ForkJoinPool} on API 21+.
+ */
+public class TiledDecoding {
+    public static final int DEFAULT_MAX_CODE_SIZE = 320;
+
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ExecutorService mExecutor;
+    private final int mMaxCodeSize;
+    private final FrameBufferPool mBufferPool = new FrameBufferPool();
+    private final AtomicLong mFrameCount = new AtomicLong();
+    private final AtomicLong mTileHitCount = new AtomicLong();
+    private final AtomicLong mRegionHitCount = new AtomicLong();
+
+    /** One thread per core, tiles for codes up to {@link #DEFAULT_MAX_CODE_SIZE}. */
+    public TiledDecoding() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_CODE_SIZE);
+    }
+
+    public TiledDecoding(int threadCount, int maxCodeSize) {
+        this(createExecutor(threadCount), maxCodeSize);
+    }
+
+    public TiledDecoding(ExecutorService executor, int maxCodeSize) {
+        if (maxCodeSize < 1) {
+            throw new IllegalArgumentException("maxCodeSize must be at least 1");
+        }
+        mExecutor = executor;
+        mMaxCodeSize = maxCodeSize;
+    }
+
+    private static ExecutorService createExecutor(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount must be at least 1");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "TileDecoder-" + mCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public ExecutorService getExecutor() {
+        return mExecutor;
+    }
+
+    public int getMaxCodeSize() {
+        return mMaxCodeSize;
+    }
+
+    /**
+     * The tiles of a {@code width x height} region, relative to it, or an empty list when the
+     * region is small enough to be decoded whole.
+     */
+    public static List<FrameRegion> getTiles(int width, int height, int maxCodeSize) {
+        int tileSize = 2 * maxCodeSize;
+        if (width <= tileSize && height <= tileSize) {
+            return Collections.emptyList();
+        }
+        int tileWidth = Math.min(tileSize, width);
+        int tileHeight = Math.min(tileSize, height);
+        List<FrameRegion> tiles = new ArrayList<FrameRegion>();
+        for (int top : getStarts(height, tileHeight, maxCodeSize)) {
+            for (int left : getStarts(width, tileWidth, maxCodeSize)) {
+                tiles.add(new FrameRegion(left, top, tileWidth, tileHeight));
+            }
+        }
+        return tiles;
+    }
+
+    // tiles step by maxCodeSize, the last one is flush with the far edge
+    private static List<Integer> getStarts(int length, int tileLength, int step) {
+        List<Integer> starts = new ArrayList<Integer>();
+        for (int start = 0; ; start += step) {
+            int clamped = Math.min(start, length - tileLength);
+            starts.add(clamped);
+            if (clamped == length - tileLength) {
+                return starts;
+            }
+        }
+    }
+
+    List<FrameRegion> getTiles(int width, int height) {
+        return getTiles(width, height, mMaxCodeSize);
+    }
+
+    FrameBufferPool getBufferPool() {
+        return mBufferPool;
+    }
+
+    void onFrameDecoded(boolean tileHit, boolean regionHit) {
+        mFrameCount.incrementAndGet();
+        if (tileHit) {
+            mTileHitCount.incrementAndGet();
+        } else if (regionHit) {
+            mRegionHitCount.incrementAndGet();
+        }
+    }
+
+    /** Frames decoded in tiles. */
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    /** Frames whose result came from a tile. */
+    public long getTileHitCount() {
+        return mTileHitCount.get();
+    }
+
+    /** Frames whose result came from the whole region, i.e. codes too big for a tile. */
+    public long getRegionHitCount() {
+        return mRegionHitCount.get();
+    }
+
+    public void reset() {
+        mFrameCount.set(0);
+        mTileHitCount.set(0);
+        mRegionHitCount.set(0);
+    }
+}
@@ -0,0 +1,121 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+public class ByteBufferLuminanceSourceTest {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int ROW_STRIDE = 192;
+    private static final int[] ANGLES = {0, 90, 180, 270};
+
+    @Test
+    public void getMatrix_matchesArraySource() throws Exception {
+        byte[] frame = syntheticFrame();
+        for (int pixelStride : new int[]{1, 2}) {
+            ByteBuffer buffer = strided(frame, pixelStride);
+            for (int degrees : ANGLES) {
+                LuminanceSource expected = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 10, 20, 70, 50, degrees);
+                LuminanceSource source = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT,
+                        ROW_STRIDE * pixelStride, pixelStride, 10, 20, 70, 50, degrees, null);
+                assertArrayEquals("@" + degrees + " stride " + pixelStride, expected.getMatrix(), source.getMatrix());
+            }
+        }
+    }
+
+    @Test
+    public void getRow_matchesMatrixRows() throws Exception {
+        ByteBuffer buffer = strided(syntheticFrame(), 1);
+        for (int degrees : ANGLES) {
+            LuminanceSource source = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, ROW_STRIDE, 1,
+                    5, 7, 33, 21, degrees, new ByteBufferLuminanceSource.Scratch());
+            byte[] matrix = source.getMatrix().clone();
+            byte[] row = null;
+            for (int y = 0; y < source.getHeight(); y++) {
+                row = source.getRow(y, row);
+                int from = y * source.getWidth();
+                assertArrayEquals("@" + degrees + " row " + y,
+                        Arrays.copyOfRange(matrix, from, from + source.getWidth()),
+                        Arrays.copyOf(row, source.getWidth()));
+            }
+        }
+    }
+
+    @Test
+    public void crop_isRelativeToRotatedView() throws Exception {
+        byte[] frame = syntheticFrame();
+        ByteBuffer buffer = strided(frame, 1);
+        for (int degrees : ANGLES) {
+            LuminanceSource expected = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, degrees)
+                    .crop(3, 4, 25, 17);
+            LuminanceSource cropped = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, ROW_STRIDE, 1,
+                    0, 0, WIDTH, HEIGHT, degrees, null).crop(3, 4, 25, 17);
+            assertArrayEquals("@" + degrees, expected.getMatrix(), cropped.getMatrix());
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwise_matchesArraySource() throws Exception {
+        byte[] frame = syntheticFrame();
+        LuminanceSource expected = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 90)
+                .rotateCounterClockwise();
+        LuminanceSource source = new ByteBufferLuminanceSource(strided(frame, 1), WIDTH, HEIGHT, ROW_STRIDE, 1,
+                0, 0, WIDTH, HEIGHT, 90, null).rotateCounterClockwise();
+        assertArrayEquals(expected.getMatrix(), source.getMatrix());
+    }
+
+    @Test
+    public void getMatrix_reusesScratch() throws Exception {
+        ByteBuffer buffer = strided(syntheticFrame(), 1);
+        ByteBufferLuminanceSource.Scratch scratch = new ByteBufferLuminanceSource.Scratch();
+        byte[] first = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, ROW_STRIDE, 1,
+                0, 0, WIDTH, HEIGHT, 90, scratch).getMatrix();
+        byte[] second = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, ROW_STRIDE, 1,
+                10, 10, 50, 50, 0, scratch).getMatrix();
+        assertSame(first, second);
+    }
+
+    @Test
+    public void constructor_startsAtBufferPosition() throws Exception {
+        byte[] frame = syntheticFrame();
+        ByteBuffer buffer = ByteBuffer.allocate(WIDTH * HEIGHT + 7);
+        buffer.position(7);
+        buffer.put(frame, 0, WIDTH * HEIGHT);
+        buffer.position(7);
+        LuminanceSource source = new ByteBufferLuminanceSource(buffer, WIDTH, HEIGHT, WIDTH, 1,
+                0, 0, WIDTH, HEIGHT, 0, null);
+        assertArrayEquals(Arrays.copyOf(frame, WIDTH * HEIGHT), source.getMatrix());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsBufferShorterThanStrides() throws Exception {
+        new ByteBufferLuminanceSource(ByteBuffer.allocate(WIDTH * HEIGHT), WIDTH, HEIGHT, ROW_STRIDE, 1,
+                0, 0, WIDTH, HEIGHT, 0, null);
+    }
+
+    private static byte[] syntheticFrame() {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        new Random(42).nextBytes(frame);
+        return frame;
+    }
+
+    // a direct buffer with padded rows and interleaved pixels, the last row unpadded
+    private static ByteBuffer strided(byte[] frame, int pixelStride) {
+        int rowStride = ROW_STRIDE * pixelStride;
+        ByteBuffer buffer = ByteBuffer.allocateDirect((HEIGHT - 1) * rowStride + (WIDTH - 1) * pixelStride + 1);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                buffer.put(y * rowStride + x * pixelStride, frame[y * WIDTH + x]);
+            }
+        }
+        return buffer;
+    }
+}
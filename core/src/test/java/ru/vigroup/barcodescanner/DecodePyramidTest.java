@@ -0,0 +1,110 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class DecodePyramidTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 960;
+
+    @Test
+    public void getFactors_keepsLevelsAboveMinSize() {
+        DecodePyramid pyramid = new DecodePyramid(4, 180);
+
+        assertArrayEquals(new int[]{4, 2, 1}, pyramid.getFactors(1280, 720));
+        assertArrayEquals(new int[]{2, 1}, pyramid.getFactors(1280, 400));
+        assertArrayEquals(new int[]{1}, pyramid.getFactors(300, 300));
+        assertArrayEquals(new int[]{2, 1}, new DecodePyramid(2, 180).getFactors(1280, 720));
+    }
+
+    @Test
+    public void downscale_averagesBlocks() {
+        byte[] src = {
+                0, 4, 8, 8, 1,
+                4, 8, 8, 8, 1,
+                (byte) 200, (byte) 200, 0, 0, 1};
+        byte[] dst = new byte[2];
+
+        DecodePyramid.downscale(src, 5, 3, dst);
+
+        assertArrayEquals(new byte[]{4, 8}, dst);
+    }
+
+    @Test
+    public void downscale_buildsLevelsFromSource() {
+        byte[] data = new byte[16 * 8];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 16 * 8);
+        }
+        RotatedLuminanceSource source = new RotatedLuminanceSource(data, 16, 8, 0, 0, 16, 8, 0);
+        DecodePyramid pyramid = new DecodePyramid();
+
+        RotatedLuminanceSource quarter = pyramid.downscale(source, 4);
+        assertEquals(4, quarter.getWidth());
+        assertEquals(2, quarter.getHeight());
+        assertArrayEquals(new byte[]{12, 44, 76, 108, 12, 44, 76, 108}, quarter.getMatrix());
+        RotatedLuminanceSource half = pyramid.downscale(source, 2);
+        assertEquals(8, half.getWidth());
+        assertEquals(36, half.getMatrix()[2] & 0xFF);
+    }
+
+    @Test
+    public void decode_findsBigCodeAtLowResolution() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "https://example.com/item/42", 300, 120, 720, 720);
+        FrameDecoder decoder = newDecoder();
+
+        Result result = decoder.decode(new PreviewFrame(frame, WIDTH, HEIGHT, 0), null);
+
+        assertNotNull(result);
+        assertEquals("https://example.com/item/42", result.getText());
+        assertEquals(1, decoder.getDecodePyramid().getHitCount(4));
+        // points are scaled back to the full resolution region
+        for (ResultPoint point : result.getResultPoints()) {
+            assertTrue(point.toString(), point.getX() >= 300 && point.getX() <= 1020
+                    && point.getY() >= 120 && point.getY() <= 840);
+        }
+    }
+
+    @Test
+    public void decode_escalatesToFullResolution() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.CODE_128, "PALLET-000123-ABCDEF", 400, 400, 480, 100);
+        FrameDecoder decoder = newDecoder();
+
+        Result result = decoder.decode(new PreviewFrame(frame, WIDTH, HEIGHT, 0), null);
+
+        assertNotNull(result);
+        assertEquals(1, decoder.getDecodePyramid().getHitCount(1));
+        assertEquals(0, decoder.getDecodePyramid().getMissCount());
+    }
+
+    @Test
+    public void decode_countsMisses() throws Exception {
+        FrameDecoder decoder = newDecoder();
+
+        decoder.decode(new PreviewFrame(SyntheticFrames.blank(WIDTH, HEIGHT), WIDTH, HEIGHT, 0), null);
+
+        assertEquals(1, decoder.getDecodePyramid().getMissCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsUnsupportedFactor() {
+        new DecodePyramid(3, 180);
+    }
+
+    private static FrameDecoder newDecoder() {
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setAdaptiveDecoding(1, 1, false);
+        decoder.setDecodePyramid(new DecodePyramid());
+        return decoder;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeSchedulerTest {
+    private static final List<BarcodeFormat> FORMATS =
+            Arrays.asList(BarcodeFormat.EAN_13, BarcodeFormat.CODE_128, BarcodeFormat.QR_CODE);
+
+    @Test
+    public void nextFrame_triesHarderEveryNthFrame() throws Exception {
+        DecodeScheduler scheduler = new DecodeScheduler(FORMATS, 3, 100, false);
+        for (int frame = 1; frame <= 9; frame++) {
+            DecodeScheduler.Pass[] passes = scheduler.nextFrame();
+            assertEquals("frame " + frame, frame % 3 == 0, passes[0].isTryHarder());
+            scheduler.onFrameDecoded(null, null);
+        }
+    }
+
+    @Test
+    public void nextFrame_escalatesAfterConsecutiveMisses() throws Exception {
+        DecodeScheduler scheduler = new DecodeScheduler(FORMATS, 1000, 2, false);
+        assertFalse(scheduler.nextFrame()[0].isTryHarder());
+        scheduler.onFrameDecoded(null, null);
+        assertFalse(scheduler.nextFrame()[0].isTryHarder());
+        scheduler.onFrameDecoded(null, null);
+        DecodeScheduler.Pass pass = scheduler.nextFrame()[0];
+        assertTrue(pass.isTryHarder());
+
+        scheduler.onFrameDecoded(pass, result(BarcodeFormat.QR_CODE));
+        assertFalse(scheduler.nextFrame()[0].isTryHarder());
+        assertEquals(1, scheduler.getHitCount(DecodeScheduler.PassType.TRY_HARDER));
+    }
+
+    @Test
+    public void nextFrame_triesRecentFormatsFirst() throws Exception {
+        DecodeScheduler scheduler = new DecodeScheduler(FORMATS, 1000, 1000, true);
+        DecodeScheduler.Pass[] passes = scheduler.nextFrame();
+        assertEquals(1, passes.length);
+        scheduler.onFrameDecoded(passes[0], result(BarcodeFormat.EAN_13));
+
+        passes = scheduler.nextFrame();
+        assertEquals(2, passes.length);
+        assertEquals(DecodeScheduler.PassType.FOCUSED, passes[0].getType());
+        assertEquals(Collections.singletonList(BarcodeFormat.EAN_13), passes[0].getFormats());
+        assertEquals(Arrays.asList(BarcodeFormat.CODE_128, BarcodeFormat.QR_CODE), passes[1].getFormats());
+    }
+
+    @Test
+    public void nextFrame_forgetsFormatsThatStopDecoding() throws Exception {
+        DecodeScheduler scheduler = new DecodeScheduler(FORMATS, 1000, 1000, true);
+        DecodeScheduler.Pass pass = scheduler.nextFrame()[0];
+        scheduler.onFrameDecoded(pass, result(BarcodeFormat.EAN_13));
+        for (int i = 0; i < 5; i++) {
+            scheduler.onFrameDecoded(pass, result(BarcodeFormat.QR_CODE));
+        }
+        assertEquals(Collections.singletonList(BarcodeFormat.QR_CODE), scheduler.getFocusedFormats());
+    }
+
+    private static Result result(BarcodeFormat format) {
+        return new Result("", null, null, format);
+    }
+}
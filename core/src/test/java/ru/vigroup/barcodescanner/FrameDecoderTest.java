@@ -0,0 +1,183 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrameDecoderTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final int[] ANGLES = {0, 90, 180, 270};
+
+    @Test
+    public void decode_findsCodesInEveryOrientation() throws Exception {
+        assertDecodesInEveryOrientation(BarcodeFormat.QR_CODE, "https://example.com/item/42");
+        assertDecodesInEveryOrientation(BarcodeFormat.CODE_128, "PALLET-000123");
+        assertDecodesInEveryOrientation(BarcodeFormat.PDF_417, "DELIVERY 000123");
+    }
+
+    @Test
+    public void decode_returnsPointsInUprightFrameCoordinates() throws Exception {
+        for (int degrees : ANGLES) {
+            boolean swap = degrees % 180 != 0;
+            int uprightWidth = swap ? HEIGHT : WIDTH;
+            int uprightHeight = swap ? WIDTH : HEIGHT;
+            byte[] upright = SyntheticFrames.blank(uprightWidth, uprightHeight);
+            SyntheticFrames.draw(upright, uprightWidth, BarcodeFormat.QR_CODE, "PALLET-1", 160, 120, 200, 200);
+            PreviewFrame frame = new PreviewFrame(toSensor(upright, uprightWidth, uprightHeight, degrees),
+                    WIDTH, HEIGHT, degrees);
+            for (boolean rotationFree : new boolean[]{false, true}) {
+                FrameDecoder decoder = new FrameDecoder();
+                decoder.setRotationFreeDecoding(rotationFree);
+                Result result = decoder.decode(frame, new FrameRegion(100, 60, 320, 320));
+                assertInside(result, 150, 110, 370, 330);
+            }
+        }
+    }
+
+    @Test
+    public void decode_reportsUprightFallbackHitsToTheScheduler() throws Exception {
+        byte[] upright = SyntheticFrames.render(BarcodeFormat.PDF_417, "DELIVERY 000123", HEIGHT, WIDTH);
+        PreviewFrame frame = new PreviewFrame(toSensor(upright, HEIGHT, WIDTH, 90), WIDTH, HEIGHT, 90);
+        FrameDecoder decoder = new FrameDecoder();
+        // only TRY_HARDER passes, which read PDF417 in sensor orientation and miss it
+        decoder.setAdaptiveDecoding(1, 1, true);
+        decoder.setRotationFreeDecoding(true);
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(decoder.decode(frame, null));
+        }
+        assertTrue(decoder.getDecodeScheduler().getFocusedFormats().contains(BarcodeFormat.PDF_417));
+    }
+
+    @Test
+    public void decode_returnsNullForRegionOutsideTheFrame() throws Exception {
+        FrameDecoder decoder = new FrameDecoder();
+        PreviewFrame frame = new PreviewFrame(new byte[WIDTH * HEIGHT * 3 / 2], WIDTH, HEIGHT, 90);
+        // 640 wide in sensor orientation means only 480 wide after a quarter turn
+        assertNull(decoder.decode(frame, new FrameRegion(0, 0, WIDTH, 10)));
+    }
+
+    @Test
+    public void decodeMultiple_findsEveryCodeInUprightCoordinates() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-1", 20, 20, 180, 180);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-2", 420, 20, 180, 180);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.CODE_128, "LABEL-000123", 120, 300, 400, 120);
+        // a sensor needing a quarter turn delivers the frame rotated counter-clockwise
+        PreviewFrame rotated = new PreviewFrame(toSensor(frame, WIDTH, HEIGHT, 90), HEIGHT, WIDTH, 90);
+
+        List<Result> results = new FrameDecoder().decodeMultiple(rotated, null, null);
+
+        Map<String, Result> byText = new HashMap<String, Result>();
+        for (Result result : results) {
+            byText.put(result.getText(), result);
+        }
+        assertEquals(byText.keySet().toString(), 3, byText.size());
+        assertInside(byText.get("PALLET-1"), 20, 20, 200, 200);
+        assertInside(byText.get("PALLET-2"), 420, 20, 600, 200);
+        assertInside(byText.get("LABEL-000123"), 120, 300, 520, 420);
+    }
+
+    @Test
+    public void decodeMultiple_skipsMaskedCodes() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-1", 20, 20, 180, 180);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-2", 420, 20, 180, 180);
+        byte[] original = frame.clone();
+
+        List<Result> results = new FrameDecoder().decodeMultiple(new PreviewFrame(frame, WIDTH, HEIGHT, 0),
+                new FrameRegion(0, 0, WIDTH, 240), Arrays.asList(new FrameRegion(0, 0, 220, 220)));
+
+        assertEquals(1, results.size());
+        assertEquals("PALLET-2", results.get(0).getText());
+        // the masked area is painted over in a copy, never in the camera buffer
+        assertArrayEquals(original, frame);
+    }
+
+    @Test
+    public void decodeMultiple_readsPaddedBuffers() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-1", 20, 20, 180, 180);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-2", 420, 20, 180, 180);
+
+        List<Result> results = new FrameDecoder().decodeMultiple(
+                new PreviewFrame(padded(frame, WIDTH + 64), WIDTH, HEIGHT, WIDTH + 64, 0, null), null, null);
+
+        assertEquals(2, results.size());
+    }
+
+    private static void assertInside(Result result, int left, int top, int right, int bottom) {
+        assertNotNull(result);
+        for (ResultPoint point : result.getResultPoints()) {
+            assertTrue(result.getText() + " " + point, point.getX() >= left && point.getX() <= right
+                    && point.getY() >= top && point.getY() <= bottom);
+        }
+    }
+
+    private static void assertDecodesInEveryOrientation(BarcodeFormat format, String contents) throws Exception {
+        for (int degrees : ANGLES) {
+            boolean swap = degrees % 180 != 0;
+            int uprightWidth = swap ? HEIGHT : WIDTH;
+            int uprightHeight = swap ? WIDTH : HEIGHT;
+            byte[] upright = SyntheticFrames.render(format, contents, uprightWidth, uprightHeight);
+            byte[] sensor = toSensor(upright, uprightWidth, uprightHeight, degrees);
+            PreviewFrame[] frames = {new PreviewFrame(sensor, WIDTH, HEIGHT, degrees),
+                    new PreviewFrame(padded(sensor, WIDTH + 64), WIDTH, HEIGHT, WIDTH + 64, degrees, null)};
+            FrameRegion region = new FrameRegion(uprightWidth / 8, uprightHeight / 8,
+                    uprightWidth * 3 / 4, uprightHeight * 3 / 4);
+
+            for (PreviewFrame frame : frames) {
+                for (boolean rotationFree : new boolean[]{false, true}) {
+                    for (boolean cropBeforeRotate : new boolean[]{false, true}) {
+                        FrameDecoder decoder = new FrameDecoder();
+                        decoder.setAdaptiveDecoding(1, 1, false);
+                        decoder.setRotationFreeDecoding(rotationFree);
+                        decoder.setCropBeforeRotate(cropBeforeRotate);
+                        String message = format + " @" + degrees + (rotationFree ? " rotation free" : "")
+                                + (cropBeforeRotate ? " crop first" : "")
+                                + (frame.getData() == null ? " from buffer" : "");
+                        Result result = decoder.decode(frame, region);
+                        assertNotNull(message, result);
+                        assertEquals(message, contents, result.getText());
+                    }
+                }
+            }
+        }
+    }
+
+    // a direct buffer with rows rowStride apart, the last one unpadded as in camera2 planes
+    private static ByteBuffer padded(byte[] data, int rowStride) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((HEIGHT - 1) * rowStride + WIDTH);
+        for (int y = 0; y < HEIGHT; y++) {
+            buffer.position(y * rowStride);
+            buffer.put(data, y * WIDTH, WIDTH);
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    // turns an upright frame back into what a sensor needing a clockwise turn of degrees delivers
+    private static byte[] toSensor(byte[] upright, int width, int height, int degrees) {
+        byte[] sensor = new byte[upright.length];
+        FrameRotator.rotate(upright, width, height, (360 - degrees) % 360, sensor);
+        for (int i = width * height; i < sensor.length; i++) {
+            sensor[i] = (byte) 128;
+        }
+        return sensor;
+    }
+}
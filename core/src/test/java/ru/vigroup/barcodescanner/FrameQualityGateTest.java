@@ -0,0 +1,103 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameQualityGateTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+    private static final FrameRegion REGION = new FrameRegion(80, 60, 480, 360);
+
+    @Test
+    public void shouldDecode_skipsBlurredFrames() throws Exception {
+        byte[] sharp = SyntheticFrames.render(BarcodeFormat.QR_CODE, "https://example.com", WIDTH, HEIGHT);
+        FrameQualityGate gate = new FrameQualityGate();
+        assertTrue(gate.shouldDecode(frame(sharp), REGION));
+        assertTrue(gate.shouldDecode(frame(sharp), REGION));
+
+        assertFalse(gate.shouldDecode(frame(blur(sharp, 4)), REGION));
+        assertEquals(1, gate.getBlurredFrameCount());
+        assertEquals(2, gate.getDecodedFrameCount());
+    }
+
+    @Test
+    public void shouldDecode_skipsFramesThatMoved() throws Exception {
+        byte[] sharp = SyntheticFrames.render(BarcodeFormat.QR_CODE, "https://example.com", WIDTH, HEIGHT);
+        FrameQualityGate gate = new FrameQualityGate();
+        assertTrue(gate.shouldDecode(frame(sharp), REGION));
+
+        assertFalse(gate.shouldDecode(frame(shift(sharp, 37)), REGION));
+        assertEquals(1, gate.getMovingFrameCount());
+        assertTrue(gate.getLastMotion() > FrameQualityGate.DEFAULT_MOTION_THRESHOLD);
+    }
+
+    @Test
+    public void shouldDecode_decodesAfterTooManySkips() throws Exception {
+        byte[] sharp = SyntheticFrames.render(BarcodeFormat.QR_CODE, "https://example.com", WIDTH, HEIGHT);
+        byte[] blurred = blur(sharp, 4);
+        FrameQualityGate gate = new FrameQualityGate(0.6f, 8f, 2);
+        assertTrue(gate.shouldDecode(frame(sharp), REGION));
+
+        assertFalse(gate.shouldDecode(frame(blurred), REGION));
+        assertFalse(gate.shouldDecode(frame(blurred), REGION));
+        assertTrue(gate.shouldDecode(frame(blurred), REGION));
+        assertEquals(2, gate.getSkippedFrameCount());
+    }
+
+    @Test
+    public void shouldDecode_adaptsToTheScene() throws Exception {
+        byte[] blurred = blur(SyntheticFrames.render(BarcodeFormat.QR_CODE, "https://example.com", WIDTH, HEIGHT), 4);
+        FrameQualityGate gate = new FrameQualityGate();
+        // a scene that is never sharper than this is not held against a sharper one
+        for (int i = 0; i < 10; i++) {
+            assertTrue(gate.shouldDecode(frame(blurred), REGION));
+        }
+        assertEquals(0, gate.getSkippedFrameCount());
+    }
+
+    private static PreviewFrame frame(byte[] data) {
+        return new PreviewFrame(data, WIDTH, HEIGHT, 0);
+    }
+
+    // horizontal and vertical box blur of the luminance plane
+    private static byte[] blur(byte[] frame, int radius) {
+        byte[] horizontal = frame.clone();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int i = Math.max(0, x - radius); i <= Math.min(WIDTH - 1, x + radius); i++) {
+                    sum += frame[y * WIDTH + i] & 0xFF;
+                    count++;
+                }
+                horizontal[y * WIDTH + x] = (byte) (sum / count);
+            }
+        }
+        byte[] result = horizontal.clone();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int sum = 0;
+                int count = 0;
+                for (int i = Math.max(0, y - radius); i <= Math.min(HEIGHT - 1, y + radius); i++) {
+                    sum += horizontal[i * WIDTH + x] & 0xFF;
+                    count++;
+                }
+                result[y * WIDTH + x] = (byte) (sum / count);
+            }
+        }
+        return result;
+    }
+
+    private static byte[] shift(byte[] frame, int dx) {
+        byte[] result = frame.clone();
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(frame, y * WIDTH, result, y * WIDTH + dx, WIDTH - dx);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FrameRecordingTest {
+    private static final long MILLIS = 1000000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void recordAndReplay_roundTripsFrames() throws Exception {
+        byte[] data = Arrays.copyOf(SyntheticFrames.blank(8, 4), 8 * 4);
+        data[5] = 17;
+        data[31] = 99;
+        // the same pixels behind a padded row stride
+        ByteBuffer padded = ByteBuffer.allocateDirect(12 * 4);
+        for (int y = 0; y < 4; y++) {
+            padded.position(y * 12);
+            padded.put(data, y * 8, 8);
+        }
+        padded.clear();
+        File file = mFolder.newFile("frames.bsrf");
+
+        FrameRecorder recorder = new FrameRecorder(file);
+        recorder.record(new PreviewFrame(data, 8, 4, 90), new FrameRegion(1, 2, 3, 4), 5 * MILLIS);
+        recorder.record(new PreviewFrame(padded, 8, 4, 12, 0, null), null, 38 * MILLIS);
+        recorder.close();
+
+        FrameReplay replay = new FrameReplay(file);
+        assertEquals(2, replay.getFrameCount());
+        FrameReplay.Entry first = replay.getEntry(0);
+        assertEquals(90, first.getFrame().getOrientation());
+        assertEquals(5 * MILLIS, first.getTimestampNanos());
+        assertEquals(new FrameRegion(1, 2, 3, 4), first.getRegion());
+        assertArrayEquals(data, toArray(first.getFrame()));
+        FrameReplay.Entry second = replay.getEntry(1);
+        assertNull(second.getRegion());
+        assertEquals(8, second.getFrame().getRowStride());
+        assertArrayEquals(data, toArray(second.getFrame()));
+        replay.close();
+    }
+
+    @Test
+    public void replay_decodesAndReportsLatency() throws Exception {
+        byte[] blank = SyntheticFrames.blank(640, 480);
+        byte[] label = SyntheticFrames.blank(640, 480);
+        SyntheticFrames.draw(label, 640, BarcodeFormat.QR_CODE, "https://example.com/item/42", 200, 120, 240, 240);
+        File file = mFolder.newFile("frames.bsrf");
+        FrameRecorder recorder = new FrameRecorder(file);
+        recorder.record(new PreviewFrame(blank, 640, 480, 0), new FrameRegion(160, 80, 320, 320), 10 * MILLIS);
+        recorder.record(new PreviewFrame(label, 640, 480, 0), new FrameRegion(160, 80, 320, 320), 110 * MILLIS);
+        recorder.close();
+
+        FrameDecoder decoder = new FrameDecoder();
+        ScanMetrics viewMetrics = new ScanMetrics();
+        decoder.setScanMetrics(viewMetrics);
+        FrameReplay replay = new FrameReplay(file);
+        FrameReplay.Report report = replay.replay(decoder);
+        replay.close();
+
+        // the replay has its own metrics and leaves the decoder's alone
+        assertSame(viewMetrics, decoder.getScanMetrics());
+        assertEquals(0, viewMetrics.getFramesDecoded());
+
+        assertNull(report.getResult(0));
+        assertNotNull(report.getResult(1));
+        assertEquals("https://example.com/item/42", report.getResult(1).getText());
+        assertEquals(1, report.getResultCount());
+        assertEquals(2, report.getFrameLatencies().getCount());
+        assertEquals(2, report.getScanMetrics().getFramesDecoded());
+        // the second frame plus its decode time
+        long timeToFirstResult = report.getTimeToFirstResultMillis();
+        assertEquals(timeToFirstResult, report.getScanMetrics().getTimeToFirstResultMillis());
+        assertEquals(100, timeToFirstResult, report.getFrameLatencies().getMax() / 1000 + 1);
+    }
+
+    @Test
+    public void recorder_appendsAndReplaySkipsTruncatedRecord() throws Exception {
+        byte[] data = SyntheticFrames.blank(8, 4);
+        File file = mFolder.newFile("frames.bsrf");
+        FrameRecorder recorder = new FrameRecorder(file);
+        recorder.record(new PreviewFrame(data, 8, 4, 0), null, 1);
+        recorder.close();
+        recorder = new FrameRecorder(file);
+        recorder.record(new PreviewFrame(data, 8, 4, 0), null, 2);
+        recorder.close();
+        // a crash in the middle of the third frame
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        output.setLength(output.length() + FrameRecorder.RECORD_HEADER_SIZE + 10);
+        output.seek(output.length() - FrameRecorder.RECORD_HEADER_SIZE - 10);
+        output.writeInt(8);
+        output.writeInt(4);
+        output.close();
+
+        FrameReplay replay = new FrameReplay(file);
+        assertEquals(2, replay.getFrameCount());
+        assertEquals(2, replay.getEntry(1).getTimestampNanos());
+        replay.close();
+    }
+
+    @Test
+    public void replay_stopsAtACorruptRecordHeader() throws Exception {
+        File file = mFolder.newFile("frames.bsrf");
+        FrameRecorder recorder = new FrameRecorder(file);
+        recorder.record(new PreviewFrame(SyntheticFrames.blank(8, 4), 8, 4, 0), null, 1);
+        recorder.close();
+        // a negative width would make the record end before it starts
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        output.seek(output.length());
+        output.writeInt(-8);
+        output.writeInt(4);
+        output.write(new byte[FrameRecorder.RECORD_HEADER_SIZE - 8 + 64]);
+        output.close();
+
+        FrameReplay replay = new FrameReplay(file);
+        assertEquals(1, replay.getFrameCount());
+        replay.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void replay_rejectsOtherFiles() throws Exception {
+        File file = mFolder.newFile("image.png");
+        FileOutputStream output = new FileOutputStream(file);
+        output.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10, 0, 0});
+        output.close();
+        new FrameReplay(file);
+    }
+
+    private static byte[] toArray(PreviewFrame frame) {
+        ByteBuffer buffer = frame.getBuffer().duplicate();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+}
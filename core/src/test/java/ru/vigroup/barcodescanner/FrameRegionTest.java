@@ -0,0 +1,45 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameRegionTest {
+    @Test
+    public void fromView_scalesToFrame() throws Exception {
+        FrameRegion region = FrameRegion.fromView(60, 90, 1020, 810, 1080, 1920, 480, 640);
+        assertEquals(new FrameRegion(26, 30, 427, 240), region);
+    }
+
+    @Test
+    public void toSensor_coversTheSamePixels() throws Exception {
+        int width = 64;
+        int height = 48;
+        byte[] frame = new byte[width * height];
+        new Random(7).nextBytes(frame);
+        FrameRegion upright = new FrameRegion(5, 9, 21, 13);
+        for (int degrees : new int[]{0, 90, 180, 270}) {
+            byte[] expected = new byte[upright.getWidth() * upright.getHeight()];
+            FrameRotator.rotate(frame, width, height, degrees, upright.getLeft(), upright.getTop(),
+                    upright.getWidth(), upright.getHeight(), expected);
+
+            FrameRegion sensor = upright.toSensor(width, height, degrees);
+            byte[] actual = new RotatedLuminanceSource(frame, width, height, sensor.getLeft(), sensor.getTop(),
+                    sensor.getWidth(), sensor.getHeight(), degrees).getMatrix();
+            assertArrayEquals("@" + degrees, expected, actual);
+        }
+    }
+
+    @Test
+    public void fitsWithin_rejectsRegionsOutsideTheFrame() throws Exception {
+        assertTrue(new FrameRegion(0, 0, 640, 480).fitsWithin(640, 480));
+        assertFalse(new FrameRegion(1, 0, 640, 480).fitsWithin(640, 480));
+        assertFalse(new FrameRegion(-1, 0, 10, 10).fitsWithin(640, 480));
+        assertFalse(new FrameRegion(0, 0, 0, 10).fitsWithin(640, 480));
+    }
+}
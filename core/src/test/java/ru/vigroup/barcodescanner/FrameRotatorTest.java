@@ -0,0 +1,112 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class FrameRotatorTest {
+    private static final int[][] SIZES = {{1, 1}, {7, 5}, {33, 65}, {64, 64}, {97, 31}, {640, 480}};
+    private static final int[] ANGLES = {0, 90, 180, 270};
+
+    @Test
+    public void rotate_matchesReferenceRotation() throws Exception {
+        for (int[] size : SIZES) {
+            byte[] frame = syntheticNv21(size[0], size[1]);
+            for (int degrees : ANGLES) {
+                byte[] expected = referenceRotate(frame, size[0], size[1], degrees);
+                byte[] actual = new byte[size[0] * size[1]];
+                FrameRotator.rotate(frame, size[0], size[1], degrees, actual);
+                assertArrayEquals(size[0] + "x" + size[1] + " @" + degrees, expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void rotateCrop_matchesCropOfRotatedFrame() throws Exception {
+        int width = 640;
+        int height = 480;
+        byte[] frame = syntheticNv21(width, height);
+        int[][] crops = {{0, 0, 1, 1}, {13, 29, 101, 77}, {40, 60, 400, 240}, {0, 0, 480, 480}};
+        for (int degrees : ANGLES) {
+            boolean swap = degrees % 180 != 0;
+            int rotatedWidth = swap ? height : width;
+            byte[] rotated = referenceRotate(frame, width, height, degrees);
+            for (int[] crop : crops) {
+                byte[] expected = crop(rotated, rotatedWidth, crop[0], crop[1], crop[2], crop[3]);
+                byte[] actual = new byte[crop[2] * crop[3]];
+                FrameRotator.rotate(frame, width, height, degrees, crop[0], crop[1], crop[2], crop[3], actual);
+                assertArrayEquals(degrees + " " + crop[0] + "," + crop[1], expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void rotate_ignoresChromaPlane() throws Exception {
+        int width = 48;
+        int height = 32;
+        byte[] frame = syntheticNv21(width, height);
+        byte[] grey = frame.clone();
+        for (int i = width * height; i < grey.length; i++) {
+            grey[i] = (byte) 128;
+        }
+        for (int degrees : ANGLES) {
+            byte[] expected = new byte[width * height];
+            byte[] actual = new byte[width * height];
+            FrameRotator.rotate(grey, width, height, degrees, expected);
+            FrameRotator.rotate(frame, width, height, degrees, actual);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotate_rejectsCropOutsideRotatedFrame() throws Exception {
+        // 640 wide in sensor orientation means only 480 wide after a quarter turn
+        FrameRotator.rotate(new byte[640 * 480], 640, 480, 90, 0, 0, 640, 10, new byte[6400]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotate_rejectsArbitraryAngles() throws Exception {
+        FrameRotator.rotate(new byte[4], 2, 2, 45, new byte[4]);
+    }
+
+    private static byte[] syntheticNv21(int width, int height) {
+        byte[] frame = new byte[width * height * 3 / 2 + 1];
+        new Random(width * 31 + height).nextBytes(frame);
+        return frame;
+    }
+
+    // Clockwise rotation about the centre of the frame, one pixel at a time.
+    private static byte[] referenceRotate(byte[] src, int width, int height, int degrees) {
+        byte[] dst = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                byte pixel = src[y * width + x];
+                switch (degrees) {
+                    case 0:
+                        dst[y * width + x] = pixel;
+                        break;
+                    case 90:
+                        dst[x * height + (height - 1 - y)] = pixel;
+                        break;
+                    case 180:
+                        dst[(height - 1 - y) * width + (width - 1 - x)] = pixel;
+                        break;
+                    case 270:
+                        dst[(width - 1 - x) * height + y] = pixel;
+                        break;
+                }
+            }
+        }
+        return dst;
+    }
+
+    private static byte[] crop(byte[] src, int width, int left, int top, int cropWidth, int cropHeight) {
+        byte[] dst = new byte[cropWidth * cropHeight];
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(src, (top + y) * width + left, dst, y * cropWidth, cropWidth);
+        }
+        return dst;
+    }
+}
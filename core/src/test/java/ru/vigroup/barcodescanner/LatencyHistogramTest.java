@@ -0,0 +1,54 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void getValueAtPercentile_isExactForSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(5.5, histogram.getMean(), 0.001);
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void getValueAtPercentile_staysWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100);
+        }
+
+        long p90 = histogram.getValueAtPercentile(90);
+        assertTrue(String.valueOf(p90), p90 >= 90000 && p90 <= 90000 + 90000 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void bucketOf_coversEveryValue() {
+        for (long value : new long[]{0, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = LatencyHistogram.bucketOf(value);
+            assertTrue(value + " in " + bucket, bucket == LatencyHistogram.bucketOf(Long.MAX_VALUE)
+                    || LatencyHistogram.upperBoundOf(bucket) >= value
+                    && (bucket == 0 || LatencyHistogram.upperBoundOf(bucket - 1) < value));
+        }
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+}
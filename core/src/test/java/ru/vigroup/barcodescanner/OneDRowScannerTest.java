@@ -0,0 +1,58 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class OneDRowScannerTest {
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    @Test
+    public void decode_findsCodesThroughTheCentre() throws Exception {
+        OneDRowScanner scanner = new OneDRowScanner(FrameDecoder.ALL_FORMATS, OneDRowScanner.DEFAULT_ROW_COUNT);
+        assertDecodes(scanner, BarcodeFormat.EAN_13, "4006381333931");
+        assertDecodes(scanner, BarcodeFormat.CODE_128, "PALLET-000123");
+        assertDecodes(scanner, BarcodeFormat.UPC_A, "036000291452");
+    }
+
+    @Test
+    public void decode_ignoresFormatsThatAreNotConfigured() throws Exception {
+        OneDRowScanner scanner = new OneDRowScanner(Arrays.asList(BarcodeFormat.EAN_13), 3);
+        assertNull(scanner.decode(bitmap(BarcodeFormat.CODE_128, "PALLET-000123")));
+    }
+
+    @Test
+    public void decode_missesTwoDimensionalCodes() throws Exception {
+        OneDRowScanner scanner = new OneDRowScanner(FrameDecoder.ALL_FORMATS, OneDRowScanner.DEFAULT_ROW_COUNT);
+        assertNull(scanner.decode(bitmap(BarcodeFormat.QR_CODE, "https://example.com")));
+    }
+
+    @Test
+    public void getOneDFormats_dropsTwoDimensionalFormats() throws Exception {
+        assertEquals(10, OneDRowScanner.getOneDFormats(FrameDecoder.ALL_FORMATS).size());
+    }
+
+    private static void assertDecodes(OneDRowScanner scanner, BarcodeFormat format, String contents) throws Exception {
+        Result result = scanner.decode(bitmap(format, contents));
+        assertNotNull(format.toString(), result);
+        assertEquals(format, result.getBarcodeFormat());
+        assertEquals(contents, result.getText());
+    }
+
+    private static BinaryBitmap bitmap(BarcodeFormat format, String contents) throws Exception {
+        byte[] frame = SyntheticFrames.render(format, contents, WIDTH, HEIGHT);
+        return new BinaryBitmap(new HybridBinarizer(
+                new PlanarYUVLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, false)));
+    }
+}
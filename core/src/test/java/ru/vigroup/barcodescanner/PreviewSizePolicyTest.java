@@ -0,0 +1,81 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PreviewSizePolicyTest {
+    private static final List<int[]> SIZES = Arrays.asList(
+            new int[]{1920, 1080}, new int[]{1280, 720}, new int[]{1024, 768},
+            new int[]{800, 600}, new int[]{640, 480}, new int[]{320, 240});
+
+    @Test
+    public void chooseSize_picksSmallestKeepingModulesWide() {
+        // portrait 1440p phone, framing rect 7/8 of the width
+        int[] size = new PreviewSizePolicy().chooseSize(SIZES, 90, 1440, 2560, 1260);
+
+        assertArrayEquals(new int[]{800, 600}, size);
+    }
+
+    @Test
+    public void chooseSize_followsDecodeWidth() {
+        PreviewSizePolicy policy = new PreviewSizePolicy(600, 2f, 160, 10, 30);
+
+        assertArrayEquals(new int[]{1280, 720}, policy.chooseSize(SIZES, 90, 1440, 2560, 1260));
+    }
+
+    @Test
+    public void chooseSize_prefersMatchingAspect() {
+        // a 4:3 view wastes no pixels on a 4:3 preview, 640x480 is enough
+        int[] size = new PreviewSizePolicy().chooseSize(SIZES, 0, 1600, 1200, 1000);
+
+        assertArrayEquals(new int[]{640, 480}, size);
+    }
+
+    @Test
+    public void chooseSize_fallsBackToWidestFraming() {
+        PreviewSizePolicy policy = new PreviewSizePolicy(5000, 2f, 160, 10, 30);
+
+        assertArrayEquals(new int[]{1920, 1080}, policy.chooseSize(SIZES, 90, 1440, 2560, 1260));
+        assertNull(policy.chooseSize(Arrays.<int[]>asList(), 90, 1440, 2560, 1260));
+    }
+
+    @Test
+    public void getFramingWidth_scalesToCoverView() {
+        assertEquals(480f, PreviewSizePolicy.getFramingWidth(640, 480, 90, 960, 1280, 960), 0.001f);
+        // a 16:9 frame covering a 4:3 view is cropped at the sides
+        assertEquals(360f, PreviewSizePolicy.getFramingWidth(1280, 720, 0, 1600, 1200, 600), 0.001f);
+    }
+
+    @Test
+    public void chooseFpsRange_prefersHighestMaxWithSteadyMin() {
+        List<int[]> ranges = Arrays.asList(new int[]{7500, 30000}, new int[]{15000, 30000},
+                new int[]{30000, 30000}, new int[]{30000, 60000}, new int[]{5000, 15000});
+
+        assertArrayEquals(new int[]{15000, 30000}, new PreviewSizePolicy().chooseFpsRange(ranges, 1000));
+    }
+
+    @Test
+    public void chooseFpsRange_toleratesLowMinWhenNothingElse() {
+        List<int[]> ranges = Arrays.asList(new int[]{5, 30}, new int[]{7, 30}, new int[]{15, 24});
+
+        assertArrayEquals(new int[]{7, 30}, new PreviewSizePolicy().chooseFpsRange(ranges, 1));
+    }
+
+    @Test
+    public void chooseFpsRange_takesLowestMaxAboveLimit() {
+        List<int[]> ranges = Arrays.asList(new int[]{30, 120}, new int[]{30, 60});
+
+        assertArrayEquals(new int[]{30, 60}, new PreviewSizePolicy().chooseFpsRange(ranges, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMinFpsAboveMax() {
+        new PreviewSizePolicy(0, 2f, 160, 30, 15);
+    }
+}
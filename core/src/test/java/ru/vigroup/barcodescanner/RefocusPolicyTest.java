@@ -0,0 +1,82 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RefocusPolicyTest {
+    @Test
+    public void onFrame_requestsFocusWhenSharpnessDrops() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        assertFalse(policy.onFrame(100f, 10));
+        assertFalse(policy.onFrame(100f, 20));
+
+        assertFalse(policy.onFrame(20f, 30));
+        assertFalse(policy.onFrame(20f, 40));
+        assertTrue(policy.onFrame(20f, 50));
+    }
+
+    @Test
+    public void onFrame_ignoresSingleSoftFrames() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        for (int i = 1; i <= 30; i++) {
+            assertFalse(policy.onFrame(i % 2 == 0 ? 20f : 100f, i * 10));
+        }
+    }
+
+    @Test
+    public void onFrame_requestsFocusWhenDecodingStalls() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        assertFalse(policy.onFrame(100f, RefocusPolicy.DEFAULT_STALL_MILLIS));
+        assertTrue(policy.onFrame(100f, RefocusPolicy.DEFAULT_STALL_MILLIS + 1));
+    }
+
+    @Test
+    public void onFrame_stallsOnlyWithoutSharpness() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        for (int i = 1; i <= 10; i++) {
+            assertFalse(policy.onFrame(Float.NaN, i * 10));
+        }
+        assertTrue(policy.onFrame(Float.NaN, RefocusPolicy.DEFAULT_STALL_MILLIS + 1));
+    }
+
+    @Test
+    public void onResult_postponesStall() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        policy.onResult(2000);
+        assertFalse(policy.onFrame(100f, RefocusPolicy.DEFAULT_STALL_MILLIS + 1));
+        assertTrue(policy.onFrame(100f, 2000 + RefocusPolicy.DEFAULT_STALL_MILLIS + 1));
+    }
+
+    @Test
+    public void onFrame_keepsRequestsApart() {
+        RefocusPolicy policy = new RefocusPolicy(0.5f, 100, 1000);
+        policy.reset(0);
+        assertTrue(policy.onFrame(Float.NaN, 101));
+        assertFalse(policy.onFrame(Float.NaN, 500));
+        assertFalse(policy.onFrame(Float.NaN, 1000));
+        assertTrue(policy.onFrame(Float.NaN, 1101));
+    }
+
+    @Test
+    public void onFocusFinished_forgetsPeakSharpness() {
+        RefocusPolicy policy = new RefocusPolicy();
+        policy.reset(0);
+        assertFalse(policy.onFrame(100f, 10));
+        policy.onFocusFinished(20);
+        for (int i = 3; i <= 10; i++) {
+            assertFalse(policy.onFrame(20f, i * 10));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsDropAboveOne() {
+        new RefocusPolicy(1.5f, 3000, 1000);
+    }
+}
@@ -0,0 +1,39 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultDeduplicatorTest {
+    @Test
+    public void shouldReport_suppressesCodeHeldInView() throws Exception {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000, 8);
+        assertTrue(deduplicator.shouldReport("4600000000000", BarcodeFormat.EAN_13, 0));
+        assertFalse(deduplicator.shouldReport("4600000000000", BarcodeFormat.EAN_13, 800));
+        // still in view, every sighting restarts the window
+        assertFalse(deduplicator.shouldReport("4600000000000", BarcodeFormat.EAN_13, 1600));
+        assertTrue(deduplicator.shouldReport("4600000000000", BarcodeFormat.EAN_13, 2700));
+    }
+
+    @Test
+    public void shouldReport_distinguishesFormats() throws Exception {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000, 8);
+        assertTrue(deduplicator.shouldReport("12345", BarcodeFormat.CODE_128, 0));
+        assertTrue(deduplicator.shouldReport("12345", BarcodeFormat.CODE_39, 0));
+    }
+
+    @Test
+    public void shouldReport_evictsLeastRecentlySeen() throws Exception {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000, 2);
+        assertTrue(deduplicator.shouldReport("a", BarcodeFormat.QR_CODE, 0));
+        assertTrue(deduplicator.shouldReport("b", BarcodeFormat.QR_CODE, 1));
+        assertFalse(deduplicator.shouldReport("a", BarcodeFormat.QR_CODE, 2));
+        assertTrue(deduplicator.shouldReport("c", BarcodeFormat.QR_CODE, 3));
+        // "b" was the least recently seen and got evicted
+        assertTrue(deduplicator.shouldReport("b", BarcodeFormat.QR_CODE, 4));
+        assertFalse(deduplicator.shouldReport("c", BarcodeFormat.QR_CODE, 5));
+    }
+}
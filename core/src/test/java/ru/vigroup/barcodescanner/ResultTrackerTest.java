@@ -0,0 +1,82 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static ru.vigroup.barcodescanner.SyntheticFrames.qr;
+
+public class ResultTrackerTest {
+    @Test
+    public void update_reportsEachCodeOnceWhileInView() throws Exception {
+        ResultTracker tracker = new ResultTracker(1000, 300, 0.75f);
+        assertEquals(2, tracker.update(Arrays.asList(qr("A", 0, 0), qr("B", 200, 0)), 0).size());
+        // both moved a little
+        assertTrue(tracker.update(Arrays.asList(qr("A", 20, 10), qr("B", 190, 5)), 100).isEmpty());
+        assertEquals(2, tracker.getTrackCount(100));
+    }
+
+    @Test
+    public void update_tellsIdenticalCodesApartByPosition() throws Exception {
+        ResultTracker tracker = new ResultTracker();
+        assertEquals(1, tracker.update(Arrays.asList(qr("SKU", 0, 0)), 0).size());
+        List<Result> results = tracker.update(Arrays.asList(qr("SKU", 0, 0), qr("SKU", 300, 0)), 10);
+        assertEquals(1, results.size());
+        assertEquals(300f, results.get(0).getResultPoints()[0].getX(), 0);
+    }
+
+    @Test
+    public void update_reportsAgainAfterTtl() throws Exception {
+        ResultTracker tracker = new ResultTracker(1000, 300, 0.75f);
+        tracker.update(Arrays.asList(qr("A", 0, 0)), 0);
+        assertTrue(tracker.update(Arrays.asList(qr("A", 0, 0)), 900).isEmpty());
+        assertTrue(tracker.update(Arrays.asList(qr("A", 0, 0)), 1800).isEmpty());
+        assertEquals(1, tracker.update(Arrays.asList(qr("A", 0, 0)), 2801).size());
+    }
+
+    @Test
+    public void match_leavesNewCodesUnreportedUntilCommitted() throws Exception {
+        ResultTracker tracker = new ResultTracker(1000, 300, 0.75f);
+        assertEquals(1, tracker.match(Arrays.asList(qr("A", 0, 0)), 0).size());
+        // not delivered, e.g. while scanning was paused, so still new in the next frame
+        List<Result> unmatched = tracker.match(Arrays.asList(qr("A", 10, 0)), 100);
+        assertEquals(1, unmatched.size());
+        assertTrue(tracker.getMaskRegions(100).isEmpty());
+
+        assertEquals(1, tracker.commit(unmatched, 100).size());
+        // a second frame matched before the first commit is not reported twice
+        assertTrue(tracker.commit(unmatched, 110).isEmpty());
+        assertTrue(tracker.match(Arrays.asList(qr("A", 20, 0)), 200).isEmpty());
+    }
+
+    @Test
+    public void getMaskRegions_coversRecentCodesOnly() throws Exception {
+        ResultTracker tracker = new ResultTracker(1000, 300, 0.75f);
+        tracker.update(Arrays.asList(qr("A", 100, 100)), 0);
+
+        List<FrameRegion> masks = tracker.getMaskRegions(200);
+        assertEquals(1, masks.size());
+        FrameRegion mask = masks.get(0);
+        assertTrue(mask.toString(), mask.getLeft() < 100 && mask.getTop() < 100
+                && mask.getRight() > 200 && mask.getBottom() > 200);
+        assertTrue(tracker.getMaskRegions(301).isEmpty());
+    }
+
+    @Test
+    public void getMaskRegions_widensOneDimensionalCodes() throws Exception {
+        ResultTracker tracker = new ResultTracker();
+        Result oneD = new Result("123", null, new ResultPoint[]{new ResultPoint(100, 50), new ResultPoint(300, 50)},
+                BarcodeFormat.CODE_128);
+        tracker.update(Arrays.asList(oneD), 0);
+
+        FrameRegion mask = tracker.getMaskRegions(0).get(0);
+        assertTrue(mask.toString(), mask.getHeight() >= 100);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.vigroup.barcodescanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static ru.vigroup.barcodescanner.SyntheticFrames.qr;
+
+public class RoiTrackerTest {
+    private static final FrameRegion FRAMING = new FrameRegion(0, 0, 1000, 800);
+
+    @Test
+    public void predict_cropsAroundTheLastCode() throws Exception {
+        RoiTracker tracker = new RoiTracker();
+        assertNull(tracker.predict(FRAMING, 0));
+        tracker.update(null, qr("A", 400, 300), 0);
+
+        FrameRegion roi = tracker.predict(FRAMING, 30);
+        assertNotNull(roi);
+        assertTrue(roi.toString(), roi.getLeft() <= 350 && roi.getTop() <= 250
+                && roi.getRight() >= 550 && roi.getBottom() >= 450);
+        // a fraction of the framing rect
+        assertTrue(roi.toString(), roi.getWidth() * roi.getHeight() <= 1000 * 800 / 8);
+    }
+
+    @Test
+    public void predict_followsTheVelocity() throws Exception {
+        RoiTracker tracker = new RoiTracker();
+        tracker.update(null, qr("A", 100, 300), 0);
+        tracker.update(null, qr("A", 130, 300), 30);
+        tracker.update(null, qr("A", 160, 300), 60);
+
+        FrameRegion roi = tracker.predict(FRAMING, 90);
+        // the code moves a pixel per millisecond, its centre should be ahead of 210
+        float centre = (roi.getLeft() + roi.getRight()) / 2f;
+        assertTrue(roi.toString(), centre > 215 && centre <= 240);
+        assertEquals(350, (roi.getTop() + roi.getBottom()) / 2f, 1);
+    }
+
+    @Test
+    public void predict_fallsBackAfterMissesAndTimeouts() throws Exception {
+        RoiTracker tracker = new RoiTracker(0.5f, 2, 500, 100);
+        tracker.update(null, qr("A", 400, 300), 0);
+        FrameRegion roi = tracker.predict(FRAMING, 10);
+        tracker.update(roi, null, 10);
+        roi = tracker.predict(FRAMING, 20);
+        tracker.update(roi, null, 20);
+        assertNull(tracker.predict(FRAMING, 30));
+        assertEquals(2, tracker.getMissCount());
+
+        // found again in the framing rect
+        tracker.update(null, qr("A", 420, 300), 40);
+        roi = tracker.predict(FRAMING, 50);
+        assertNotNull(roi);
+        tracker.update(roi, qr("A", 420, 300), 50);
+        assertEquals(1, tracker.getHitCount());
+        assertNull(tracker.predict(FRAMING, 551));
+    }
+
+    @Test
+    public void predict_refreshesTheFramingRectPeriodically() throws Exception {
+        RoiTracker tracker = new RoiTracker(0.5f, 2, 500, 3);
+        tracker.update(null, qr("A", 400, 300), 0);
+        assertNotNull(tracker.predict(FRAMING, 1));
+        assertNotNull(tracker.predict(FRAMING, 2));
+        assertNull(tracker.predict(FRAMING, 3));
+        assertNotNull(tracker.predict(FRAMING, 4));
+    }
+
+    @Test
+    public void predict_skipsCropsThatSaveLittle() throws Exception {
+        RoiTracker tracker = new RoiTracker();
+        tracker.update(null, qr("A", 400, 300), 0);
+        // the code fills most of a small framing rect
+        assertNull(tracker.predict(new FrameRegion(350, 250, 200, 200), 10));
+        // or has left it
+        assertNull(tracker.predict(new FrameRegion(0, 0, 200, 200), 10));
+    }
+}
@@ -0,0 +1,101 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.LuminanceSource;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RotatedLuminanceSourceTest {
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int[] ANGLES = {0, 90, 180, 270};
+
+    @Test
+    public void getMatrix_matchesRotatedCrop() throws Exception {
+        byte[] frame = syntheticFrame();
+        for (int degrees : ANGLES) {
+            RotatedLuminanceSource source = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 10, 20, 70, 50, degrees);
+            assertArrayEquals("@" + degrees, expected(frame, 10, 20, 70, 50, degrees), source.getMatrix());
+        }
+    }
+
+    @Test
+    public void getRow_matchesMatrixRows() throws Exception {
+        byte[] frame = syntheticFrame();
+        for (int degrees : ANGLES) {
+            LuminanceSource source = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 5, 7, 33, 21, degrees);
+            byte[] matrix = source.getMatrix();
+            byte[] row = null;
+            for (int y = 0; y < source.getHeight(); y++) {
+                row = source.getRow(y, row);
+                int from = y * source.getWidth();
+                assertArrayEquals("@" + degrees + " row " + y,
+                        Arrays.copyOfRange(matrix, from, from + source.getWidth()),
+                        Arrays.copyOf(row, source.getWidth()));
+            }
+        }
+    }
+
+    @Test
+    public void rotateCounterClockwise_undoesQuarterTurn() throws Exception {
+        byte[] frame = syntheticFrame();
+        LuminanceSource source = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, 90);
+        LuminanceSource upright = source.rotateCounterClockwise();
+        assertEquals(WIDTH, upright.getWidth());
+        assertArrayEquals(expected(frame, 0, 0, WIDTH, HEIGHT, 0), upright.getMatrix());
+    }
+
+    @Test
+    public void crop_isRelativeToRotatedView() throws Exception {
+        byte[] frame = syntheticFrame();
+        for (int degrees : ANGLES) {
+            LuminanceSource source = new RotatedLuminanceSource(frame, WIDTH, HEIGHT, 0, 0, WIDTH, HEIGHT, degrees);
+            LuminanceSource cropped = source.crop(3, 4, 25, 17);
+            byte[] full = source.getMatrix();
+            byte[] expected = new byte[25 * 17];
+            for (int y = 0; y < 17; y++) {
+                System.arraycopy(full, (4 + y) * source.getWidth() + 3, expected, y * 25, 25);
+            }
+            assertArrayEquals("@" + degrees, expected, cropped.getMatrix());
+        }
+    }
+
+    private static byte[] syntheticFrame() {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        new Random(42).nextBytes(frame);
+        return frame;
+    }
+
+    private static byte[] expected(byte[] frame, int left, int top, int width, int height, int degrees) {
+        boolean swap = degrees % 180 != 0;
+        int rotatedLeft;
+        int rotatedTop;
+        switch (degrees) {
+            case 90:
+                rotatedLeft = HEIGHT - top - height;
+                rotatedTop = left;
+                break;
+            case 180:
+                rotatedLeft = WIDTH - left - width;
+                rotatedTop = HEIGHT - top - height;
+                break;
+            case 270:
+                rotatedLeft = top;
+                rotatedTop = WIDTH - left - width;
+                break;
+            default:
+                rotatedLeft = left;
+                rotatedTop = top;
+                break;
+        }
+        byte[] result = new byte[width * height];
+        FrameRotator.rotate(frame, WIDTH, HEIGHT, degrees, rotatedLeft, rotatedTop,
+                swap ? height : width, swap ? width : height, result);
+        return result;
+    }
+}
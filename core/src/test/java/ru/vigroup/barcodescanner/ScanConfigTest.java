@@ -0,0 +1,91 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ScanConfigTest {
+    @Test
+    public void versions_separateDecoderChangesFromFramingChanges() {
+        ScanConfig config = new ScanConfig();
+        assertEquals(FrameDecoder.ALL_FORMATS, config.getFormats());
+
+        ScanConfig framed = config.withFramingRect(100, 200, 500, 600, 1000, 800);
+        assertEquals(1, framed.getVersion());
+        assertEquals(0, framed.getDecoderVersion());
+        assertSame(framed, framed.withFramingRect(100, 200, 500, 600, 1000, 800));
+
+        ScanConfig qrOnly = framed.withFormats(Collections.singletonList(BarcodeFormat.QR_CODE));
+        assertEquals(2, qrOnly.getVersion());
+        assertEquals(2, qrOnly.getDecoderVersion());
+        ScanConfig resized = qrOnly.withPreviewSize(500, 400);
+        assertEquals(3, resized.getVersion());
+        assertEquals(2, resized.getDecoderVersion());
+        assertEquals(Collections.singletonList(BarcodeFormat.QR_CODE), resized.getFormats());
+    }
+
+    @Test
+    public void getFramingRegion_mapsTheViewRectToThePreview() {
+        ScanConfig config = new ScanConfig().withPreviewSize(500, 400);
+        assertNull(config.getFramingRegion());
+
+        config = config.withFramingRect(100, 200, 500, 600, 1000, 800);
+        assertEquals(new FrameRegion(50, 100, 200, 200), config.getFramingRegion());
+        assertEquals(new FrameRegion(100, 200, 400, 400), config.getFramingRegion(1000, 800));
+        assertNull(config.withoutFramingRect().getFramingRegion());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void withAdaptiveDecoding_rejectsInvalidSettingsOnTheCallingThread() {
+        new ScanConfig().withAdaptiveDecoding(0, 1, true);
+    }
+
+    @Test
+    public void frameDecoder_picksUpNewFormatsWhileWorkersDecode() throws Exception {
+        final byte[] frame = SyntheticFrames.blank(640, 480);
+        SyntheticFrames.draw(frame, 640, BarcodeFormat.QR_CODE, "PALLET-1", 200, 120, 240, 240);
+        final FrameDecoder decoder = new FrameDecoder(new AtomicReference<ScanConfig>(new ScanConfig()));
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] workers = new Thread[3];
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 20; j++) {
+                            decoder.decode(new PreviewFrame(frame, 640, 480, 0), null);
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            });
+            workers[i].start();
+        }
+        List<BarcodeFormat> oneD = Arrays.asList(BarcodeFormat.CODE_128, BarcodeFormat.EAN_13);
+        for (int i = 0; i < 20; i++) {
+            decoder.setFormats(i % 2 == 0 ? oneD : null);
+            Thread.sleep(2);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertNull(String.valueOf(failure.get()), failure.get());
+        decoder.setFormats(oneD);
+        assertEquals(oneD, decoder.getDecodeScheduler().getFormats());
+        assertNull(decoder.decode(new PreviewFrame(frame, 640, 480, 0), null));
+        decoder.setFormats(null);
+        assertNotNull(decoder.decode(new PreviewFrame(frame, 640, 480, 0), null));
+    }
+}
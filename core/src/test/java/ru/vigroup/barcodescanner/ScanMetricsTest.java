@@ -0,0 +1,64 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ScanMetricsTest {
+    private static final long MILLIS = 1000000L;
+
+    @Test
+    public void onFrameReceived_recordsIntervals() {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.onCameraStarted(1);
+        metrics.onFrameReceived(10 * MILLIS);
+        metrics.onFrameReceived(43 * MILLIS);
+        metrics.onFrameReceived(76 * MILLIS);
+
+        LatencyHistogram intervals = metrics.getHistogram(ScanMetrics.Stage.FRAME_INTERVAL);
+        assertEquals(2, intervals.getCount());
+        assertEquals(33000, intervals.getMean(), 1);
+        assertEquals(3, metrics.getFramesReceived());
+    }
+
+    @Test
+    public void onFrameDecoded_tracksSuccessAndFirstResult() {
+        ScanMetrics metrics = new ScanMetrics();
+        metrics.onCameraStarted(100 * MILLIS);
+        metrics.onFrameDecoded(false, 200 * MILLIS);
+        assertEquals(-1, metrics.getTimeToFirstResultMillis());
+
+        metrics.onFrameDecoded(true, 350 * MILLIS);
+        metrics.onFrameDecoded(true, 400 * MILLIS);
+        metrics.onFrameDecoded(false, 450 * MILLIS);
+
+        assertEquals(250, metrics.getTimeToFirstResultMillis());
+        assertEquals(0.5f, metrics.getSuccessRate(), 0.001f);
+        metrics.reset();
+        assertEquals(0, metrics.getFramesDecoded());
+        assertEquals(250, metrics.getTimeToFirstResultMillis());
+    }
+
+    @Test
+    public void frameDecoder_recordsStages() throws Exception {
+        byte[] upright = SyntheticFrames.blank(640, 480);
+        SyntheticFrames.draw(upright, 640, BarcodeFormat.QR_CODE, "https://example.com/item/42", 200, 120, 240, 240);
+        // a sensor needing a quarter turn delivers the frame rotated counter-clockwise
+        byte[] sensor = new byte[upright.length];
+        FrameRotator.rotate(upright, 640, 480, 270, sensor);
+        ScanMetrics metrics = new ScanMetrics();
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setScanMetrics(metrics);
+
+        assertNotNull(decoder.decode(new PreviewFrame(sensor, 480, 640, 90), null));
+
+        for (ScanMetrics.Stage stage : new ScanMetrics.Stage[]{ScanMetrics.Stage.ROTATE,
+                ScanMetrics.Stage.LUMINANCE, ScanMetrics.Stage.BINARIZE, ScanMetrics.Stage.DECODE}) {
+            assertEquals(stage.name(), 1, metrics.getHistogram(stage).getCount());
+        }
+        assertEquals(0, metrics.getHistogram(ScanMetrics.Stage.FRAME_INTERVAL).getCount());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Renders barcodes into grey NV21 frames for tests and benchmarks.
+ */
+final class SyntheticFrames {
+    private SyntheticFrames() {
+    }
+
+    /**
+     * Draws {@code contents} centred in a {@code width x height} frame, scaled to roughly half of
+     * the frame width, with a little sensor-like noise on top.
+     */
+    static byte[] render(BarcodeFormat format, String contents, int width, int height) throws WriterException {
+        boolean oneD = OneDRowScanner.ONE_D_FORMATS.contains(format);
+        int codeWidth = width / 2;
+        int codeHeight = oneD ? height / 4 : codeWidth;
+        BitMatrix matrix = new MultiFormatWriter().encode(contents, format, codeWidth, codeHeight);
+
+        byte[] frame = new byte[width * height * 3 / 2];
+        Random random = new Random(contents.hashCode());
+        int left = (width - matrix.getWidth()) / 2;
+        int top = (height - matrix.getHeight()) / 2;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int mx = x - left;
+                int my = y - top;
+                boolean black = mx >= 0 && my >= 0 && mx < matrix.getWidth() && my < matrix.getHeight()
+                        && matrix.get(mx, my);
+                int luminance = (black ? 40 : 210) + random.nextInt(21) - 10;
+                frame[y * width + x] = (byte) luminance;
+            }
+        }
+        for (int i = width * height; i < frame.length; i++) {
+            frame[i] = (byte) 128;
+        }
+        return frame;
+    }
+
+    /** A blank grey NV21 frame to {@link #draw} codes into. */
+    static byte[] blank(int width, int height) {
+        byte[] frame = new byte[width * height * 3 / 2];
+        Arrays.fill(frame, 0, width * height, (byte) 210);
+        Arrays.fill(frame, width * height, frame.length, (byte) 128);
+        return frame;
+    }
+
+    /** Draws {@code contents} into the {@code codeWidth x codeHeight} box at {@code (left, top)}. */
+    static void draw(byte[] frame, int width, BarcodeFormat format, String contents,
+                     int left, int top, int codeWidth, int codeHeight) throws WriterException {
+        BitMatrix matrix = new MultiFormatWriter().encode(contents, format, codeWidth, codeHeight);
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            for (int x = 0; x < matrix.getWidth(); x++) {
+                if (matrix.get(x, y)) {
+                    frame[(top + y) * width + left + x] = (byte) 40;
+                }
+            }
+        }
+    }
+
+    /** A QR result with the three finder pattern centres of a 100 pixel code at {@code (left, top)}. */
+    static Result qr(String text, float left, float top) {
+        return new Result(text, null, new ResultPoint[]{new ResultPoint(left, top + 100),
+                new ResultPoint(left, top), new ResultPoint(left + 100, top)}, BarcodeFormat.QR_CODE);
+    }
+}
@@ -0,0 +1,82 @@
+package ru.vigroup.barcodescanner;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TiledDecodingTest {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @Test
+    public void getTiles_coversEveryCodeUpToTheMaximumSize() {
+        List<FrameRegion> tiles = TiledDecoding.getTiles(1200, 675, 160);
+        assertEquals(7 * 4, tiles.size());
+        for (int top = 0; top + 160 <= 675; top += 7) {
+            for (int left = 0; left + 160 <= 1200; left += 7) {
+                assertTrue(left + "," + top, containedInATile(tiles, left, top, 160));
+            }
+        }
+        assertTrue(TiledDecoding.getTiles(320, 240, 160).isEmpty());
+        // too narrow for two tiles across, split along the other side only
+        assertEquals(2, TiledDecoding.getTiles(300, 400, 160).size());
+    }
+
+    @Test
+    public void decode_findsSmallCodesInTiles() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.QR_CODE, "PALLET-1", 900, 420, 200, 200);
+        FrameDecoder decoder = new FrameDecoder();
+        TiledDecoding tiledDecoding = new TiledDecoding(4, 240);
+        decoder.setTiledDecoding(tiledDecoding);
+
+        Result result = decoder.decode(new PreviewFrame(frame, WIDTH, HEIGHT, 0), new FrameRegion(40, 20, 1200, 675));
+
+        assertNotNull(result);
+        assertEquals("PALLET-1", result.getText());
+        assertEquals(1, tiledDecoding.getFrameCount());
+        assertEquals(1, tiledDecoding.getTileHitCount() + tiledDecoding.getRegionHitCount());
+        // in frame coordinates, not those of a tile
+        for (ResultPoint point : result.getResultPoints()) {
+            assertTrue(point.toString(), point.getX() >= 900 && point.getX() <= 1100
+                    && point.getY() >= 420 && point.getY() <= 620);
+        }
+    }
+
+    @Test
+    public void decode_findsCodesTooBigForATileInTheWholeRegion() throws Exception {
+        byte[] frame = SyntheticFrames.blank(WIDTH, HEIGHT);
+        SyntheticFrames.draw(frame, WIDTH, BarcodeFormat.CODE_128, "PALLET-000123-ABCDEF", 100, 300, 1000, 160);
+        FrameDecoder decoder = new FrameDecoder();
+        decoder.setAdaptiveDecoding(1, 1, false);
+        TiledDecoding tiledDecoding = new TiledDecoding(4, 160);
+        decoder.setTiledDecoding(tiledDecoding);
+
+        Result result = decoder.decode(new PreviewFrame(frame, WIDTH, HEIGHT, 0), null);
+
+        assertNotNull(result);
+        assertEquals("PALLET-000123-ABCDEF", result.getText());
+        assertEquals(1, tiledDecoding.getRegionHitCount());
+        assertNull(decoder.decode(new PreviewFrame(SyntheticFrames.blank(WIDTH, HEIGHT), WIDTH, HEIGHT, 0), null));
+        assertEquals(2, tiledDecoding.getFrameCount());
+    }
+
+    private static boolean containedInATile(List<FrameRegion> tiles, int left, int top, int size) {
+        for (FrameRegion tile : tiles) {
+            if (left >= tile.getLeft() && top >= tile.getTop()
+                    && left + size <= tile.getRight() && top + size <= tile.getBottom()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}